@@ -10,6 +10,7 @@ public enum ConfigEnums {
     TEAM_CONFIG("TEAM_CONFIG", "团队配置"),
     SYSTEM_CONFIG("SYSTEM_CONFIG", "系统配置"),
     AI_SERVICE_CONFIG("AI_SERVICE_CONFIG", "AI服务配置"),
+    AI_PROVIDER_CHAIN_CONFIG("AI_PROVIDER_CHAIN_CONFIG", "AI备用提供商链配置"),
     USER_CONFIG("USER_CONFIG", "用户配置");
 
     private final String key;
@@ -1,17 +1,28 @@
 package com.cdnu.cgi.config;
 
 import com.cdnu.cgi.service.config.ConfigService;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
- * AI配置类 - 单一模型架构
- * 只加载当前启用的AI模型配置
+ * AI配置类
+ * 当前启用的AI模型作为首选提供商，备用提供商链按顺序排在其后用于故障转移
  */
+@Slf4j
 @Setter
 @Getter
 @Component
@@ -22,17 +33,71 @@ public class AIConfig {
     AIServiceConfig aIServiceConfig;
     private String serviceName;
     private Boolean serviceEnabled;
+    /** 已启用的提供商，首个为AI_SERVICE_CONFIG，其后为备用链 */
+    private List<AIServiceConfig> providerChain = Collections.emptyList();
 
     private String systemPrompt;
     private CacheConfig cache = new CacheConfig();
     private LoggingConfig logging = new LoggingConfig();
     private RetryConfig retry = new RetryConfig();
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+    private StreamConfig stream = new StreamConfig();
+    private FailoverConfig failover = new FailoverConfig();
+    private PromptConfig prompt = new PromptConfig();
+    private RecommendationConfig recommendation = new RecommendationConfig();
+    private ChatLogConfig chatLog = new ChatLogConfig();
+    private ChatContextConfig chatContext = new ChatContextConfig();
+    private MockConfig mock = new MockConfig();
+    private SearchConfig search = new SearchConfig();
+    private RateLimitConfig rateLimit = new RateLimitConfig();
+    private SchedulerConfig scheduler = new SchedulerConfig();
 
     @PostConstruct
     public void init() {
         this.aIServiceConfig = configService.getAIServiceConfig();
         this.serviceName = aIServiceConfig.getServiceName();
         this.serviceEnabled = aIServiceConfig.getServiceEnabled();
+        this.providerChain = mock.getEnabled() && mock.getExclusive() ? mockProviderChain() : loadProviderChain();
+    }
+
+    /**
+     * 压测模式下只使用本地模拟提供商，不消耗真实提供商额度
+     */
+    private List<AIServiceConfig> mockProviderChain() {
+        log.warn("AI模拟提供商已启用（{}协议），所有模型调用将发往本地模拟服务", mock.getWireFormat());
+        AIServiceConfig config = new AIServiceConfig();
+        config.setServiceName("mock");
+        config.setServiceEnabled(true);
+        config.setModel("mock-" + mock.getWireFormat());
+        config.setMaxTokens(2000);
+        config.setTemperature(0.0);
+        return Collections.singletonList(config);
+    }
+
+    /**
+     * 组装提供商链：首选提供商在前，备用链中未启用或重复的提供商被忽略
+     */
+    private List<AIServiceConfig> loadProviderChain() {
+        List<AIServiceConfig> chain = new ArrayList<>();
+        addProvider(chain, aIServiceConfig);
+        // 未配置时返回空列表；配置存在但无法解析时抛出异常，启动失败而不是悄悄丢弃备用链
+        List<AIServiceConfig> backups = configService.getAIProviderChainConfig();
+        if (backups.isEmpty()) {
+            log.info("未配置AI备用提供商链，仅使用{}", serviceName);
+        }
+        backups.forEach(config -> addProvider(chain, config));
+        return Collections.unmodifiableList(chain);
+    }
+
+    private void addProvider(List<AIServiceConfig> chain, AIServiceConfig config) {
+        if (config == null || config.getServiceName() == null || !Boolean.TRUE.equals(config.getServiceEnabled())) {
+            return;
+        }
+        boolean duplicated = chain.stream()
+                .anyMatch(existing -> existing.getServiceName().equalsIgnoreCase(config.getServiceName()));
+        if (!duplicated) {
+            chain.add(config);
+        }
     }
 
     @Getter
@@ -41,6 +106,8 @@ public class AIConfig {
         private Boolean enabled = true;
         private Integer ttlMinutes = 60;
         private Integer maxSize = 1000;
+        private Long maxBytes = 64L * 1024 * 1024;
+        private Integer cleanupIntervalSeconds = 60;
     }
 
     @Getter
@@ -58,5 +125,214 @@ public class AIConfig {
         private Boolean enabled = true;
         private Integer maxAttempts = 3;
         private Integer delaySeconds = 2;
+        private Integer maxDelaySeconds = 30;
+    }
+
+    @Getter
+    @Setter
+    public static class CircuitBreakerConfig {
+        private Boolean enabled = true;
+        private Integer slidingWindowSize = 20;
+        private Integer minimumCalls = 10;
+        private Integer failureRateThreshold = 50;
+        private Integer openSeconds = 30;
+        private Integer halfOpenMaxCalls = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class StreamConfig {
+        private Integer timeoutSeconds = 120;
+        private Integer maxConcurrent = 16;
+    }
+
+    @Getter
+    @Setter
+    public static class FailoverConfig {
+        private Boolean enabled = true;
+        /** 按近期延迟中位数优先选择最快的健康提供商 */
+        private Boolean preferFastest = true;
+        private Boolean hedgeEnabled = false;
+        /** 首选提供商超过该延迟百分位仍未返回时向下一个提供商发出对冲请求 */
+        private Integer hedgePercentile = 95;
+        /** 样本不足时使用的对冲等待时间 */
+        private Long hedgeDelayMillis = 3000L;
+        private Long hedgeMinDelayMillis = 500L;
+        /** 对冲线程池上限，线程用尽时不再发出对冲请求 */
+        private Integer hedgeMaxThreads = 16;
+        private Integer latencyWindowSize = 100;
+        private Integer latencyMinSamples = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class PromptConfig {
+        /** 提示词配置位置，只有file:路径（或解压运行时的classpath目录）支持修改后热加载，jar内的classpath资源不热加载 */
+        private String location = "classpath:ai-prompts.json";
+        /** 检查配置文件变更的间隔（秒），0表示不自动热加载 */
+        private Integer reloadIntervalSeconds = 30;
+    }
+
+    @Getter
+    @Setter
+    public static class RecommendationConfig {
+        /** 预排序后放入推荐提示词的候选竞赛数 */
+        private Integer candidateTopK = 10;
+        /** 竞赛列表部分的token预算，0表示不限制 */
+        private Integer promptTokenBudget = 1200;
+        /** 每个用户保留的最新推荐条数 */
+        private Integer maxPerUser = 50;
+        /** 推荐记录保留天数，0表示不按时间清理 */
+        private Integer retentionDays = 90;
+        private Integer pruneIntervalHours = 24;
+        /** 每批删除的最大行数，避免长时间锁表 */
+        private Integer pruneBatchSize = 1000;
+        /** 是否每晚为所有用户预计算推荐 */
+        private Boolean precomputeEnabled = true;
+        /** 每天开始预计算的时刻（0-23点） */
+        private Integer precomputeHour = 3;
+        /** 每批读取的用户数 */
+        private Integer precomputeBatchSize = 200;
+        /** 预计算时同时进行的模型调用数 */
+        private Integer precomputeConcurrency = 4;
+        /** 预计算结果的有效期（小时），超过后请求时实时生成 */
+        private Integer precomputedMaxAgeHours = 48;
+    }
+
+    @Getter
+    @Setter
+    public static class ChatLogConfig {
+        /** 是否异步批量写入聊天记录 */
+        private Boolean asyncEnabled = true;
+        private Integer queueCapacity = 10000;
+        private Integer batchSize = 200;
+        /** 后台写入线程等待新记录的最长时间（毫秒） */
+        private Long flushIntervalMillis = 500L;
+        /** 队列满时等待入队的时间（毫秒），超时后在调用线程同步写入 */
+        private Long offerTimeoutMillis = 50L;
+        /** 聊天历史列表中每个对话组附带的最近消息数 */
+        private Integer historyMessagesPerGroup = 20;
+        /** 分页接口单页最大条数 */
+        private Integer maxPageSize = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class ChatContextConfig {
+        private Boolean enabled = true;
+        /** 原文保留的最近对话轮数 */
+        private Integer maxTurns = 6;
+        /** 摘要加最近轮次的token预算，超出后最早的轮次移入摘要 */
+        private Integer tokenBudget = 1500;
+        /** 滚动摘要的最大字数 */
+        private Integer summaryMaxLength = 300;
+        /** 内存中缓存上下文的最大对话数 */
+        private Integer maxCachedConversations = 2000;
+        /** 对话空闲超过该时间后从缓存移除（分钟） */
+        private Integer idleMinutes = 30;
+    }
+
+    @Getter
+    @Setter
+    public static class MockConfig {
+        /** 是否启动本地模拟LLM服务 */
+        private Boolean enabled = false;
+        /** 为true时提供商链只包含mock提供商；为false时需在提供商配置中显式加入service_name为mock的条目 */
+        private Boolean exclusive = true;
+        /** 模拟服务监听端口，0为随机端口 */
+        private Integer port = 0;
+        /** mock提供商使用的协议：openai / anthropic / ollama */
+        private String wireFormat = "openai";
+        /** 延迟分布：fixed / uniform / normal / lognormal */
+        private String latencyDistribution = "lognormal";
+        private Long latencyMeanMillis = 800L;
+        private Long latencyStddevMillis = 300L;
+        /** 流式响应相邻分片的间隔（毫秒） */
+        private Long chunkDelayMillis = 20L;
+        /** 流式响应每个分片的字符数 */
+        private Integer chunkChars = 4;
+        /** 返回错误的概率（0~1） */
+        private Double errorRate = 0.0;
+        /** 错误响应的HTTP状态码，429时附带Retry-After */
+        private Integer errorStatus = 503;
+        /** 延迟和错误注入的随机种子，相同种子和请求顺序下结果可复现 */
+        private Long seed = 42L;
+        /** 固定回复列表，按提示词哈希选取，同一提示词总是得到同一回复；为空时使用内置回复 */
+        private List<String> cannedResponses = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class SearchConfig {
+        /** 哈希向量维度，向上取2的幂 */
+        private Integer dimensions = 262144;
+        /** 返回的最大结果数 */
+        private Integer topK = 10;
+        /** 余弦相似度低于该值的结果不返回 */
+        private Double minScore = 0.05;
+        /** 全量重建索引的间隔（分钟），0为不定期重建 */
+        private Integer rebuildIntervalMinutes = 60;
+        /** 是否调用模型扩展查询词 */
+        private Boolean queryExpansionEnabled = false;
+        /** 模型扩展词相对原查询词的权重 */
+        private Double expansionWeight = 0.3;
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimitConfig {
+        /** 是否对AI接口按用户限流 */
+        private Boolean enabled = true;
+        /** 未单独配置的操作使用的限额 */
+        private LimitConfig defaults = new LimitConfig(10, 6.0, 200);
+        /** 按操作名覆盖的限额，未设置的字段取defaults */
+        private Map<String, LimitConfig> operations = new HashMap<>();
+        /** 每个客户端地址在所有操作上共用的令牌桶容量，0为不限；在按用户限流和读取配额之前扣除 */
+        private Integer clientCapacity = 60;
+        /** 客户端地址令牌桶每分钟补充的令牌数 */
+        private Double clientRefillPerMinute = 30.0;
+        /** 每日配额增量写入数据库的间隔（毫秒） */
+        private Long quotaFlushIntervalMillis = 5000L;
+        /** ai_usage_quota中每日计数的保留天数，更早的记录每天清理一次 */
+        private Integer quotaRetentionDays = 30;
+
+        /**
+         * 取操作的某项限额，操作未配置该项时取默认值
+         */
+        public <T> T resolve(String operation, Function<LimitConfig, T> getter) {
+            LimitConfig limit = operations.get(operation);
+            T value = limit != null ? getter.apply(limit) : null;
+            return value != null ? value : getter.apply(defaults);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class SchedulerConfig {
+        /** 是否对上游调用排队调度，关闭时不限制并发 */
+        private Boolean enabled = true;
+        /** 同时进行的上游调用数上限（含流式） */
+        private Integer maxConcurrency = 8;
+        /** 交互优先级的操作名 */
+        private List<String> interactiveOperations = new ArrayList<>(Arrays.asList("AI聊天", "AI流式聊天"));
+        /** 批处理优先级的操作名，其余操作为按需分析优先级 */
+        private List<String> batchOperations = new ArrayList<>(Arrays.asList("AI推荐预计算", "对话摘要"));
+        /** 各优先级自调用方操作开始起的排队时限（毫秒），超过后丢弃；0为不限 */
+        private Long interactiveTimeoutMillis = 15000L;
+        private Long onDemandTimeoutMillis = 60000L;
+        private Long batchTimeoutMillis = 0L;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LimitConfig {
+        /** 令牌桶容量，即允许的突发请求数，0为不限流 */
+        private Integer capacity;
+        /** 每分钟补充的令牌数 */
+        private Double refillPerMinute;
+        /** 每日调用次数上限，0为不限 */
+        private Integer dailyQuota;
     }
-}
\ No newline at end of file
+}
@@ -22,6 +22,16 @@ public class AIServiceConfig {
     private Integer maxTokens;
     @JsonProperty("temperature")
     private Double temperature;
+    /** 单次调用总时限（秒） */
     @JsonProperty("timeout")
     private Integer timeout;
+    /** 建立连接超时（秒） */
+    @JsonProperty("connect_timeout")
+    private Integer connectTimeout;
+    /** 等待响应首字节超时（秒） */
+    @JsonProperty("read_timeout")
+    private Integer readTimeout;
+    /** 该提供商最大并发连接数 */
+    @JsonProperty("max_connections")
+    private Integer maxConnections;
 }
@@ -0,0 +1,28 @@
+package com.cdnu.cgi.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 异步任务线程池配置
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * AI流式聊天线程池，大小由 ai.stream.max-concurrent 控制
+     */
+    @Bean
+    public ThreadPoolTaskExecutor aiStreamExecutor(AIConfig aiConfig) {
+        int maxConcurrent = aiConfig.getStream().getMaxConcurrent();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(maxConcurrent * 4);
+        executor.setThreadNamePrefix("ai-stream-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(aiConfig.getStream().getTimeoutSeconds());
+        return executor;
+    }
+}
@@ -1,22 +1,38 @@
 package com.cdnu.cgi.controller;
 
+import com.cdnu.cgi.config.AIConfig;
 import com.cdnu.cgi.dto.AIChatRequest;
 import com.cdnu.cgi.dto.AIChatResponse;
-import com.cdnu.cgi.entity.AIChatLog;
 import com.cdnu.cgi.entity.Competition;
 import com.cdnu.cgi.entity.CompetitionRecommendation;
-import com.cdnu.cgi.mapper.AIChatLogMapper;
 import com.cdnu.cgi.service.User.AIService;
+import com.cdnu.cgi.util.AIChatLogWriter;
+import com.cdnu.cgi.util.AIRateLimitExceededException;
+import com.cdnu.cgi.util.AIRateLimiter;
+import com.cdnu.cgi.util.AIResultCache;
+import com.cdnu.cgi.util.AIServiceHelper;
+import com.cdnu.cgi.util.ChatContextManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @RestController
@@ -24,13 +40,20 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AIController {
     private final AIService aiService;
-    private final AIChatLogMapper chatLogMapper;
+    private final AIResultCache resultCache;
+    private final AIServiceHelper aiServiceHelper;
+    private final AIConfig aiConfig;
+    private final ThreadPoolTaskExecutor aiStreamExecutor;
+    private final AIChatLogWriter chatLogWriter;
+    private final ChatContextManager chatContextManager;
+    private final AIRateLimiter rateLimiter;
 
     /**
      * 获取AI推荐竞赛
      */
     @PostMapping("/recommendations")
     public ResponseEntity<List<Competition>> getRecommendations(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "recommendations");
         try {
             Long userId = Long.valueOf(requestData.get("userId").toString());
             
@@ -71,6 +94,7 @@ public class AIController {
      */
     @PostMapping("/chat")
     public ResponseEntity<Map<String, Object>> chat(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "chat");
         try {
             String message = requestData.get("message").toString();
             Long userId = requestData.containsKey("userId") ?
@@ -100,11 +124,192 @@ public class AIController {
         }
     }
 
+    /**
+     * AI流式聊天接口（SSE）
+     * 事件 token 为增量文本，事件 done 为完整消息，事件 error 为错误信息
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> chatStream(@RequestBody Map<String, Object> requestData) {
+        try {
+            acquireQuota(requestData, "chat");
+        } catch (AIRateLimitExceededException e) {
+            // SSE响应无法写入JSON错误体，仅返回状态码和Retry-After
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        }
+        SseEmitter emitter = new SseEmitter(aiConfig.getStream().getTimeoutSeconds() * 1000L);
+        try {
+            String message = requestData.get("message").toString();
+            Long userId = requestData.containsKey("userId") ?
+                Long.valueOf(requestData.get("userId").toString()) : 1L; // 默认用户ID为1L
+            String groupId = requestData.containsKey("groupId") ?
+                requestData.get("groupId").toString() : null;
+
+            AIChatRequest chatRequest = new AIChatRequest();
+            chatRequest.setMessage(message);
+            chatRequest.setUserId(userId);
+            chatRequest.setGroupId(groupId);
+
+            // 客户端断开、超时或出错时中断工作线程，使阻塞中的上游读取立即结束
+            StreamCancellation cancellation = new StreamCancellation();
+            emitter.onCompletion(cancellation::cancel);
+            emitter.onTimeout(cancellation::cancel);
+            emitter.onError(error -> cancellation.cancel());
+
+            aiStreamExecutor.execute(() -> {
+                if (!cancellation.start()) {
+                    return;
+                }
+                try {
+                    AIChatResponse chatResponse = aiService.chatStream(chatRequest, token -> {
+                        if (cancellation.isCancelled()) {
+                            throw new CancellationException("客户端已断开");
+                        }
+                        sendEvent(emitter, "token", token);
+                    });
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("message", chatResponse.getMessage());
+                    response.put("timestamp", chatResponse.getTimestamp());
+                    response.put("messageId", chatResponse.getMessageId());
+                    sendEvent(emitter, "done", response);
+                    cancellation.finish();
+                    emitter.complete();
+                } catch (UncheckedIOException | CancellationException e) {
+                    cancellation.finish();
+                    emitter.complete();
+                } catch (Exception e) {
+                    if (cancellation.finish()) {
+                        log.debug("客户端断开，已取消AI流式聊天: {}", e.getMessage());
+                        return;
+                    }
+                    log.error("AI流式聊天失败", e);
+                    emitter.completeWithError(e);
+                } finally {
+                    cancellation.finish();
+                }
+            });
+        } catch (Exception e) {
+            log.error("AI流式聊天失败", e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "AI流式聊天失败: " + e.getMessage());
+            sendEvent(emitter, "error", error);
+            emitter.complete();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 流式聊天的取消状态：只在工作线程执行期间中断它，结束后清除可能残留的中断标记
+     */
+    private static class StreamCancellation {
+        private Thread worker;
+        private boolean cancelled;
+        private boolean finished;
+
+        /**
+         * 工作线程开始执行，已取消时返回false
+         */
+        synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            worker = Thread.currentThread();
+            return true;
+        }
+
+        synchronized void cancel() {
+            if (cancelled || finished) {
+                return;
+            }
+            cancelled = true;
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 工作线程结束，返回是否因取消而结束
+         */
+        boolean finish() {
+            synchronized (this) {
+                finished = true;
+                worker = null;
+            }
+            // 线程池线程复用前清除取消时设置的中断标记
+            Thread.interrupted();
+            return cancelled;
+        }
+    }
+
+    /**
+     * 获取一次AI调用许可：先按客户端地址限流（userId由客户端提供，不可信），
+     * 再按请求中的userId计，缺少或无法解析userId时按客户端地址计
+     */
+    private void acquireQuota(Map<String, Object> requestData, String operation) {
+        Long userId = null;
+        Object value = requestData.get("userId");
+        if (value != null) {
+            try {
+                userId = Long.valueOf(value.toString());
+            } catch (NumberFormatException ignored) {
+                // 交由接口本身处理非法参数
+            }
+        }
+        rateLimiter.acquire(userId, clientAddress(), operation);
+    }
+
+    /**
+     * 当前请求的客户端地址。不直接读取X-Forwarded-For（客户端可伪造以绕过限流），
+     * 部署在反向代理后时由server.forward-headers-strategy把可信代理转发的地址填入remoteAddr
+     */
+    private String clientAddress() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 超出限流或每日配额时返回429和Retry-After
+     */
+    @ExceptionHandler(AIRateLimitExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleRateLimitExceeded(AIRateLimitExceededException e) {
+        log.info("AI调用被限流 - 操作: {}, 原因: {}", e.getOperation(), e.getMessage());
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", e.getMessage());
+        body.put("operation", e.getOperation());
+        body.put("quotaExhausted", e.isQuotaExhausted());
+        body.put("retryAfterSeconds", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(body);
+    }
+
+    /**
+     * 发送SSE事件，客户端断开时抛出UncheckedIOException以终止上游读取
+     */
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * 技能分析
      */
     @PostMapping("/analyze-skills")
     public ResponseEntity<Map<String, Object>> analyzeSkills(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "analyze-skills");
         try {
             Long userId = Long.valueOf(requestData.get("userId").toString());
             Map<String, Object> analysis = aiService.analyzeUserSkills(userId);
@@ -120,6 +325,7 @@ public class AIController {
      */
     @PostMapping("/learning-path")
     public ResponseEntity<Map<String, Object>> generateLearningPath(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "learning-path");
         try {
             Long userId = Long.valueOf(requestData.get("userId").toString());
             Long targetCompetitionId = requestData.containsKey("targetCompetitionId") ? 
@@ -138,6 +344,7 @@ public class AIController {
      */
     @PostMapping("/trends")
     public ResponseEntity<Map<String, Object>> getCompetitionTrends(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "trends");
         try {
             // 提取用户信息和竞赛信息
             Long userId = requestData.containsKey("userId") && requestData.get("userId") != null ? 
@@ -163,6 +370,7 @@ public class AIController {
      */
     @PostMapping("/preparation-advice")
     public ResponseEntity<Map<String, Object>> getPreparationAdvice(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "preparation-advice");
         try {
             Long competitionId = Long.valueOf(requestData.get("competitionId").toString());
             Long userId = Long.valueOf(requestData.get("userId").toString());
@@ -194,6 +402,7 @@ public class AIController {
      */
     @PostMapping("/search")
     public ResponseEntity<List<Competition>> intelligentSearch(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "search");
         try {
             // 安全地获取查询参数，如果不存在则使用空字符串
             String query = requestData.containsKey("query") && requestData.get("query") != null ? 
@@ -225,6 +434,7 @@ public class AIController {
      */
     @PostMapping("/match-score")
     public ResponseEntity<Map<String, Object>> getMatchScore(@RequestBody Map<String, Object> requestData) {
+        acquireQuota(requestData, "match-score");
         try {
             Long competitionId = Long.valueOf(requestData.get("competitionId").toString());
             Long userId = Long.valueOf(requestData.get("userId").toString());
@@ -243,11 +453,16 @@ public class AIController {
      */
     @GetMapping("/chat/history/{userId}")
     public ResponseEntity<?> getChatHistory(@PathVariable Long userId,
-                                            @RequestParam(defaultValue = "20") int limit) {
+                                            @RequestParam(defaultValue = "20") int limit,
+                                            @RequestParam(required = false) String cursor) {
         try {
-            // 调用服务层方法获取聊天历史
-            List<Map<String, Object>> result = aiService.getChatHistoryGroups(userId, limit);
+            // 调用服务层方法获取聊天历史，cursor为上一页最后一个分组的cursor
+            List<Map<String, Object>> result = aiService.getChatHistoryGroups(userId, limit, cursor);
             return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "获取聊天历史失败");
@@ -261,16 +476,21 @@ public class AIController {
      */
     @GetMapping("/chat/conversation/{userId}/{groupId}")
     public ResponseEntity<?> getConversationHistory(@PathVariable Long userId, 
-                                                   @PathVariable String groupId) {
+                                                   @PathVariable String groupId,
+                                                   @RequestParam(required = false) String before,
+                                                   @RequestParam(required = false) String after,
+                                                   @RequestParam(required = false) Integer limit) {
         try {
             log.info("获取用户 {} 的对话组 {} 历史", userId, groupId);
             
-            // 使用 group_id 查询对话记录
-            List<AIChatLog> chatLogs = chatLogMapper.selectByUserIdAndGroupId(userId, groupId);
-            
-            log.info("成功获取用户 {} 对话组 {} 的 {} 条记录", userId, groupId, chatLogs.size());
-            return ResponseEntity.ok(chatLogs);
+            // 始终按游标分页返回，未指定limit时每页50条
+            return ResponseEntity.ok(aiService.getConversationMessages(userId, groupId, before, after,
+                    limit != null ? limit : 50));
             
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
         } catch (Exception e) {
             log.error("获取对话历史失败", e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -287,10 +507,7 @@ public class AIController {
     public ResponseEntity<?> deleteConversation(@PathVariable Long userId, 
                                               @PathVariable String groupId) {
         try {
-            log.info("删除用户 {} 的对话组 {}", userId, groupId);
-            
-            // 使用 group_id 删除对话记录
-            int deletedCount = chatLogMapper.deleteByUserIdAndGroupId(userId, groupId);
+            int deletedCount = aiService.deleteConversation(userId, groupId);
             
             log.info("成功删除用户 {} 对话组 {} 的 {} 条记录", userId, groupId, deletedCount);
             
@@ -308,4 +525,41 @@ public class AIController {
                     .body(errorResponse);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取AI结果缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new HashMap<>(resultCache.getStats());
+        stats.put("inFlight", aiServiceHelper.getInFlightCount());
+        stats.put("coalesced", aiServiceHelper.getCoalescedCount());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 获取聊天记录异步写入队列状态
+     */
+    @GetMapping("/chat/log-writer/stats")
+    public ResponseEntity<Map<String, Object>> getChatLogWriterStats() {
+        Map<String, Object> stats = new HashMap<>(chatLogWriter.getStats());
+        stats.put("context", chatContextManager.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 获取AI接口限流和配额状态
+     */
+    @GetMapping("/rate-limit/stats")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+
+    /**
+     * 获取AI提供商熔断器及连接状态
+     */
+    @GetMapping("/providers/status")
+    public ResponseEntity<Map<String, Object>> getProviderStatus() {
+        return ResponseEntity.ok(aiServiceHelper.getProviderStatus());
+    }
+}
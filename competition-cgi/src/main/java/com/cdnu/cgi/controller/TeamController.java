@@ -1,6 +1,7 @@
 package com.cdnu.cgi.controller;
 
 import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.dto.TeammateCandidateDto;
 import com.cdnu.cgi.entity.Team;
 import com.cdnu.cgi.entity.TeamMember;
 import com.cdnu.cgi.entity.TeamMemberDetailInfo;
@@ -192,6 +193,41 @@ public class TeamController {
         }
     }
 
+    /**
+     * 跨竞赛推荐与用户技能最匹配的团队
+     */
+    @GetMapping("/recommended/{userId}")
+    public ResponseEntity<?> getRecommendedTeams(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<CompetitionTeamCardDto> teamCards = teamService.getRecommendedTeams(userId, limit);
+            return ResponseEntity.ok(teamCards);
+        } catch (Exception e) {
+            Map<String, String> errorMap = new HashMap<>();
+            errorMap.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorMap);
+        }
+    }
+
+    /**
+     * 队长查找能补齐团队缺失技能的候选队友
+     */
+    @GetMapping("/{id}/candidates")
+    public ResponseEntity<?> findTeammateCandidates(
+            @PathVariable Long id,
+            @RequestParam Long leaderId,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<TeammateCandidateDto> candidates = teamService.findTeammateCandidates(id, leaderId, limit);
+            return ResponseEntity.ok(candidates);
+        } catch (Exception e) {
+            Map<String, String> errorMap = new HashMap<>();
+            errorMap.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(errorMap);
+        }
+    }
+
     /**
      * 更新团队信息
      */
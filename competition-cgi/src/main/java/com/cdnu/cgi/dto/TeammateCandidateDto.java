@@ -0,0 +1,53 @@
+package com.cdnu.cgi.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 队友候选人DTO
+ * 按团队尚未覆盖的所需技能排序的候选用户
+ */
+@Data
+public class TeammateCandidateDto {
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 用户名
+     */
+    private String username;
+
+    /**
+     * 真实姓名
+     */
+    private String realName;
+
+    /**
+     * 专业
+     */
+    private String major;
+
+    /**
+     * 头像URL
+     */
+    private String avatarUrl;
+
+    /**
+     * 用户全部技能，逗号分隔
+     */
+    private String skills;
+
+    /**
+     * 命中的团队缺失技能
+     */
+    private List<String> matchedSkills;
+
+    /**
+     * 加权覆盖率（0-100）
+     */
+    private Integer coverage;
+}
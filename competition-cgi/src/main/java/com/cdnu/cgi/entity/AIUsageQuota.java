@@ -0,0 +1,19 @@
+package com.cdnu.cgi.entity;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * AI接口每日调用计数实体类
+ * 对应数据库表 ai_usage_quota
+ */
+@Data
+public class AIUsageQuota {
+
+    private Long userId;
+    private String operation;
+    private LocalDate usageDate;
+    /** 当日已使用次数；批量写入时为本批增量 */
+    private Integer usedCount;
+}
@@ -0,0 +1,23 @@
+package com.cdnu.cgi.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 对话摘要实体类
+ * 对应数据库表 chat_conversations，随聊天记录写入增量维护，用于聊天历史侧边栏
+ */
+@Data
+public class ChatConversation {
+
+    private Long userId;
+    private String groupId;
+    /** 对话中第一条用户输入，作为对话标题 */
+    private String firstInput;
+    private String lastMessage;
+    private LocalDateTime lastTimestamp;
+    private Integer messageCount;
+    /** 多轮对话中已移出上下文窗口部分的滚动摘要 */
+    private String summary;
+}
@@ -0,0 +1,20 @@
+package com.cdnu.cgi.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 推荐预计算快照实体类
+ * 对应数据库表 recommendation_snapshots，技能指纹未变时直接返回该次生成的推荐竞赛
+ */
+@Data
+public class RecommendationSnapshot {
+
+    private Long userId;
+    /** 生成推荐时用户技能的MD5指纹 */
+    private String skillsHash;
+    private LocalDateTime computedAt;
+    /** 该次推荐的竞赛ID，逗号分隔，按名次排列 */
+    private String competitionIds;
+}
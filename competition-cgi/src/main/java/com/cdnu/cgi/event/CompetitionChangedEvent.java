@@ -0,0 +1,15 @@
+package com.cdnu.cgi.event;
+
+import lombok.Getter;
+
+/**
+ * 竞赛变更事件，在竞赛新增、修改或删除后发布
+ */
+@Getter
+public class CompetitionChangedEvent {
+    private final Long competitionId;
+
+    public CompetitionChangedEvent(Long competitionId) {
+        this.competitionId = competitionId;
+    }
+}
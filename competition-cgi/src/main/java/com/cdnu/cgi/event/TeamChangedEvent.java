@@ -0,0 +1,15 @@
+package com.cdnu.cgi.event;
+
+import lombok.Getter;
+
+/**
+ * 团队变更事件，在团队新增、修改或删除后发布
+ */
+@Getter
+public class TeamChangedEvent {
+    private final Long teamId;
+
+    public TeamChangedEvent(Long teamId) {
+        this.teamId = teamId;
+    }
+}
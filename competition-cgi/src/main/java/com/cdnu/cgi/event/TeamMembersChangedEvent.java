@@ -0,0 +1,17 @@
+package com.cdnu.cgi.event;
+
+import lombok.Getter;
+
+/**
+ * 团队成员变更事件，在成员加入或移除后发布
+ */
+@Getter
+public class TeamMembersChangedEvent {
+    private final Long teamId;
+    private final Long userId;
+
+    public TeamMembersChangedEvent(Long teamId, Long userId) {
+        this.teamId = teamId;
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.cdnu.cgi.event;
+
+import lombok.Getter;
+
+/**
+ * 用户删除事件，在用户记录从数据库删除后发布
+ */
+@Getter
+public class UserDeletedEvent {
+    private final Long userId;
+
+    public UserDeletedEvent(Long userId) {
+        this.userId = userId;
+    }
+}
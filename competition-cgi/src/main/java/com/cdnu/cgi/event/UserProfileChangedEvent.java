@@ -0,0 +1,15 @@
+package com.cdnu.cgi.event;
+
+import lombok.Getter;
+
+/**
+ * 用户资料变更事件，在用户信息写入数据库后发布
+ */
+@Getter
+public class UserProfileChangedEvent {
+    private final Long userId;
+
+    public UserProfileChangedEvent(Long userId) {
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.cdnu.cgi.event;
+
+import lombok.Getter;
+
+/**
+ * 用户技能变更事件，在技能新增、修改或删除后发布
+ */
+@Getter
+public class UserSkillsChangedEvent {
+    private final Long userId;
+
+    public UserSkillsChangedEvent(Long userId) {
+        this.userId = userId;
+    }
+}
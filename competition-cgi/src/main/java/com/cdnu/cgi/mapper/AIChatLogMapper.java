@@ -5,8 +5,8 @@ import com.cdnu.cgi.entity.AIChatLog;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 /**
  * AI聊天日志数据访问接口
@@ -14,25 +14,24 @@ import java.util.Map;
 @Mapper
 public interface AIChatLogMapper extends BaseMapper<AIChatLog> {
 
-    /**
-     * 根据用户ID和组ID查找聊天记录
-     */
-    List<AIChatLog> selectByUserIdAndGroupId(@Param("userId") Long userId, @Param("groupId") String groupId);
-
     /**
      * 根据用户ID和组ID删除聊天记录
      */
     int deleteByUserIdAndGroupId(@Param("userId") Long userId, @Param("groupId") String groupId);
 
     /**
-     * 获取用户的聊天历史分组信息
+     * 批量查询用户多个对话组的聊天记录，每组只取最近perGroup条，按时间正序返回
      */
-    List<Map<String, Object>> selectChatHistoryGroupsByUserId(Long userId);
+    List<AIChatLog> selectBatchByUserIdAndGroupIds(@Param("userId") Long userId, @Param("groupIds") List<String> groupIds,
+                                                   @Param("perGroup") int perGroup);
 
     /**
-     * 批量查询用户多个对话组的聊天记录
+     * 按(timestamp, id)游标分页查询对话记录
+     * older为true时取游标之前的记录并按时间倒序返回，否则取游标之后的记录并按时间正序返回；游标为空时从最新/最早开始
      */
-    List<AIChatLog> selectBatchByUserIdAndGroupIds(@Param("userId") Long userId, @Param("groupIds") List<String> groupIds);
+    List<AIChatLog> selectPageByUserIdAndGroupId(@Param("userId") Long userId, @Param("groupId") String groupId,
+                                                 @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+                                                 @Param("older") boolean older, @Param("limit") int limit);
 
     /**
      * 删除用户的所有聊天记录
@@ -43,4 +42,9 @@ public interface AIChatLogMapper extends BaseMapper<AIChatLog> {
      * 保存聊天记录
      */
     int insert(AIChatLog chatLog);
+
+    /**
+     * 批量保存聊天记录（多行INSERT）
+     */
+    int insertBatch(@Param("list") List<AIChatLog> chatLogs);
 }
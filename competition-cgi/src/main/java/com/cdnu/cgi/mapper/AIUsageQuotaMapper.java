@@ -0,0 +1,31 @@
+package com.cdnu.cgi.mapper;
+
+import com.cdnu.cgi.entity.AIUsageQuota;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * AI接口每日调用计数数据访问接口
+ */
+@Mapper
+public interface AIUsageQuotaMapper {
+
+    /**
+     * 查询用户某操作当日已使用次数，无记录时返回null
+     */
+    Integer selectUsedCount(@Param("userId") Long userId, @Param("operation") String operation,
+                            @Param("usageDate") LocalDate usageDate);
+
+    /**
+     * 批量累加使用次数，usedCount为增量
+     */
+    int incrementBatch(@Param("list") List<AIUsageQuota> increments);
+
+    /**
+     * 删除早于指定日期的计数
+     */
+    int deleteBefore(@Param("before") LocalDate before);
+}
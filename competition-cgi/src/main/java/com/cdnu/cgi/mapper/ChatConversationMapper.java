@@ -0,0 +1,44 @@
+package com.cdnu.cgi.mapper;
+
+import com.cdnu.cgi.entity.ChatConversation;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对话摘要数据访问接口
+ */
+@Mapper
+public interface ChatConversationMapper {
+
+    /**
+     * 按(last_timestamp, group_id)游标获取更早的对话摘要，游标为空时从最新开始
+     */
+    List<Map<String, Object>> selectPageByUserId(@Param("userId") Long userId,
+                                                 @Param("cursorTime") LocalDateTime cursorTime,
+                                                 @Param("cursorGroupId") String cursorGroupId,
+                                                 @Param("limit") int limit);
+
+    /**
+     * 批量累加对话摘要：不存在时新建，存在时累加消息数并更新最后一条消息
+     */
+    int upsertBatch(@Param("list") List<ChatConversation> conversations);
+
+    /**
+     * 获取对话的滚动摘要
+     */
+    String selectSummary(@Param("userId") Long userId, @Param("groupId") String groupId);
+
+    /**
+     * 更新对话的滚动摘要
+     */
+    int updateSummary(@Param("userId") Long userId, @Param("groupId") String groupId, @Param("summary") String summary);
+
+    /**
+     * 删除用户的某个对话摘要
+     */
+    int deleteByUserIdAndGroupId(@Param("userId") Long userId, @Param("groupId") String groupId);
+}
@@ -6,6 +6,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -45,6 +46,11 @@ public interface CompetitionMapper extends BaseMapper<Competition> {
      */
     List<Competition> selectAll();
     
+    /**
+     * 根据ID列表批量查询竞赛
+     */
+    List<Competition> selectByIds(@Param("ids") Collection<Long> ids);
+    
     /**
      * 根据参赛类型查询竞赛
      */
@@ -5,6 +5,7 @@ import com.cdnu.cgi.entity.CompetitionRecommendation;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -43,6 +44,21 @@ public interface CompetitionRecommendationMapper extends BaseMapper<CompetitionR
      */
     int insert(CompetitionRecommendation competitionRecommendation);
     
+    /**
+     * 批量写入推荐记录，(user_id, competition_id)已存在时更新分数、建议和时间
+     */
+    int upsertBatch(@Param("list") List<CompetitionRecommendation> recommendations);
+    
+    /**
+     * 只保留用户最新的keep条推荐，删除其余被取代的记录
+     */
+    int deleteSupersededByUserId(@Param("userId") Long userId, @Param("keep") int keep);
+    
+    /**
+     * 分批删除早于指定时间的推荐记录
+     */
+    int deleteCreatedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+    
     /**
      * 更新推荐记录
      */
@@ -0,0 +1,26 @@
+package com.cdnu.cgi.mapper;
+
+import com.cdnu.cgi.entity.RecommendationSnapshot;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 推荐预计算快照数据访问接口
+ */
+@Mapper
+public interface RecommendationSnapshotMapper {
+
+    /**
+     * 根据用户ID查找快照
+     */
+    RecommendationSnapshot selectByUserId(Long userId);
+
+    /**
+     * 写入或覆盖用户的快照
+     */
+    int upsert(RecommendationSnapshot snapshot);
+
+    /**
+     * 删除用户的快照（用户删除时）
+     */
+    int deleteByUserId(Long userId);
+}
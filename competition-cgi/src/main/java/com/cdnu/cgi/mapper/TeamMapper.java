@@ -5,6 +5,7 @@ import com.cdnu.cgi.entity.Team;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -18,6 +19,11 @@ public interface TeamMapper {
      */
     Team selectById(Long id);
     
+    /**
+     * 根据ID列表批量查找团队
+     */
+    List<Team> selectByIds(@Param("ids") Collection<Long> ids);
+    
     /**
      * 根据竞赛ID查找团队
      */
@@ -82,4 +88,14 @@ public interface TeamMapper {
      * 根据竞赛ID获取团队卡片信息
      */
     List<CompetitionTeamCardDto> selectCompetitionTeamCards(Long competitionId);
+    
+    /**
+     * 获取所有团队卡片信息
+     */
+    List<CompetitionTeamCardDto> selectAllCompetitionTeamCards();
+    
+    /**
+     * 根据团队ID获取团队卡片信息
+     */
+    List<CompetitionTeamCardDto> selectCompetitionTeamCardsByTeamId(Long teamId);
 }
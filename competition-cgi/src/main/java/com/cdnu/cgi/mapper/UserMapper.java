@@ -3,6 +3,7 @@ package com.cdnu.cgi.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.cdnu.cgi.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 
@@ -57,6 +58,11 @@ public interface UserMapper extends BaseMapper<User> {
      */
     List<User> selectAll();
     
+    /**
+     * 按ID升序分页获取afterId之后的用户ID，用于批处理任务遍历用户
+     */
+    List<Long> selectIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+    
     /**
      * 插入用户
      */
@@ -6,6 +6,7 @@ import com.cdnu.cgi.entity.CompetitionRecommendation;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * AI服务接口
@@ -22,6 +23,12 @@ public interface AIService {
      */
     AIChatResponse chat(AIChatRequest request);
     
+    /**
+     * AI流式聊天，每生成一段文本回调onToken，结束后保存完整聊天记录
+     * 客户端断开时抛出UncheckedIOException或CancellationException，不保存聊天记录
+     */
+    AIChatResponse chatStream(AIChatRequest request, Consumer<String> onToken);
+    
     /**
      * 技能分析
      */
@@ -39,6 +46,11 @@ public interface AIService {
      */
     List<Competition> getRecommendations(Long userId, String category, String difficulty);
     
+    /**
+     * 基于给定的竞赛列表为用户预计算推荐并写入推荐表和快照，用户不存在或生成失败时返回false
+     */
+    boolean precomputeRecommendations(Long userId, List<Competition> competitions);
+    
     /**
      * 分析用户技能（简化版本）
      */
@@ -69,6 +81,11 @@ public interface AIService {
      */
     List<CompetitionRecommendation> getUserRecommendations(Long userId);
     
+    /**
+     * 删除对话组的聊天记录和对话摘要，返回删除的聊天记录条数
+     */
+    int deleteConversation(Long userId, String groupId);
+    
     /**
      * 智能搜索
      */
@@ -80,4 +97,15 @@ public interface AIService {
     Map<String, Object> getCompetitionMatchScore(Long competitionId, Long userId);
 
     List<Map<String, Object>> getChatHistoryGroups(Long userId, int limit);
-}
\ No newline at end of file
+
+    /**
+     * 按游标分页获取聊天历史分组，cursor为上一页最后一个分组的cursor，为空时从最新开始
+     */
+    List<Map<String, Object>> getChatHistoryGroups(Long userId, int limit, String cursor);
+
+    /**
+     * 按(timestamp, id)游标分页获取对话记录
+     * before为空且after为空时返回最新一页；before向更早翻页，after向更新翻页，两者不能同时指定
+     */
+    Map<String, Object> getConversationMessages(Long userId, String groupId, String before, String after, int limit);
+}
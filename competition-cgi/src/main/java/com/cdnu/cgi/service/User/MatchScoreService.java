@@ -33,4 +33,12 @@ public interface MatchScoreService {
      * @return 带有适配度的团队卡片列表
      */
     List<CompetitionTeamCardDto> calculateTeamCardsMatchScores(List<CompetitionTeamCardDto> teamCards, Long userId);
+    
+    /**
+     * 计算用户与单个团队卡片的适配度
+     * @param teamCard 团队卡片
+     * @param userId 用户ID
+     * @return 适配度分数（0-100）
+     */
+    int calculateTeamCardMatchScore(CompetitionTeamCardDto teamCard, Long userId);
 }
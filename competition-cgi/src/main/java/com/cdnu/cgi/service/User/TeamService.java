@@ -1,6 +1,7 @@
 package com.cdnu.cgi.service.User;
 
 import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.dto.TeammateCandidateDto;
 import com.cdnu.cgi.entity.Team;
 import com.cdnu.cgi.entity.TeamApplication;
 import com.cdnu.cgi.entity.TeamMember;
@@ -89,6 +90,23 @@ public interface TeamService {
      * @return 团队卡片信息列表（包含适配度）
      */
     List<CompetitionTeamCardDto> getCompetitionTeamCardsWithMatchScore(Long competitionId, Long userId);
+
+    /**
+     * 跨竞赛为用户推荐所需技能匹配度最高的团队（不含用户已加入的团队）
+     * @param userId 用户ID
+     * @param limit 返回数量
+     * @return 团队卡片信息列表（包含适配度，按适配度降序）
+     */
+    List<CompetitionTeamCardDto> getRecommendedTeams(Long userId, int limit);
+
+    /**
+     * 为队长查找能补齐团队缺失技能的候选队友（不含现有成员），按加权覆盖率降序
+     * @param teamId 团队ID
+     * @param leaderId 队长ID（验证权限）
+     * @param limit 返回数量
+     * @return 候选队友列表
+     */
+    List<TeammateCandidateDto> findTeammateCandidates(Long teamId, Long leaderId, int limit);
     
     // ==================== 团队申请相关方法 ====================
     
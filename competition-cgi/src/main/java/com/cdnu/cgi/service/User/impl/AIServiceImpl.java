@@ -1,17 +1,32 @@
 package com.cdnu.cgi.service.User.impl;
 
+import com.cdnu.cgi.config.AIConfig;
 import com.cdnu.cgi.dto.*;
 import com.cdnu.cgi.entity.*;
 import com.cdnu.cgi.mapper.*;
 import com.cdnu.cgi.service.User.AIService;
+import com.cdnu.cgi.util.AICacheInvalidator;
+import com.cdnu.cgi.util.AICacheKeys;
+import com.cdnu.cgi.util.AIChatLogWriter;
+import com.cdnu.cgi.util.AIMetrics;
+import com.cdnu.cgi.util.AIRequestScheduler;
 import com.cdnu.cgi.util.AIServiceHelper;
+import com.cdnu.cgi.util.AIServiceUnavailableException;
+import com.cdnu.cgi.util.ChatContextManager;
+import com.cdnu.cgi.util.ChatCursor;
+import com.cdnu.cgi.util.CompetitionSearchIndex;
 import com.cdnu.cgi.util.PromptManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -32,17 +47,32 @@ public class AIServiceImpl implements AIService {
     private final UserMapper userMapper;
     private final UserSkillMapper userSkillMapper;
     private final CompetitionMapper competitionMapper;
+    private final AIConfig aiConfig;
+    private final AIChatLogWriter chatLogWriter;
+    private final ChatConversationMapper conversationMapper;
+    private final ChatContextManager chatContextManager;
+    private final AIMetrics aiMetrics;
+    private final AIRequestScheduler requestScheduler;
+    private final RecommendationSnapshotMapper snapshotMapper;
+    private final CompetitionSearchIndex searchIndex;
+    private final AICacheInvalidator cacheInvalidator;
+    private final TransactionTemplate transactionTemplate;
     // ==================== 主要接口实现 ====================
     
     @Override
     public AIRecommendationResponse getRecommendations(AIRecommendationRequest request) {
-        String cacheKey = "recommend_" + request.getUserId() + "_" + request.hashCode();
+        // 缓存键只由用户ID和版本号组成，命中时不查询数据库；资料、技能或竞赛变更后版本号提升，不会命中旧结果
+        String cacheKey = AICacheKeys.recommendation(request, cacheInvalidator.userVersion(request.getUserId()),
+                cacheInvalidator.competitionVersion());
         
-        return aiServiceHelper.executeWithCache(cacheKey, () -> {
-            // 获取用户信息
+        return aiServiceHelper.executeWithCache(request.getUserId(), cacheKey, () -> {
+            // 未命中时才加载用户信息
             User user = getUserById(request.getUserId());
             List<UserSkill> userSkills = getUserSkills(request.getUserId());
-            List<Competition> competitions = competitionMapper.selectAll();
+            
+            // 本地预排序，只把前K个候选竞赛放入提示词
+            List<Competition> competitions = preRankCompetitions(user, userSkills, competitionMapper.selectAll(),
+                    collectPreferences(request));
             
             // 构建AI提示词
             String prompt = promptManager.buildRecommendationPrompt(user, userSkills, competitions);
@@ -51,27 +81,25 @@ public class AIServiceImpl implements AIService {
             String aiResponse = aiServiceHelper.callAIModel(prompt);
             
             // 解析AI响应并构建结果
-            AIRecommendationResponse response = parseRecommendationResponse(aiResponse, request);
-            
-            // 保存推荐结果到数据库
-            saveRecommendationsToDatabase(request.getUserId(), response);
-            
-            return response;
+            // 推荐记录只由getRecommendations按实际推荐的竞赛写入，这里不落库
+            return parseRecommendationResponse(aiResponse, request);
         }, () -> createFallbackRecommendation(request), "AI推荐");
     }
     
     @Override
     public AIChatResponse chat(AIChatRequest request) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(request.getUserId(), () -> {
             // 获取用户信息
             User user = request.getUserId() != null ? getUserById(request.getUserId()) : null;
             List<UserSkill> userSkills = request.getUserId() != null ? getUserSkills(request.getUserId()) : new ArrayList<>();
             
-            // 构建对话提示词
-            String prompt = promptManager.buildChatPrompt(request.getMessage(), user, userSkills);
+            // 构建带多轮上下文的对话提示词
+            ChatContextManager.ChatContext context = chatContextManager.getContext(request.getUserId(), request.getGroupId());
+            String prompt = promptManager.buildChatPrompt(request.getMessage(), user, userSkills, context);
             
             // 调用AI模型
             String aiResponse = aiServiceHelper.callAIModel(prompt);
+            chatContextManager.appendTurn(request.getUserId(), request.getGroupId(), request.getMessage(), aiResponse);
             
             // 构建响应
             AIChatResponse response = new AIChatResponse();
@@ -84,12 +112,82 @@ public class AIServiceImpl implements AIService {
         }, this::createFallbackChatResponse, "AI聊天");
     }
     
+    @Override
+    public AIChatResponse chatStream(AIChatRequest request, Consumer<String> onToken) {
+        // 获取用户信息
+        User user = request.getUserId() != null ? getUserById(request.getUserId()) : null;
+        List<UserSkill> userSkills = request.getUserId() != null ? getUserSkills(request.getUserId()) : new ArrayList<>();
+        
+        // 构建带多轮上下文的对话提示词
+        ChatContextManager.ChatContext context = chatContextManager.getContext(request.getUserId(), request.getGroupId());
+        String prompt = promptManager.buildChatPrompt(request.getMessage(), user, userSkills, context);
+        
+        // 记录已推送的内容，中途失败时保留已生成的部分
+        StringBuilder streamed = new StringBuilder();
+        try {
+            requestScheduler.withCaller(request.getUserId(),
+                    () -> aiMetrics.withOperation("AI流式聊天", () -> aiServiceHelper.streamAIModel(prompt, token -> {
+                        streamed.append(token);
+                        onToken.accept(token);
+                    })));
+            chatContextManager.appendTurn(request.getUserId(), request.getGroupId(), request.getMessage(), streamed.toString());
+        } catch (Exception e) {
+            if (isClientDisconnect(e)) {
+                // 客户端已断开连接，不再继续生成，也不保存不完整的回复
+                log.warn("AI流式聊天客户端断开 - 用户ID: {}, 组ID: {}, 已输出 {} 字", request.getUserId(),
+                        request.getGroupId(), streamed.length());
+                throw clientDisconnected(e);
+            }
+            log.error("AI流式聊天失败", e);
+            if (streamed.length() == 0) {
+                String fallback = createFallbackChatResponse().getMessage();
+                streamed.append(fallback);
+                onToken.accept(fallback);
+            }
+        }
+        
+        // 构建响应
+        AIChatResponse response = new AIChatResponse();
+        response.setMessage(streamed.toString());
+        response.setTimestamp(new Date());
+        response.setMessageId(UUID.randomUUID().toString());
+        // 流结束后保存完整聊天记录
+        saveChatLog(request.getUserId(), request.getMessage(), response.getMessage(), "CHAT", request.getGroupId());
+        return response;
+    }
+    
+    /**
+     * 流式输出是否因客户端断开而结束：推送失败（UncheckedIOException）、取消（CancellationException），
+     * 或取消时中断工作线程使上游读取以其他异常结束；这些异常经重试和故障转移后会被包装，需检查异常链
+     */
+    private static boolean isClientDisconnect(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UncheckedIOException || cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static RuntimeException clientDisconnected(Exception e) {
+        if (e instanceof UncheckedIOException || e instanceof CancellationException) {
+            return (RuntimeException) e;
+        }
+        CancellationException cancelled = new CancellationException("客户端已断开");
+        cancelled.initCause(e);
+        return cancelled;
+    }
+    
     @Override
     public AIAnalysisResponse analyzeSkills(AIAnalysisRequest request) {
-        String cacheKey = "skills_" + request.getUserId();
+        // 缓存键只由用户ID和版本号组成，命中时不查询数据库
+        String cacheKey = AICacheKeys.skillAnalysis(request.getUserId(), cacheInvalidator.userVersion(request.getUserId()));
         
-        return aiServiceHelper.executeWithCache(cacheKey, () -> {
-            // 获取用户信息
+        return aiServiceHelper.executeWithCache(request.getUserId(), cacheKey, () -> {
+            // 未命中时才加载用户信息
             User user = getUserById(request.getUserId());
             List<UserSkill> userSkills = getUserSkills(request.getUserId());
             
@@ -113,7 +211,7 @@ public class AIServiceImpl implements AIService {
     
     @Override
     public List<Competition> getRecommendations(Long userId, String category, String difficulty) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("为用户 {} 生成AI竞赛推荐，类别: {}, 难度: {}", userId, category, difficulty);
             // 获取用户信息和技能
             User user = getUserById(userId);
@@ -122,6 +220,17 @@ public class AIServiceImpl implements AIService {
                 return new ArrayList<>();
             }
             List<UserSkill> userSkills = getUserSkills(userId);
+            String skillsHash = AICacheKeys.skillsFingerprint(userSkills);
+            boolean unfiltered = (category == null || category.isEmpty()) && (difficulty == null || difficulty.isEmpty());
+            
+            // 无过滤条件且技能自上次生成后未变化时，直接返回预计算结果
+            if (unfiltered) {
+                List<Competition> precomputed = loadPrecomputedRecommendations(userId, skillsHash);
+                if (precomputed != null) {
+                    log.info("返回用户 {} 的预计算推荐 {} 条", userId, precomputed.size());
+                    return precomputed;
+                }
+            }
             
             // 获取所有竞赛并根据类别和难度进行过滤
             List<Competition> allCompetitions = competitionMapper.selectAll();
@@ -132,27 +241,81 @@ public class AIServiceImpl implements AIService {
                 return new ArrayList<>();
             }
             
-            // 构建推荐提示词
-            String prompt = promptManager.buildRecommendationPrompt(user, userSkills, filteredCompetitions);
-            
-            // 调用AI模型获取推荐建议
-            String aiResponse = aiServiceHelper.callAIModel(prompt);
-            log.info("AI推荐建议: {}", aiResponse);
-            
-            // 基于AI建议和用户信息进行智能推荐
-            List<Competition> recommendations = selectRecommendationsBasedOnAI(user, userSkills, filteredCompetitions, aiResponse);
-            
-            // 保存推荐记录
-            saveRecommendationRecords(userId, recommendations, user, userSkills);
-            
-            return recommendations;
+            // 只有完整候选集上的结果才记录快照，供后续请求复用
+            return generateRecommendations(user, userSkills, filteredCompetitions, unfiltered ? skillsHash : null);
         }, ArrayList::new, "AI竞赛推荐");
     }
+    
+    @Override
+    public boolean precomputeRecommendations(Long userId, List<Competition> competitions) {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
+            User user = getUserById(userId);
+            if (user == null || competitions.isEmpty()) {
+                return false;
+            }
+            List<UserSkill> userSkills = getUserSkills(userId);
+            List<Competition> candidates = preRankCompetitions(user, userSkills, competitions,
+                    Collections.emptySet());
+            String aiResponse;
+            try {
+                aiResponse = aiServiceHelper.callAIModel(
+                        promptManager.buildRecommendationPrompt(user, userSkills, candidates));
+            } catch (AIServiceUnavailableException e) {
+                // AI不可用时保留上一次的快照，不用规则推荐覆盖它
+                log.warn("AI推荐预计算不可用，保留用户 {} 原有快照: {}", userId, e.getMessage());
+                return false;
+            }
+            List<Competition> recommendations = selectRecommendationsBasedOnAI(user, userSkills, candidates, aiResponse);
+            return saveRecommendations(user, userSkills, recommendations, AICacheKeys.skillsFingerprint(userSkills));
+        }, () -> false, "AI推荐预计算");
+    }
+    
+    /**
+     * 预排序候选竞赛、调用模型并保存推荐记录，skillsHash不为空时同时写入预计算快照。
+     * AI不可用时只为本次请求返回基于规则的推荐，不落库，避免覆盖由AI生成的记录和快照
+     */
+    private List<Competition> generateRecommendations(User user, List<UserSkill> userSkills,
+                                                      List<Competition> filteredCompetitions, String skillsHash) {
+        // 本地预排序，只把前K个候选竞赛放入提示词
+        List<Competition> candidates = preRankCompetitions(user, userSkills, filteredCompetitions,
+                Collections.emptySet());
+        
+        // 构建推荐提示词
+        String prompt = promptManager.buildRecommendationPrompt(user, userSkills, candidates);
+        
+        // 调用AI模型获取推荐建议，AI不可用时退化为基于规则的推荐
+        String aiResponse;
+        try {
+            aiResponse = aiServiceHelper.callAIModel(prompt);
+        } catch (AIServiceUnavailableException e) {
+            log.warn("AI推荐不可用，使用基于规则的推荐且不保存: {}", e.getMessage());
+            return selectRecommendationsBasedOnAI(user, userSkills, candidates, "");
+        }
+        log.info("AI推荐建议: {}", aiResponse);
+        
+        // 基于AI建议和用户信息进行智能推荐
+        List<Competition> recommendations = selectRecommendationsBasedOnAI(user, userSkills, candidates, aiResponse);
+        saveRecommendations(user, userSkills, recommendations, skillsHash);
+        return recommendations;
+    }
+    
+    /**
+     * 保存推荐记录，skillsHash不为空时同时写入预计算快照，全部写入成功时返回true
+     */
+    private boolean saveRecommendations(User user, List<UserSkill> userSkills, List<Competition> recommendations,
+                                        String skillsHash) {
+        LocalDateTime computedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        boolean saved = saveRecommendationRecords(user.getId(), recommendations, user, userSkills, computedAt);
+        if (saved && skillsHash != null) {
+            return saveRecommendationSnapshot(user.getId(), skillsHash, computedAt, recommendations);
+        }
+        return saved;
+    }
 
 
     @Override
     public Map<String, Object> analyzeUserSkills(Long userId) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("为用户 {} 进行AI技能分析", userId);
             
             // 获取用户信息和技能
@@ -189,7 +352,7 @@ public class AIServiceImpl implements AIService {
     
     @Override
     public Map<String, Object> generateLearningPath(Long userId, Long targetCompetitionId) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("为用户 {} 生成针对竞赛 {} 的学习路径", userId, targetCompetitionId);
             
             // 获取用户和竞赛信息
@@ -220,7 +383,7 @@ public class AIServiceImpl implements AIService {
     
     @Override
     public Map<String, Object> getCompetitionTrends(Long userId, Long participatedCompetitionId, Long availableCompetitionId, Map<String, Object> requestData) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("生成AI竞赛趋势分析 - 用户ID: {}, 参与竞赛ID: {}, 目标竞赛ID: {}", 
                 userId, participatedCompetitionId, availableCompetitionId);
             
@@ -266,7 +429,7 @@ public class AIServiceImpl implements AIService {
     
     @Override
     public Map<String, Object> getPreparationAdvice(Long competitionId, Long userId) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("为用户 {} 生成竞赛 {} 的准备建议", userId, competitionId);
             
             // 获取用户和竞赛信息
@@ -300,19 +463,6 @@ public class AIServiceImpl implements AIService {
         }
     }
     
-    /**
-     * 获取用户的聊天历史分组列表
-     */
-    public List<Map<String, Object>> getChatHistoryGroups(Long userId) {
-        try {
-            log.info("获取用户 {} 的聊天历史分组", userId);
-            return chatLogMapper.selectChatHistoryGroupsByUserId(userId);
-        } catch (Exception e) {
-            log.error("获取聊天历史分组失败", e);
-            return new ArrayList<>();
-        }
-    }
-
     /**
      * 获取用户的聊天历史分组列表
      * 使用批量加载策略减少数据库查询
@@ -323,41 +473,54 @@ public class AIServiceImpl implements AIService {
      */
     @Override
     public List<Map<String, Object>> getChatHistoryGroups(Long userId, int limit) {
+        return getChatHistoryGroups(userId, limit, null);
+    }
+
+    @Override
+    public List<Map<String, Object>> getChatHistoryGroups(Long userId, int limit, String cursor) {
         log.info("获取用户 {} 的聊天历史分组，限制 {} 条", userId, limit);
 
         try {
-            List<Map<String, Object>> chatHistoryGroups = chatLogMapper.selectChatHistoryGroupsByUserId(userId);
-            if (chatHistoryGroups.isEmpty()) {
+            // 对话摘要表按(last_timestamp, group_id)索引，直接取游标之后的一页
+            ChatCursor pageCursor = ChatCursor.decode(cursor);
+            List<Map<String, Object>> limitedGroups = conversationMapper.selectPageByUserId(userId,
+                    pageCursor != null ? pageCursor.getTimestamp() : null,
+                    pageCursor != null ? pageCursor.getKey() : null,
+                    clampPageSize(limit));
+            if (limitedGroups.isEmpty()) {
                 return Collections.emptyList();
             }
 
-            // 限制返回的组数
-            List<Map<String, Object>> limitedGroups = chatHistoryGroups.stream()
-                    .limit(limit)
-                    .collect(Collectors.toList());
-
             List<String> groupIds = limitedGroups.stream()
                     .map(group -> (String)group.get("groupId"))
                     .collect(Collectors.toList());
 
-            List<AIChatLog> allChatLogs = chatLogMapper.selectBatchByUserIdAndGroupIds(userId, groupIds);
+            // 每组只加载最近N条消息，完整记录通过对话分页接口获取
+            List<AIChatLog> allChatLogs = chatLogMapper.selectBatchByUserIdAndGroupIds(userId, groupIds,
+                    aiConfig.getChatLog().getHistoryMessagesPerGroup());
 
             Map<String, List<AIChatLog>> chatLogsByGroup = allChatLogs.stream()
                     .collect(Collectors.groupingBy(AIChatLog::getGroupId));
 
-            // 5. 构建最终返回的结果集
+            // 构建最终返回的结果集
             List<Map<String, Object>> result = new ArrayList<>(limitedGroups.size());
             for (Map<String, Object> group : limitedGroups) {
                 String groupId = (String) group.get("groupId");
 
                 // 构建分组数据
                 Map<String, Object> groupData = new HashMap<>(group);  // 复用已有数据
-                groupData.put("messages", chatLogsByGroup.getOrDefault(groupId, Collections.emptyList()));
+                List<AIChatLog> messages = chatLogsByGroup.getOrDefault(groupId, Collections.emptyList());
+                groupData.put("messages", messages);
+                // messages只是最近的部分消息，hasMore为true时须通过对话分页接口加载完整记录
+                Object messageCount = group.get("messageCount");
+                groupData.put("hasMore", messageCount instanceof Number
+                        && ((Number) messageCount).intValue() > messages.size());
+                groupData.put("cursor", ChatCursor.encode(toLocalDateTime(group.get("timestamp")), groupId));
 
                 result.add(groupData);
             }
 
-            log.info("成功获取用户 {} 的 {} 个聊天历史分组（包含完整对话）", userId, result.size());
+            log.info("成功获取用户 {} 的 {} 个聊天历史分组", userId, result.size());
             return result;
 
         } catch (Exception e) {
@@ -365,46 +528,92 @@ public class AIServiceImpl implements AIService {
             throw e;  // 重新抛出异常，让控制器处理
         }
     }
-    
-    /**
-     * 删除对话组
-     */
-    public boolean deleteConversation(Long userId, String groupId) {
-        try {
-            log.info("删除用户 {} 的对话组 {}", userId, groupId);
-            int deleted = chatLogMapper.deleteByUserIdAndGroupId(userId, groupId);
-            return deleted > 0;
-        } catch (Exception e) {
-            log.error("删除对话失败", e);
-            return false;
+
+    @Override
+    public Map<String, Object> getConversationMessages(Long userId, String groupId, String before, String after, int limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("before和after不能同时指定");
+        }
+        boolean older = after == null;
+        ChatCursor cursor = ChatCursor.decode(older ? before : after);
+        int pageSize = clampPageSize(limit);
+
+        // 多取一条用于判断是否还有下一页
+        List<AIChatLog> messages = new ArrayList<>(chatLogMapper.selectPageByUserIdAndGroupId(userId, groupId,
+                cursor != null ? cursor.getTimestamp() : null,
+                cursor != null ? cursor.getKeyAsLong() : null,
+                older, pageSize + 1));
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages = messages.subList(0, pageSize);
+        }
+        if (older) {
+            Collections.reverse(messages);
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("messages", messages);
+        page.put("hasMore", hasMore);
+        if (!messages.isEmpty()) {
+            AIChatLog first = messages.get(0);
+            AIChatLog last = messages.get(messages.size() - 1);
+            page.put("beforeCursor", ChatCursor.encode(first.getTimestamp(), first.getId()));
+            page.put("afterCursor", ChatCursor.encode(last.getTimestamp(), last.getId()));
+        }
+        return page;
+    }
+
+    private int clampPageSize(int limit) {
+        return Math.min(Math.max(limit, 1), aiConfig.getChatLog().getMaxPageSize());
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof java.sql.Timestamp) {
+            return ((java.sql.Timestamp) value).toLocalDateTime();
         }
+        return null;
+    }
+    
+    @Override
+    public int deleteConversation(Long userId, String groupId) {
+        log.info("删除用户 {} 的对话组 {}", userId, groupId);
+        // 聊天记录和对话摘要在同一事务中删除，提交前不允许滞后写入的记录重新创建摘要
+        Integer deleted = chatLogWriter.deleteConversation(userId, groupId, () -> transactionTemplate.execute(status -> {
+            int count = chatLogMapper.deleteByUserIdAndGroupId(userId, groupId);
+            conversationMapper.deleteByUserIdAndGroupId(userId, groupId);
+            return count;
+        }));
+        chatContextManager.evict(userId, groupId);
+        return deleted != null ? deleted : 0;
     }
     
     @Override
     public List<Competition> intelligentSearch(String query, Long userId) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("用户 {} 进行AI智能搜索: {}", userId, query);
             
-            // 构建智能搜索提示词
-            String prompt = promptManager.buildIntelligentSearchPrompt(query);
-            
-            // 调用AI模型获取搜索建议
-            String aiResponse = aiServiceHelper.callAIModel(prompt);
-            log.info("AI搜索建议: {}", aiResponse);
-            
-            // 获取所有竞赛并进行智能匹配
-            List<Competition> allCompetitions = competitionMapper.selectAll();
+            // 可选：由模型给出相关竞赛类型和关键词，作为低权重扩展词参与检索
+            String expansion = null;
+            if (aiConfig.getSearch().getQueryExpansionEnabled()) {
+                try {
+                    expansion = aiServiceHelper.callAIModel(promptManager.buildIntelligentSearchPrompt(query));
+                    log.info("AI搜索扩展词: {}", expansion);
+                } catch (AIServiceUnavailableException e) {
+                    log.warn("AI搜索扩展不可用，仅使用原查询: {}", e.getMessage());
+                }
+            }
             
-            return allCompetitions.stream()
-                    .filter(competition -> isRelevantToQuery(competition, query))
-                    .limit(10)
-                    .collect(Collectors.toList());
+            // 在本地检索索引上按TF-IDF余弦相似度取前K个
+            return searchIndex.search(query, expansion, aiConfig.getSearch().getTopK());
         }, ArrayList::new, "AI智能搜索");
     }
     
     @Override
     public Map<String, Object> getCompetitionMatchScore(Long competitionId, Long userId) {
-        return aiServiceHelper.executeAIServiceCall(() -> {
+        return aiServiceHelper.executeAIServiceCall(userId, () -> {
             log.info("计算用户 {} 与竞赛 {} 的匹配度", userId, competitionId);
             
             // 获取用户和竞赛信息
@@ -487,7 +696,7 @@ public class AIServiceImpl implements AIService {
         log.info("AI响应内容: {}", aiResponse);
         
         // 解析AI响应中的推荐编号
-        List<Integer> recommendedIndices = parseRecommendedIndices(aiResponse);
+        List<Integer> recommendedIndices = parseRecommendedIndices(aiResponse, allCompetitions.size());
         log.info("解析出的推荐编号: {}", recommendedIndices);
         
         // 根据AI推荐的编号选择竞赛
@@ -515,7 +724,7 @@ public class AIServiceImpl implements AIService {
     /**
      * 解析AI响应中的推荐编号
      */
-    private List<Integer> parseRecommendedIndices(String aiResponse) {
+    private List<Integer> parseRecommendedIndices(String aiResponse, int maxIndex) {
         List<Integer> indices = new ArrayList<>();
         Pattern pattern = Pattern.compile("\\b([1-9]\\d*)\\b");
         Matcher matcher = pattern.matcher(aiResponse);
@@ -523,7 +732,7 @@ public class AIServiceImpl implements AIService {
         while (matcher.find() && indices.size() < 5) {
             try {
                 int number = Integer.parseInt(matcher.group(1));
-                if (number <= 10) { // 假设竞赛编号在1-10之间
+                if (number <= maxIndex) { // 竞赛编号在候选列表范围内
                     indices.add(number);
                 }
             } catch (NumberFormatException e) {
@@ -607,13 +816,88 @@ public class AIServiceImpl implements AIService {
     }
     
     /**
-     * 判断竞赛是否与查询相关
+     * 本地预排序：按扩展匹配度选出前K个候选竞赛，再按提示词token预算截断，
+     * 使推荐提示词的大小不随竞赛总数增长
+     */
+    private List<Competition> preRankCompetitions(User user, List<UserSkill> userSkills,
+                                                  List<Competition> competitions, Set<String> preferences) {
+        AIConfig.RecommendationConfig config = aiConfig.getRecommendation();
+        int topK = Math.max(config.getCandidateTopK(), 1);
+        long now = System.currentTimeMillis();
+        
+        // 小顶堆保留得分最高的K个，每个竞赛只计算一次得分
+        PriorityQueue<Map.Entry<Competition, Double>> heap = new PriorityQueue<>(topK + 1, Map.Entry.comparingByValue());
+        for (Competition competition : competitions) {
+            heap.offer(new AbstractMap.SimpleImmutableEntry<>(competition,
+                    calculatePreRankScore(user, userSkills, competition, preferences, now)));
+            if (heap.size() > topK) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<Competition, Double>> ranked = new ArrayList<>(heap);
+        ranked.sort(Map.Entry.<Competition, Double>comparingByValue().reversed());
+        List<Competition> candidates = ranked.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        
+        List<Competition> fitted = promptManager.fitCompetitionList(candidates, config.getPromptTokenBudget());
+        log.info("推荐候选预排序: 竞赛总数 {}, 候选数 {}", competitions.size(), fitted.size());
+        return fitted;
+    }
+    
+    /**
+     * 预排序得分：在简单匹配度基础上叠加技能命中标题/赛道、偏好类别和报名时间窗口信号
+     */
+    private double calculatePreRankScore(User user, List<UserSkill> userSkills, Competition competition,
+                                         Set<String> preferences, long now) {
+        double score = calculateSimpleMatchScore(user, userSkills, competition);
+        
+        // 技能出现在标题或赛道中
+        String text = ((competition.getTitle() != null ? competition.getTitle() : "") + " "
+                + (competition.getTrack() != null ? competition.getTrack() : "")).toLowerCase();
+        for (UserSkill skill : userSkills) {
+            if (skill.getSkill() != null && !skill.getSkill().isEmpty() && text.contains(skill.getSkill().toLowerCase())) {
+                score += 0.1;
+                break;
+            }
+        }
+        
+        // 用户偏好的类别或兴趣
+        if (!preferences.isEmpty()) {
+            String category = competition.getCategory() != null ? competition.getCategory().toLowerCase() : "";
+            String tags = competition.getTags() != null ? competition.getTags().toLowerCase() : "";
+            if (preferences.stream().anyMatch(p -> category.contains(p) || tags.contains(p))) {
+                score += 0.2;
+            }
+        }
+        
+        // 报名时间窗口：正在报名的优先，已结束的靠后
+        if (competition.getPatiEndtime() != null && competition.getPatiEndtime().getTime() < now) {
+            score -= 0.5;
+        } else if (competition.getPatiStarttime() == null || competition.getPatiStarttime().getTime() <= now) {
+            score += 0.15;
+        } else {
+            score += 0.05;
+        }
+        if (competition.getEndTime() != null && competition.getEndTime().getTime() < now) {
+            score -= 0.5;
+        }
+        return score;
+    }
+    
+    /**
+     * 收集推荐请求中的偏好类别和兴趣
      */
-    private boolean isRelevantToQuery(Competition competition, String query) {
-        String lowerQuery = query.toLowerCase();
-        return competition.getTitle().toLowerCase().contains(lowerQuery) ||
-               competition.getCategory().toLowerCase().contains(lowerQuery) ||
-               (competition.getTags() != null && competition.getTags().toLowerCase().contains(lowerQuery));
+    private Set<String> collectPreferences(AIRecommendationRequest request) {
+        Set<String> preferences = new HashSet<>();
+        if (request.getInterests() != null) {
+            preferences.addAll(request.getInterests());
+        }
+        if (request.getPreference() != null && request.getPreference().getPreferredCategories() != null) {
+            preferences.addAll(request.getPreference().getPreferredCategories());
+        }
+        return preferences.stream()
+                .filter(p -> p != null && !p.trim().isEmpty())
+                .map(p -> p.trim().toLowerCase())
+                .collect(Collectors.toSet());
     }
     
     /**
@@ -652,60 +936,113 @@ public class AIServiceImpl implements AIService {
     // ==================== 数据库操作方法 ====================
     
     /**
-     * 保存推荐结果到数据库
+     * 保存聊天记录（统一方法），由写入器异步批量落库
      */
-    private void saveRecommendationsToDatabase(Long userId, AIRecommendationResponse response) {
-        try {
+    private void saveChatLog(Long userId, String input, String response, String type, String groupId) {
+        AIChatLog chatLog = new AIChatLog();
+        chatLog.setUserId(userId);
+        chatLog.setType(type);
+        chatLog.setInput(input);
+        chatLog.setResponse(response);
+        chatLog.setTimestamp(LocalDateTime.now());
+        chatLog.setGroupId(groupId);
+        chatLogWriter.write(chatLog);
+        log.info("提交聊天记录 - 用户ID: {}, 组ID: {}", userId, groupId);
+    }
+    
+    /**
+     * 保存推荐记录：一次批量upsert，再删除超出保留条数的旧推荐
+     */
+    private boolean saveRecommendationRecords(Long userId, List<Competition> recommendations, User user,
+                                              List<UserSkill> userSkills, LocalDateTime now) {
+        if (recommendations.isEmpty()) {
+            return false;
+        }
+        List<CompetitionRecommendation> records = new ArrayList<>(recommendations.size());
+        for (Competition competition : recommendations) {
+            double matchScore = calculateSimpleMatchScore(user, userSkills, competition);
             CompetitionRecommendation recommendation = new CompetitionRecommendation();
             recommendation.setUserId(userId);
-            recommendation.setCompetitionId(1L);
-            recommendation.setScore(85.0f);
-            recommendation.setSuggestions(response.getSummary());
-            recommendation.setCreatedAt(LocalDateTime.now());
-            
-            recommendationMapper.insert(recommendation);
+            recommendation.setCompetitionId(competition.getId());
+            recommendation.setScore((float) matchScore);
+            recommendation.setSuggestions("AI智能推荐，匹配度: " + Math.round(matchScore * 100) + "%");
+            recommendation.setCreatedAt(now);
+            records.add(recommendation);
+        }
+        try {
+            recommendationMapper.upsertBatch(records);
+            int pruned = recommendationMapper.deleteSupersededByUserId(userId, aiConfig.getRecommendation().getMaxPerUser());
+            if (pruned > 0) {
+                log.info("清理用户 {} 被取代的推荐记录 {} 条", userId, pruned);
+            }
+            return true;
         } catch (Exception e) {
-            log.warn("保存推荐结果到数据库失败", e);
+            log.warn("保存推荐记录失败", e);
+            return false;
         }
     }
     
     /**
-     * 保存聊天记录（统一方法）
+     * 保存预计算快照，连同该次推荐的竞赛ID（按名次排列），保存失败时返回false
      */
-    private void saveChatLog(Long userId, String input, String response, String type, String groupId) {
+    private boolean saveRecommendationSnapshot(Long userId, String skillsHash, LocalDateTime computedAt,
+                                               List<Competition> recommendations) {
+        RecommendationSnapshot snapshot = new RecommendationSnapshot();
+        snapshot.setUserId(userId);
+        snapshot.setSkillsHash(skillsHash);
+        snapshot.setComputedAt(computedAt);
+        snapshot.setCompetitionIds(recommendations.stream()
+                .map(competition -> String.valueOf(competition.getId()))
+                .collect(Collectors.joining(",")));
         try {
-            AIChatLog chatLog = new AIChatLog();
-            chatLog.setUserId(userId);
-            chatLog.setType(type);
-            chatLog.setInput(input);
-            chatLog.setResponse(response);
-            chatLog.setTimestamp(LocalDateTime.now());
-            chatLog.setGroupId(groupId);
-            chatLogMapper.insert(chatLog);
-            log.info("保存聊天记录成功 - 用户ID: {}, 组ID: {}", userId, groupId);
+            snapshotMapper.upsert(snapshot);
+            return true;
         } catch (Exception e) {
-            log.error("保存聊天记录失败 - 用户ID: {}, 组ID: {}", userId, groupId, e);
+            log.warn("保存推荐快照失败 - 用户ID: {}: {}", userId, e.getMessage());
+            return false;
         }
     }
     
     /**
-     * 保存推荐记录
+     * 读取预计算推荐：快照存在、技能指纹一致且未超过有效期时按快照记录的竞赛ID和名次返回该次生成的推荐，否则返回null
      */
-    private void saveRecommendationRecords(Long userId, List<Competition> recommendations, User user, List<UserSkill> userSkills) {
-        for (Competition competition : recommendations) {
-            try {
-                double matchScore = calculateSimpleMatchScore(user, userSkills, competition);
-                CompetitionRecommendation recommendation = new CompetitionRecommendation();
-                recommendation.setUserId(userId);
-                recommendation.setCompetitionId(competition.getId());
-                recommendation.setScore((float) matchScore);
-                recommendation.setSuggestions("AI智能推荐，匹配度: " + Math.round(matchScore * 100) + "%");
-                recommendation.setCreatedAt(LocalDateTime.now());
-                
-                recommendationMapper.insert(recommendation);
-            } catch (Exception e) {
-                log.warn("保存推荐记录失败", e);
+    private List<Competition> loadPrecomputedRecommendations(Long userId, String skillsHash) {
+        try {
+            RecommendationSnapshot snapshot = snapshotMapper.selectByUserId(userId);
+            if (snapshot == null || !skillsHash.equals(snapshot.getSkillsHash())) {
+                return null;
+            }
+            int maxAgeHours = aiConfig.getRecommendation().getPrecomputedMaxAgeHours();
+            if (snapshot.getComputedAt().isBefore(LocalDateTime.now().minusHours(maxAgeHours))) {
+                return null;
+            }
+            if (snapshot.getCompetitionIds() == null || snapshot.getCompetitionIds().isEmpty()) {
+                return null;
+            }
+            List<Long> competitionIds = Arrays.stream(snapshot.getCompetitionIds().split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .map(Long::valueOf)
+                    .collect(Collectors.toList());
+            if (competitionIds.isEmpty()) {
+                return null;
             }
+            // 一次IN查询取回全部竞赛，再按快照中的名次排列，已删除的竞赛跳过
+            Map<Long, Competition> competitions = new HashMap<>();
+            for (Competition competition : competitionMapper.selectByIds(competitionIds)) {
+                competitions.put(competition.getId(), competition);
+            }
+            List<Competition> recommendations = new ArrayList<>();
+            for (Long competitionId : competitionIds) {
+                Competition competition = competitions.get(competitionId);
+                if (competition != null) {
+                    recommendations.add(competition);
+                }
+            }
+            return recommendations.isEmpty() ? null : recommendations;
+        } catch (Exception e) {
+            log.warn("读取预计算推荐失败 - 用户ID: {}: {}", userId, e.getMessage());
+            return null;
         }
     }
     
@@ -7,12 +7,14 @@ import com.cdnu.cgi.entity.CompetitionTeamUser;
 import com.cdnu.cgi.entity.Team;
 import com.cdnu.cgi.entity.TeamMember;
 import com.cdnu.cgi.entity.User;
+import com.cdnu.cgi.event.CompetitionChangedEvent;
 import com.cdnu.cgi.mapper.*;
 import com.cdnu.cgi.service.User.CompetitionService;
 import com.cdnu.cgi.service.config.ConfigService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.sql.Timestamp;
@@ -33,6 +35,7 @@ public class CompetitionServiceImpl implements CompetitionService {
     private ConfigService configService;
     private UserMapper userMapper;
     private TeamMemberMapper teamMemberMapper;
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<Competition> getAllCompetitions() {
@@ -136,12 +139,14 @@ public class CompetitionServiceImpl implements CompetitionService {
         } else {
             competitionMapper.updateById(competition);
         }
+        eventPublisher.publishEvent(new CompetitionChangedEvent(competition.getId()));
         return competition;
     }
 
     @Override
     public void deleteCompetition(Long id) {
         competitionMapper.deleteById(id);
+        eventPublisher.publishEvent(new CompetitionChangedEvent(id));
     }
 
     @Override
@@ -257,6 +262,7 @@ public class CompetitionServiceImpl implements CompetitionService {
         try {
             competition.setCreatedAt(new Timestamp(System.currentTimeMillis()));
             competitionMapper.insert(competition);
+            eventPublisher.publishEvent(new CompetitionChangedEvent(competition.getId()));
             return "竞赛创建成功";
         } catch (Exception e) {
             return "竞赛创建失败：" + e.getMessage();
@@ -273,6 +279,7 @@ public class CompetitionServiceImpl implements CompetitionService {
             Competition existingCompetition = competitionMapper.selectById(competition.getId());
             if (existingCompetition != null) {
                 competitionMapper.updateById(competition);
+                eventPublisher.publishEvent(new CompetitionChangedEvent(competition.getId()));
                 return "竞赛更新成功";
             } else {
                 return "竞赛不存在";
@@ -293,6 +300,7 @@ public class CompetitionServiceImpl implements CompetitionService {
             Competition existingCompetition = competitionMapper.selectById(id);
             if (existingCompetition != null) {
                 competitionMapper.deleteById(id);
+                eventPublisher.publishEvent(new CompetitionChangedEvent(id));
                 return "竞赛删除成功";
             } else {
                 return "竞赛不存在";
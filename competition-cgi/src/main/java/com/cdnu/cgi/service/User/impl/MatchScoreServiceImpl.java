@@ -1,62 +1,44 @@
 package com.cdnu.cgi.service.User.impl;
 
 import com.cdnu.cgi.dto.CompetitionTeamCardDto;
-import com.cdnu.cgi.entity.UserSkill;
-import com.cdnu.cgi.mapper.TeamMapper;
-import com.cdnu.cgi.mapper.UserSkillMapper;
 import com.cdnu.cgi.service.User.MatchScoreService;
+import com.cdnu.cgi.util.SkillDictionary;
+import com.cdnu.cgi.util.SkillSet;
+import com.cdnu.cgi.util.TeamSkillProfiles;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 匹配度计算服务实现类
+ * 用户和团队技能通过SkillDictionary转换为位图，匹配数和重复数按位运算计算
  */
 @Service
 @RequiredArgsConstructor
 public class MatchScoreServiceImpl implements MatchScoreService {
 
-    private final UserSkillMapper userSkillMapper;
-    private final TeamMapper teamMapper;
+    private final SkillDictionary skillDictionary;
+    private final TeamSkillProfiles teamSkillProfiles;
 
     @Override
     public int calculateMatchScore(Long teamId, Long userId) {
         // 获取用户技能
-        List<UserSkill> userSkills = userSkillMapper.selectByUserId(userId);
-        if (userSkills == null || userSkills.isEmpty()) {
+        SkillSet userSkills = skillDictionary.ofUser(userId);
+        if (userSkills.isEmpty()) {
             return 20; // 用户没有技能，返回较低的匹配度
         }
         
-        // 获取团队所需技能 - 使用TeamMapper
-        String teamNeededSkills = teamMapper.selectById(teamId).getNeedSkills();
-        if (teamNeededSkills == null || teamNeededSkills.trim().isEmpty()) {
-            return 60; // 团队没有特定需求，返回中等匹配度
+        // 获取团队所需技能（已按中英文逗号解析）
+        SkillSet teamSkills = teamSkillProfiles.neededSkills(teamId);
+        if (teamSkills == null) {
+            throw new RuntimeException("团队不存在");
         }
-        
-        // 解析团队所需技能（支持中英文逗号）
-        List<String> teamSkillsList = parseSkills(teamNeededSkills);
-        if (teamSkillsList.isEmpty()) {
-            return 60;
+        if (teamSkills.isEmpty()) {
+            return 60; // 团队没有特定需求，返回中等匹配度
         }
         
-        // 解析用户技能
-        List<String> userSkillsList = userSkills.stream()
-                .map(UserSkill::getSkill)
-                .collect(Collectors.toList());
-                
-        // 计算匹配的技能数量
-        long matchCount = userSkillsList.stream()
-                .filter(teamSkillsList::contains)
-                .count();
-                
-        // 计算匹配百分比
-        double matchPercentage = (double) matchCount / teamSkillsList.size();
-        
-        // 转换为0-100的分数，最低20分
-        int score = (int) (20 + matchPercentage * 80);
-        return Math.min(100, score);
+        return neededSkillsScore(userSkills, teamSkills);
     }
     
     @Override
@@ -66,46 +48,28 @@ public class MatchScoreServiceImpl implements MatchScoreService {
         }
         
         // 获取用户技能
-        List<UserSkill> userSkills = userSkillMapper.selectByUserId(userId);
-        List<String> userSkillsList = userSkills.stream()
-                .map(UserSkill::getSkill)
-                .collect(Collectors.toList());
+        SkillSet userSkills = skillDictionary.ofUser(userId);
                 
-        // 获取所有团队信息
+        // 一次查询获取所有团队所需技能，不存在的团队不参与评分
+        Map<Long, SkillSet> neededSkills = teamSkillProfiles.neededSkills(teamIds);
         Map<Long, Integer> result = new HashMap<>();
         for (Long teamId : teamIds) {
-            // 使用TeamMapper获取团队信息
-            String teamNeededSkills = teamMapper.selectById(teamId).getNeedSkills();
-            
-            if (teamNeededSkills == null || teamNeededSkills.trim().isEmpty()) {
-                result.put(teamId, 60); // 团队没有特定需求，返回中等匹配度
+            SkillSet teamSkills = neededSkills.get(teamId);
+            if (teamSkills == null) {
                 continue;
             }
             
-            // 解析团队所需技能（支持中英文逗号）
-            List<String> teamSkillsList = parseSkills(teamNeededSkills);
-            
-            if (teamSkillsList.isEmpty()) {
-                result.put(teamId, 60);
+            if (teamSkills.isEmpty()) {
+                result.put(teamId, 60); // 团队没有特定需求，返回中等匹配度
                 continue;
             }
 
-            if (userSkillsList.isEmpty()) {
+            if (userSkills.isEmpty()) {
                 result.put(teamId, 20); // 用户没有技能，返回较低的匹配度
                 continue;
             }
 
-            // 计算匹配的技能数量
-            long matchCount = userSkillsList.stream()
-                    .filter(teamSkillsList::contains)
-                    .count();
-
-            // 计算匹配百分比
-            double matchPercentage = (double) matchCount / teamSkillsList.size();
-
-            // 转换为0-100的分数，最低20分
-            int score = (int) (20 + matchPercentage * 80);
-            result.put(teamId, Math.min(100, score));
+            result.put(teamId, neededSkillsScore(userSkills, teamSkills));
         }
 
         return result;
@@ -118,98 +82,113 @@ public class MatchScoreServiceImpl implements MatchScoreService {
         }
 
         // 获取用户技能
-        List<UserSkill> userSkills = userSkillMapper.selectByUserId(userId);
-        List<String> userSkillsList = userSkills.stream()
-                .map(UserSkill::getSkill)
-                .collect(Collectors.toList());
+        SkillSet userSkills = skillDictionary.ofUser(userId);
         
         // 获取用户ID字符串，用于检查用户是否已经是团队成员
         String userIdStr = String.valueOf(userId);
 
         // 计算每个团队卡片的匹配度
         for (CompetitionTeamCardDto teamCard : teamCards) {
-            // 检查用户是否已经是团队成员
-            if (teamCard.getMemberIds() != null && Arrays.asList(teamCard.getMemberIds().split(",")).contains(userIdStr)) {
-                // 如果用户已经是团队成员，则匹配度为100%
-                teamCard.setMatchScore(100);
-                continue;
-            }
-            
-            // 如果团队已经有技能，可以直接使用团队技能与用户技能比较
-            if (teamCard.getTeamSkills() != null && !teamCard.getTeamSkills().trim().isEmpty()) {
-                // 团队已有技能，计算用户技能与团队已有技能的互补性
-                List<String> teamExistingSkills = parseSkills(teamCard.getTeamSkills());
-                
-                // 如果用户有团队已有的技能，则匹配度较低（团队已经有这些技能了）
-                Set<String> duplicateSkills = userSkillsList.stream()
-                        .filter(teamExistingSkills::contains)
-                        .collect(Collectors.toSet());
-                
-                // 如果重复技能占用户技能的比例高，则匹配度降低
-                if (!userSkillsList.isEmpty()) {
-                    double duplicateRatio = (double) duplicateSkills.size() / userSkillsList.size();
-                    if (duplicateRatio > 0.7) {
-                        // 技能重复率高，降低匹配度
-                        teamCard.setMatchScore(40);
-                        continue;
-                    }
-                }
-            }
-            
-            // 处理团队所需技能
-            String teamNeededSkills = teamCard.getNeedSkills();
-            
-            if (teamNeededSkills == null || teamNeededSkills.trim().isEmpty()) {
-                teamCard.setMatchScore(60); // 团队没有特定需求，返回中等匹配度
-                continue;
-            }
+            teamCard.setMatchScore(scoreTeamCard(teamCard, userSkills, userIdStr));
+        }
 
-            // 解析团队所需技能（支持中英文逗号）
-            List<String> teamSkillsList = parseSkills(teamNeededSkills);
+        return teamCards;
+    }
+    
+    @Override
+    public int calculateTeamCardMatchScore(CompetitionTeamCardDto teamCard, Long userId) {
+        return scoreTeamCard(teamCard, skillDictionary.ofUser(userId), String.valueOf(userId));
+    }
+    
+    /**
+     * 计算单个团队卡片的匹配度
+     * @param teamCard 团队卡片
+     * @param userSkills 用户技能
+     * @param userIdStr 用户ID字符串
+     * @return 匹配度分数（20-100）
+     */
+    private int scoreTeamCard(CompetitionTeamCardDto teamCard, SkillSet userSkills, String userIdStr) {
+        // 检查用户是否已经是团队成员
+        if (containsMemberId(teamCard.getMemberIds(), userIdStr)) {
+            // 如果用户已经是团队成员，则匹配度为100%
+            return 100;
+        }
+        
+        // 如果团队已经有技能，可以直接使用团队技能与用户技能比较
+        if (teamCard.getTeamSkills() != null && !teamCard.getTeamSkills().trim().isEmpty()) {
+            // 团队已有技能，计算用户技能与团队已有技能的互补性
+            SkillSet teamExistingSkills = skillDictionary.parse(teamCard.getTeamSkills());
             
-            if (teamSkillsList.isEmpty()) {
-                teamCard.setMatchScore(60);
-                continue;
+            // 如果用户有团队已有的技能，则匹配度较低（团队已经有这些技能了）
+            int duplicateSkills = userSkills.overlap(teamExistingSkills);
+            
+            // 如果重复技能占用户技能的比例高，则匹配度降低
+            if (!userSkills.isEmpty()) {
+                double duplicateRatio = (double) duplicateSkills / userSkills.size();
+                if (duplicateRatio > 0.7) {
+                    // 技能重复率高，降低匹配度
+                    return 40;
+                }
             }
+        }
+        
+        // 处理团队所需技能
+        String teamNeededSkills = teamCard.getNeedSkills();
+        
+        if (teamNeededSkills == null || teamNeededSkills.trim().isEmpty()) {
+            return 60; // 团队没有特定需求，返回中等匹配度
+        }
 
-            if (userSkillsList.isEmpty()) {
-                teamCard.setMatchScore(20); // 用户没有技能，返回较低的匹配度
-                continue;
-            }
+        // 解析团队所需技能（支持中英文逗号）
+        SkillSet teamSkills = skillDictionary.parse(teamNeededSkills);
+        
+        if (teamSkills.isEmpty()) {
+            return 60;
+        }
 
-            // 计算匹配的技能数量
-            long matchCount = userSkillsList.stream()
-                    .filter(teamSkillsList::contains)
-                    .count();
+        if (userSkills.isEmpty()) {
+            return 20; // 用户没有技能，返回较低的匹配度
+        }
 
-            // 计算匹配百分比
-            double matchPercentage = (double) matchCount / teamSkillsList.size();
+        return neededSkillsScore(userSkills, teamSkills);
+    }
+    
+    /**
+     * 按用户技能覆盖团队所需技能的比例计算匹配度
+     * @param userSkills 用户技能，非空
+     * @param teamSkills 团队所需技能，非空
+     * @return 20-100的匹配度
+     */
+    private int neededSkillsScore(SkillSet userSkills, SkillSet teamSkills) {
+        // 计算匹配的技能数量
+        int matchCount = userSkills.countIn(teamSkills);
 
-            // 转换为0-100的分数，最低20分
-            int score = (int) (20 + matchPercentage * 80);
-            teamCard.setMatchScore(Math.min(100, score));
-        }
+        // 计算匹配百分比
+        double matchPercentage = (double) matchCount / teamSkills.size();
 
-        return teamCards;
+        // 转换为0-100的分数，最低20分
+        int score = (int) (20 + matchPercentage * 80);
+        return Math.min(100, score);
     }
     
     /**
-     * 处理技能字符串，支持中英文逗号
-     * @param skills 技能字符串
-     * @return 处理后的技能列表
+     * 检查逗号分隔的成员ID中是否包含指定ID，不拆分字符串
+     * @param memberIds 成员ID字符串
+     * @param userId 用户ID字符串
+     * @return 是否包含
      */
-    private List<String> parseSkills(String skills) {
-        if (skills == null || skills.trim().isEmpty()) {
-            return new ArrayList<>();
+    private boolean containsMemberId(String memberIds, String userId) {
+        if (memberIds == null) {
+            return false;
         }
-        
-        // 替换中文逗号为英文逗号
-        String normalizedSkills = skills.replace("，", ",");
-        
-        // 分割并去除空白
-        return Arrays.stream(normalizedSkills.split(","))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toList());
+        int from = 0;
+        while ((from = memberIds.indexOf(userId, from)) >= 0) {
+            int end = from + userId.length();
+            if ((from == 0 || memberIds.charAt(from - 1) == ',') && (end == memberIds.length() || memberIds.charAt(end) == ',')) {
+                return true;
+            }
+            from = end;
+        }
+        return false;
     }
-}
\ No newline at end of file
+}
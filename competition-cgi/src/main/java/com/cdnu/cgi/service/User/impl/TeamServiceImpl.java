@@ -1,25 +1,37 @@
 package com.cdnu.cgi.service.User.impl;
 
 import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.dto.TeammateCandidateDto;
 import com.cdnu.cgi.entity.*;
+import com.cdnu.cgi.event.TeamChangedEvent;
+import com.cdnu.cgi.event.TeamMembersChangedEvent;
 import com.cdnu.cgi.mapper.TeamApplicationMapper;
 import com.cdnu.cgi.mapper.TeamMapper;
 import com.cdnu.cgi.mapper.TeamMemberMapper;
 import com.cdnu.cgi.mapper.UserComprehensiveInfoMapper;
 import com.cdnu.cgi.mapper.UserMapper;
 import com.cdnu.cgi.mapper.CompetitionTeamUserMapper;
-import com.cdnu.cgi.service.User.MatchScoreService;
 import com.cdnu.cgi.service.User.TeamService;
 import com.cdnu.cgi.service.User.UserService;
+import com.cdnu.cgi.util.SkillDictionary;
+import com.cdnu.cgi.util.TeamMatchScoreStore;
+import com.cdnu.cgi.util.TeamSkillIndex;
+import com.cdnu.cgi.util.UserSkillIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Optional;
 import java.util.Date;
 import java.util.stream.Collectors;
@@ -32,14 +44,21 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TeamServiceImpl implements TeamService {
 
+    /** 查找候选队友时因已删除用户而重新检索的最多次数 */
+    private static final int MAX_CANDIDATE_SEARCHES = 3;
+
     private final TeamMapper teamMapper;
     private final TeamMemberMapper teamMemberMapper;
     private final TeamApplicationMapper teamApplicationMapper;
     private final UserComprehensiveInfoMapper userComprehensiveInfoMapper;
     private final UserMapper userMapper;
     private final UserService userService;
-    private final MatchScoreService matchScoreService;
     private final CompetitionTeamUserMapper competitionTeamUserMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TeamMatchScoreStore matchScoreStore;
+    private final TeamSkillIndex teamSkillIndex;
+    private final UserSkillIndex userSkillIndex;
+    private final SkillDictionary skillDictionary;
     
     @Override
     public void createTeam(Team team) {// 插入团队数据
@@ -62,6 +81,7 @@ public class TeamServiceImpl implements TeamService {
                 throw new RuntimeException("创建团队失败：无法添加队长为团队成员 - " + e.getMessage());
             }
         }
+        eventPublisher.publishEvent(new TeamChangedEvent(team.getId()));
     }
     
     @Override
@@ -88,6 +108,7 @@ public class TeamServiceImpl implements TeamService {
                 team.setNeedSkills(teamData.getNeedSkills());
             }
             teamMapper.updateById(team);
+            eventPublisher.publishEvent(new TeamChangedEvent(id));
             return team;
         }
         return null;
@@ -100,6 +121,7 @@ public class TeamServiceImpl implements TeamService {
             teamMemberMapper.deleteByTeamId(id);
             // 再删除团队
             teamMapper.deleteById(id);
+            eventPublisher.publishEvent(new TeamChangedEvent(id));
             return true;
         } catch (Exception e) {
             return false;
@@ -129,6 +151,7 @@ public class TeamServiceImpl implements TeamService {
             teamMember.setStatus("active");
 
             teamMemberMapper.insert(teamMember);
+            eventPublisher.publishEvent(new TeamMembersChangedEvent(teamId, userId));
 
             // ==================== 自动参赛逻辑 ====================
             // 查询该团队已参加的所有竞赛
@@ -183,6 +206,7 @@ public class TeamServiceImpl implements TeamService {
             if (teamMember != null) {
                 // 1. 删除团队成员记录
                 teamMemberMapper.deleteById(teamMember.getId());
+                eventPublisher.publishEvent(new TeamMembersChangedEvent(teamId, userId));
 
                 // 2. 删除该用户与该团队相关的所有申请/邀请记录（无论状态如何）
                 TeamApplication application = teamApplicationMapper.selectByUserIdAndTeamId(userId, teamId);
@@ -342,8 +366,102 @@ public class TeamServiceImpl implements TeamService {
             return teamCards;
         }
         
-        // 直接使用 MatchScoreService 的方法计算适配度
-        return matchScoreService.calculateTeamCardsMatchScores(teamCards, userId);
+        // 读取物化的适配度，团队或用户变化过的部分重新计算
+        return matchScoreStore.applyScores(competitionId, userId, teamCards);
+    }
+    
+    @Override
+    public List<CompetitionTeamCardDto> getRecommendedTeams(Long userId, int limit) {
+        if (userId == null) {
+            throw new RuntimeException("用户ID不能为空");
+        }
+        // 只遍历用户技能对应的倒排表，不扫描全部团队
+        return teamSkillIndex.recommend(userId, Math.min(Math.max(limit, 1), 100));
+    }
+    
+    @Override
+    public List<TeammateCandidateDto> findTeammateCandidates(Long teamId, Long leaderId, int limit) {
+        Team team = teamMapper.selectById(teamId);
+        if (team == null) {
+            throw new RuntimeException("团队不存在");
+        }
+        if (!team.getLeaderId().equals(leaderId)) {
+            throw new RuntimeException("只有队长才能查找候选队友");
+        }
+        
+        // 所需技能ID -> 技能名（保留团队填写时的写法）
+        Map<Integer, String> neededSkills = new LinkedHashMap<>();
+        for (String skill : parseSkills(team.getNeedSkills())) {
+            neededSkills.putIfAbsent(skillDictionary.intern(skill), skill);
+        }
+        
+        // 去掉在职成员已具备的技能，现有成员（含非在职记录）不作为候选人
+        Set<Long> memberIds = new HashSet<>();
+        for (TeamMember member : teamMemberMapper.selectByTeamId(teamId)) {
+            memberIds.add(member.getUserId());
+            if ("active".equals(member.getStatus())) {
+                for (int skillId : skillDictionary.ofUser(member.getUserId()).entryIds()) {
+                    neededSkills.remove(skillId);
+                }
+            }
+        }
+        memberIds.add(team.getLeaderId());
+        if (neededSkills.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        int size = Math.min(Math.max(limit, 1), 100);
+        // 索引中残留已删除的用户时移出索引后重新检索，结果数仍能凑满limit
+        for (int attempt = 1; ; attempt++) {
+            List<UserSkillIndex.Candidate> candidates = userSkillIndex.findCandidates(neededSkills.keySet(), memberIds, size);
+            List<Long> missing = new ArrayList<>();
+            List<TeammateCandidateDto> result = toTeammateCandidates(candidates, neededSkills, missing);
+            if (missing.isEmpty()) {
+                return result;
+            }
+            userSkillIndex.evict(missing);
+            if (candidates.size() < size || attempt >= MAX_CANDIDATE_SEARCHES) {
+                return result;
+            }
+        }
+    }
+    
+    /**
+     * 加载候选人的用户信息并转换为DTO，已删除的用户不出现在结果中，其ID放入missing
+     */
+    private List<TeammateCandidateDto> toTeammateCandidates(List<UserSkillIndex.Candidate> candidates,
+                                                            Map<Integer, String> neededSkills, List<Long> missing) {
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, UserComprehensiveInfo> users = new HashMap<>();
+        List<Long> userIds = candidates.stream().map(UserSkillIndex.Candidate::getUserId).collect(Collectors.toList());
+        for (UserComprehensiveInfo user : userComprehensiveInfoMapper.selectByIds(userIds)) {
+            users.put(user.getId(), user);
+        }
+        
+        List<TeammateCandidateDto> result = new ArrayList<>();
+        for (UserSkillIndex.Candidate candidate : candidates) {
+            UserComprehensiveInfo user = users.get(candidate.getUserId());
+            if (user == null) {
+                // 已删除的用户，由调用方移出索引
+                missing.add(candidate.getUserId());
+                continue;
+            }
+            TeammateCandidateDto dto = new TeammateCandidateDto();
+            dto.setUserId(candidate.getUserId());
+            dto.setUsername(user.getUsername());
+            dto.setRealName(user.getRealName());
+            dto.setMajor(user.getMajor());
+            dto.setAvatarUrl(user.getAvatarUrl());
+            dto.setSkills(user.getSkills());
+            dto.setMatchedSkills(candidate.getMatchedSkillIds().stream()
+                    .map(neededSkills::get)
+                    .collect(Collectors.toList()));
+            dto.setCoverage((int) Math.round(candidate.getCoverage() * 100));
+            result.add(dto);
+        }
+        return result;
     }
     
     // ==================== 团队申请相关方法实现 ====================
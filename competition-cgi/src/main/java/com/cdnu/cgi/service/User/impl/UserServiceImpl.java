@@ -4,6 +4,9 @@ import com.cdnu.cgi.config.UserConfig;
 import com.cdnu.cgi.entity.User;
 import com.cdnu.cgi.entity.UserHonour;
 import com.cdnu.cgi.entity.UserSkill;
+import com.cdnu.cgi.event.UserDeletedEvent;
+import com.cdnu.cgi.event.UserProfileChangedEvent;
+import com.cdnu.cgi.event.UserSkillsChangedEvent;
 import com.cdnu.cgi.mapper.UserHonourMapper;
 import com.cdnu.cgi.mapper.UserMapper;
 import com.cdnu.cgi.mapper.UserSkillMapper;
@@ -12,6 +15,7 @@ import com.cdnu.cgi.service.config.ConfigService;
 import com.cdnu.cgi.util.MD5Util;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -35,6 +39,7 @@ public class UserServiceImpl implements UserService {
     private final UserSkillMapper userSkillMapper;
     private final UserHonourMapper userHonourMapper;
     private final ConfigService configService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${app.file.upload-dir}")
     private String storageRootPath;
@@ -56,6 +61,7 @@ public class UserServiceImpl implements UserService {
             userMapper.insert(user);
         } else {
             userMapper.updateById(user);
+            eventPublisher.publishEvent(new UserProfileChangedEvent(user.getId()));
         }
         return user;
     }
@@ -79,6 +85,7 @@ public class UserServiceImpl implements UserService {
                     }
                 }
                 userMapper.updateById(user);
+                eventPublisher.publishEvent(new UserProfileChangedEvent(user.getId()));
                 return "用户更新成功";
             } else {
                 return "用户不存在";
@@ -91,6 +98,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public void deleteUser(Long id) {
         userMapper.deleteById(id);
+        eventPublisher.publishEvent(new UserDeletedEvent(id));
     }
     
     @Override
@@ -152,12 +160,18 @@ public class UserServiceImpl implements UserService {
         } else {
             userSkillMapper.updateById(userSkill);
         }
+        eventPublisher.publishEvent(new UserSkillsChangedEvent(userSkill.getUserId()));
         return userSkill;
     }
     
     @Override
     public void deleteUserSkill(Long skillId) {
+        // 删除前查出所属用户，用于发布技能变更事件
+        UserSkill existing = userSkillMapper.selectById(skillId);
         userSkillMapper.deleteById(skillId);
+        if (existing != null) {
+            eventPublisher.publishEvent(new UserSkillsChangedEvent(existing.getUserId()));
+        }
     }
     
     @Override
@@ -178,6 +192,7 @@ public class UserServiceImpl implements UserService {
             User existingUser = userMapper.selectById(id);
             if (existingUser != null) {
                 userMapper.deleteById(id);
+                eventPublisher.publishEvent(new UserDeletedEvent(id));
                 return "用户删除成功";
             } else {
                 return "用户不存在";
@@ -5,6 +5,8 @@ import com.cdnu.cgi.config.ParticipateConfig;
 import com.cdnu.cgi.config.UserConfig;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public interface ConfigService {
     /**
@@ -31,6 +33,13 @@ public interface ConfigService {
      */
     AIServiceConfig getAIServiceConfig();
 
+    /**
+     * 获取AI备用提供商链配置，按故障转移顺序排列；未配置时返回空列表，配置无法解析时抛出异常
+     *
+     * @return List<AIServiceConfig>
+     */
+    List<AIServiceConfig> getAIProviderChainConfig();
+
     /**
      *  获取用户配置
      *
@@ -8,10 +8,14 @@ import com.cdnu.cgi.mapper.ConfigMapper;
 import com.cdnu.cgi.service.config.ConfigService;
 import com.cdnu.cgi.config.ParticipateConfig;
 import com.cdnu.cgi.util.JsonUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.List;
+
 @AllArgsConstructor
 @Service
 @Slf4j
@@ -49,6 +53,21 @@ public class ConfigServiceImpl implements ConfigService {
         }
     }
 
+    @Override
+    public List<AIServiceConfig> getAIProviderChainConfig() {
+        // 备用提供商链是可选配置，未配置时只使用首选提供商
+        String configValue = configMapper.selectValueByConfigKey(ConfigEnums.AI_PROVIDER_CHAIN_CONFIG.getKey());
+        if (StringUtils.isBlank(configValue)) {
+            return Collections.emptyList();
+        }
+        try {
+            return JsonUtils.create().fromJson(configValue, new TypeReference<List<AIServiceConfig>>() {});
+        } catch (Exception e) {
+            log.error("解析AI备用提供商链配置失败", e);
+            throw e;
+        }
+    }
+
     @Override
     public UserConfig getUserConfig() {
         String configValue = getConfigValueByConfigKey(ConfigEnums.USER_CONFIG.getKey());
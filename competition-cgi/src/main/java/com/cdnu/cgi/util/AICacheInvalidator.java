@@ -0,0 +1,73 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.event.CompetitionChangedEvent;
+import com.cdnu.cgi.event.UserProfileChangedEvent;
+import com.cdnu.cgi.event.UserSkillsChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI结果缓存失效处理
+ * 维护每个用户的资料版本号和全局竞赛版本号，缓存键由版本号组成，查缓存前无需加载用户资料和技能；
+ * 用户资料或技能变化时提升该用户的版本号并清除其推荐和技能分析缓存，竞赛变化时提升竞赛版本号并清除所有推荐缓存。
+ * 先提升版本号再清除，清除期间按旧版本号写入的条目不会再被命中
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AICacheInvalidator {
+    private final AIResultCache resultCache;
+
+    private final Map<Long, AtomicLong> userVersions = new ConcurrentHashMap<>();
+    private final AtomicLong competitionVersion = new AtomicLong();
+
+    /**
+     * 用户资料和技能的版本号，未变更过的用户为0
+     */
+    public long userVersion(Long userId) {
+        AtomicLong version = userId != null ? userVersions.get(userId) : null;
+        return version != null ? version.get() : 0;
+    }
+
+    /**
+     * 竞赛数据的版本号
+     */
+    public long competitionVersion() {
+        return competitionVersion.get();
+    }
+
+    @EventListener
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        evictUser(event.getUserId());
+    }
+
+    @EventListener
+    public void onUserSkillsChanged(UserSkillsChangedEvent event) {
+        evictUser(event.getUserId());
+    }
+
+    @EventListener
+    public void onCompetitionChanged(CompetitionChangedEvent event) {
+        competitionVersion.incrementAndGet();
+        int removed = resultCache.invalidateByPrefix(AICacheKeys.typePrefix(AICacheKeys.RECOMMEND));
+        log.info("竞赛 {} 变更，清除推荐缓存 {} 条", event.getCompetitionId(), removed);
+    }
+
+    private void evictUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        userVersions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        int removed = resultCache.invalidateByPrefix(AICacheKeys.userPrefix(AICacheKeys.RECOMMEND, userId))
+                + resultCache.invalidateByPrefix(AICacheKeys.userPrefix(AICacheKeys.SKILLS, userId));
+        if (removed > 0) {
+            log.info("用户 {} 资料或技能变更，清除AI缓存 {} 条", userId, removed);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.dto.AIRecommendationRequest;
+import com.cdnu.cgi.entity.UserSkill;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * AI结果缓存键
+ * 键格式为 {类型}:user:{用户ID}:v{版本}.{用户版本号}[.{竞赛版本号}:{请求指纹}]，
+ * 版本号由AICacheInvalidator在资料、技能或竞赛变更时提升，旧键自然不再命中，变更事件再按用户前缀清除旧条目释放空间；
+ * 结果结构或提示词语义变化时提升VERSION使旧缓存全部失效
+ */
+public final class AICacheKeys {
+    private static final int VERSION = 1;
+    public static final String RECOMMEND = "recommend";
+    public static final String SKILLS = "skills";
+
+    private AICacheKeys() {
+    }
+
+    public static String recommendation(AIRecommendationRequest request, long userVersion, long competitionVersion) {
+        return userPrefix(RECOMMEND, request.getUserId()) + "v" + VERSION + "." + userVersion + "."
+                + competitionVersion + ":" + requestFingerprint(request);
+    }
+
+    public static String skillAnalysis(Long userId, long userVersion) {
+        return userPrefix(SKILLS, userId) + "v" + VERSION + "." + userVersion;
+    }
+
+    /**
+     * 某类缓存中指定用户的全部条目前缀
+     */
+    public static String userPrefix(String type, Long userId) {
+        return type + ":user:" + userId + ":";
+    }
+
+    /**
+     * 某类缓存的全部条目前缀
+     */
+    public static String typePrefix(String type) {
+        return type + ":";
+    }
+
+    /**
+     * 用户技能指纹，与技能顺序、大小写和首尾空白无关
+     */
+    public static String skillsFingerprint(List<UserSkill> userSkills) {
+        return MD5Util.md5(canonical(userSkills.stream().map(UserSkill::getSkill).collect(Collectors.toList())));
+    }
+
+    /**
+     * 请求中影响结果的字段规范化后的指纹，列表字段与顺序和大小写无关
+     */
+    private static String requestFingerprint(AIRecommendationRequest request) {
+        AIRecommendationRequest.Preference preference = request.getPreference();
+        String canonical = String.join("|",
+                canonical(request.getSkills()),
+                canonical(request.getInterests()),
+                normalize(request.getLevel()),
+                String.valueOf(request.getLimit()),
+                canonical(preference != null ? preference.getPreferredCategories() : null),
+                normalize(preference != null ? preference.getDifficultyLevel() : null));
+        return MD5Util.md5(canonical).substring(0, 12);
+    }
+
+    private static String canonical(Collection<String> values) {
+        if (values == null) {
+            return "";
+        }
+        return values.stream()
+                .filter(Objects::nonNull)
+                .map(AICacheKeys::normalize)
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,290 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.entity.AIChatLog;
+import com.cdnu.cgi.entity.ChatConversation;
+import com.cdnu.cgi.mapper.AIChatLogMapper;
+import com.cdnu.cgi.mapper.ChatConversationMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * AI聊天记录异步写入器
+ * 聊天记录先进入有界队列，由后台线程批量以多行INSERT写入ai_chat_logs，并在同一事务中累加chat_conversations对话摘要；
+ * 队列满时短暂等待，仍满则在调用线程同步写入（背压）。应用关闭时不中断写线程（中断会打断进行中的批量写入），
+ * 而是放入结束标记唤醒它，由它写完队列中剩余记录后退出；写线程退出后关闭线程再清空一次队列，
+ * 与关闭并发的write在入队后发现已关闭时，能从队列中取回自己的记录则改为同步写入，保证记录不会滞留在队列中。
+ * 写入（含后台线程从取出到写完一批）持有读锁，删除对话组持有写锁并丢弃队列中该组的记录，
+ * 删除后不会再有滞后写入的记录重新创建该组的对话摘要
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AIChatLogWriter {
+    private final AIConfig aiConfig;
+    private final AIChatLogMapper chatLogMapper;
+    private final ChatConversationMapper conversationMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    /** 关闭时放入队列的结束标记，只比较引用 */
+    private static final AIChatLog POISON_PILL = new AIChatLog();
+
+    private final ReentrantReadWriteLock deleteLock = new ReentrantReadWriteLock();
+
+    private BlockingQueue<AIChatLog> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final LongAdder enqueuedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder syncWriteCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder flushMillisTotal = new LongAdder();
+    private final AtomicLong flushMillisMax = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    public void init() {
+        AIConfig.ChatLogConfig config = aiConfig.getChatLog();
+        if (!config.getAsyncEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(config.getQueueCapacity(), 1));
+        running = true;
+        writerThread = new Thread(this::drainLoop, "ai-chat-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            // 队列已满时写线程很快会取出记录，最迟在下一个轮询间隔看到running为false
+            queue.offer(POISON_PILL, 1, TimeUnit.SECONDS);
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warn("聊天记录写线程未在关闭时限内退出，剩余 {} 条记录未写入", queue.size());
+            return;
+        }
+        // 写线程最后一次清空队列之后仍可能有并发的write入队
+        writeRemaining(Math.max(aiConfig.getChatLog().getBatchSize(), 1));
+    }
+
+    /**
+     * 提交一条聊天记录，未开启异步写入时同步写入
+     */
+    public void write(AIChatLog chatLog) {
+        if (queue == null || !running) {
+            insertOneLocked(chatLog);
+            return;
+        }
+        try {
+            if (queue.offer(chatLog, aiConfig.getChatLog().getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                if (!running && queue.remove(chatLog)) {
+                    // 入队时已开始关闭，队列可能不会再被清空，取回后同步写入
+                    insertOneLocked(chatLog);
+                    return;
+                }
+                enqueuedCount.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 队列已满，由调用线程同步写入，避免丢失记录
+        log.warn("聊天记录写入队列已满（{}条），改为同步写入", queue.size());
+        syncWriteCount.increment();
+        insertOneLocked(chatLog);
+    }
+
+    /**
+     * 删除对话组：等待进行中的写入结束，丢弃队列中该组尚未写入的记录，再执行删除；
+     * 删除期间不会开始新的写入，后台线程空闲时最多等待一个flushIntervalMillis。返回删除操作的结果
+     */
+    public <T> T deleteConversation(Long userId, String groupId, Supplier<T> deletion) {
+        deleteLock.writeLock().lock();
+        try {
+            if (queue != null && queue.removeIf(item -> userId.equals(item.getUserId()) && groupId.equals(item.getGroupId()))) {
+                log.info("丢弃用户 {} 对话组 {} 尚未写入的聊天记录", userId, groupId);
+            }
+            return deletion.get();
+        } finally {
+            deleteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 队列深度和写入耗时统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batches = batchCount.sum();
+        stats.put("asyncEnabled", queue != null);
+        stats.put("queueDepth", queue != null ? queue.size() : 0);
+        stats.put("queueCapacity", aiConfig.getChatLog().getQueueCapacity());
+        stats.put("enqueuedCount", enqueuedCount.sum());
+        stats.put("writtenCount", writtenCount.sum());
+        stats.put("failedCount", failedCount.sum());
+        stats.put("syncWriteCount", syncWriteCount.sum());
+        stats.put("batchCount", batches);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("avgFlushMillis", batches == 0 ? 0.0 : (double) flushMillisTotal.sum() / batches);
+        stats.put("maxFlushMillis", flushMillisMax.get());
+        return stats;
+    }
+
+    private void drainLoop() {
+        AIConfig.ChatLogConfig config = aiConfig.getChatLog();
+        int batchSize = Math.max(config.getBatchSize(), 1);
+        List<AIChatLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            // 从取出到写完持有读锁，删除对话组时不会遗漏已取出但尚未写入的记录
+            deleteLock.readLock().lock();
+            try {
+                AIChatLog first = queue.poll(config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first == null || first == POISON_PILL) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                batch.removeIf(item -> item == POISON_PILL);
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("聊天记录后台写入异常", e);
+            } finally {
+                batch.clear();
+                deleteLock.readLock().unlock();
+            }
+        }
+        // 关闭时写完队列中剩余记录
+        writeRemaining(batchSize);
+    }
+
+    /**
+     * 取出队列中剩余的全部记录并分批写入
+     */
+    private void writeRemaining(int batchSize) {
+        deleteLock.readLock().lock();
+        try {
+            List<AIChatLog> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            remaining.removeIf(item -> item == POISON_PILL);
+            if (!remaining.isEmpty()) {
+                log.info("应用关闭，写入剩余聊天记录 {} 条", remaining.size());
+                for (int i = 0; i < remaining.size(); i += batchSize) {
+                    flush(new ArrayList<>(remaining.subList(i, Math.min(i + batchSize, remaining.size()))));
+                }
+            }
+        } finally {
+            deleteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量写入，失败时逐条重试以隔离异常记录
+     */
+    private void flush(List<AIChatLog> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                chatLogMapper.insertBatch(batch);
+                updateConversations(batch);
+            });
+            writtenCount.add(batch.size());
+        } catch (Exception e) {
+            log.warn("批量写入聊天记录失败，改为逐条写入: {}", e.getMessage());
+            batch.forEach(this::insertOne);
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastFlushMillis = elapsed;
+            flushMillisTotal.add(elapsed);
+            flushMillisMax.accumulateAndGet(elapsed, Math::max);
+            batchCount.increment();
+        }
+    }
+
+    /**
+     * 在调用线程同步写入一条记录
+     */
+    private void insertOneLocked(AIChatLog chatLog) {
+        deleteLock.readLock().lock();
+        try {
+            insertOne(chatLog);
+        } finally {
+            deleteLock.readLock().unlock();
+        }
+    }
+
+    private void insertOne(AIChatLog chatLog) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                chatLogMapper.insert(chatLog);
+                updateConversations(Collections.singletonList(chatLog));
+            });
+            writtenCount.increment();
+        } catch (Exception e) {
+            failedCount.increment();
+            log.error("保存聊天记录失败 - 用户ID: {}, 组ID: {}", chatLog.getUserId(), chatLog.getGroupId(), e);
+        }
+    }
+
+    /**
+     * 按(用户, 对话组)合并本批记录后累加到对话摘要，没有用户或组ID的记录不计入
+     */
+    private void updateConversations(List<AIChatLog> chatLogs) {
+        Map<String, ChatConversation> deltas = new LinkedHashMap<>();
+        for (AIChatLog chatLog : chatLogs) {
+            if (chatLog.getUserId() == null || chatLog.getGroupId() == null) {
+                continue;
+            }
+            ChatConversation delta = deltas.computeIfAbsent(chatLog.getUserId() + ":" + chatLog.getGroupId(), key -> {
+                ChatConversation conversation = new ChatConversation();
+                conversation.setUserId(chatLog.getUserId());
+                conversation.setGroupId(chatLog.getGroupId());
+                conversation.setMessageCount(0);
+                return conversation;
+            });
+            delta.setMessageCount(delta.getMessageCount() + 1);
+            if (delta.getFirstInput() == null && chatLog.getInput() != null) {
+                delta.setFirstInput(chatLog.getInput());
+            }
+            if (delta.getLastTimestamp() == null || !chatLog.getTimestamp().isBefore(delta.getLastTimestamp())) {
+                delta.setLastTimestamp(chatLog.getTimestamp());
+                delta.setLastMessage(chatLog.getInput() != null ? chatLog.getInput() : chatLog.getResponse());
+            }
+        }
+        if (!deltas.isEmpty()) {
+            conversationMapper.upsertBatch(new ArrayList<>(deltas.values()));
+        }
+    }
+}
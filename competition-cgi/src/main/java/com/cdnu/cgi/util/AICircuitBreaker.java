@@ -0,0 +1,158 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * AI提供商熔断器
+ * 基于最近N次调用的失败率打开熔断，打开期间直接拒绝调用，
+ * 冷却结束后进入半开状态放行少量探测请求，探测成功则恢复
+ */
+public class AICircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final AIConfig.CircuitBreakerConfig config;
+
+    private State state = State.CLOSED;
+    /** 滑动窗口，true表示失败 */
+    private boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+    private long rejectedCount;
+    private long lastStateChange = System.currentTimeMillis();
+
+    public AICircuitBreaker(String name, AIConfig.CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.window = new boolean[Math.max(config.getSlidingWindowSize(), 1)];
+    }
+
+    /**
+     * 申请调用许可，熔断打开或半开探测名额已满时返回false
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (!config.getEnabled()) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < config.getOpenSeconds() * 1000L) {
+                rejectedCount++;
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight >= config.getHalfOpenMaxCalls()) {
+                rejectedCount++;
+                return false;
+            }
+            halfOpenInFlight++;
+        }
+        return true;
+    }
+
+    /**
+     * 记录一次成功调用
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(halfOpenInFlight - 1, 0);
+            if (++halfOpenSuccesses >= config.getHalfOpenMaxCalls()) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * 记录一次可归因于上游的失败调用
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(halfOpenInFlight - 1, 0);
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= config.getMinimumCalls()
+                    && windowFailures * 100 >= config.getFailureRateThreshold() * windowCount) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * 调用结束但结果与上游健康无关（如参数错误），仅释放半开名额
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(halfOpenInFlight - 1, 0);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 熔断器状态快照
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("name", name);
+        snapshot.put("state", state.name());
+        snapshot.put("bufferedCalls", windowCount);
+        snapshot.put("failedCalls", windowFailures);
+        snapshot.put("failureRate", windowCount == 0 ? 0.0 : windowFailures * 100.0 / windowCount);
+        snapshot.put("rejectedCalls", rejectedCount);
+        snapshot.put("lastStateChange", lastStateChange);
+        return snapshot;
+    }
+
+    private void record(boolean failure) {
+        if (window.length != config.getSlidingWindowSize() && config.getSlidingWindowSize() > 0) {
+            resetWindow();
+        }
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        lastStateChange = System.currentTimeMillis();
+        halfOpenInFlight = 0;
+        halfOpenSuccesses = 0;
+        if (newState == State.OPEN) {
+            openedAt = lastStateChange;
+        } else if (newState == State.CLOSED) {
+            resetWindow();
+        }
+    }
+
+    private void resetWindow() {
+        window = new boolean[Math.max(config.getSlidingWindowSize(), 1)];
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
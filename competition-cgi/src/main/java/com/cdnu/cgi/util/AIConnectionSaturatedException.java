@@ -0,0 +1,14 @@
+package com.cdnu.cgi.util;
+
+import java.io.IOException;
+
+/**
+ * 本地到某个AI提供商的连接许可已用尽时抛出的异常
+ * 属于本地过载而非上游故障，不重试，也不计入提供商熔断器的失败
+ */
+public class AIConnectionSaturatedException extends IOException {
+
+    public AIConnectionSaturatedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,257 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIServiceConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AI提供商HTTP传输层
+ * 基于java.net.http.HttpClient复用长连接（支持HTTP/2），按提供商限制并发连接数，
+ * 并对连接、首字节和整体调用时长分别设置超时，避免上游挂起时长期占用Tomcat线程
+ */
+@Slf4j
+@Component
+public class AIHttpTransport {
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5;
+    private static final int DEFAULT_READ_TIMEOUT = 60;
+    private static final int DEFAULT_TOTAL_TIMEOUT = 120;
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Integer, HttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> connectionPermits = new ConcurrentHashMap<>();
+    private final Map<String, Integer> connectionLimits = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ai-http-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 发送JSON POST请求，返回响应体
+     */
+    public String post(AIServiceConfig config, String url, HttpEntity<?> entity) throws IOException {
+        Semaphore permits = acquire(config);
+        try {
+            HttpRequest request = buildRequest(config, url, entity);
+            CompletableFuture<HttpResponse<String>> future = clientFor(config)
+                    .sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            HttpResponse<String> response;
+            try {
+                response = future.get(totalTimeout(config), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                throw new HttpTimeoutException("AI调用超过总时限" + totalTimeout(config) + "秒: " + url);
+            } catch (InterruptedException e) {
+                // 对冲请求落败时会被中断，取消请求以释放连接
+                future.cancel(true);
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+            checkStatus(response, response.body());
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("AI调用被中断");
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 发送JSON POST请求并逐行读取流式响应，handler返回false时停止读取
+     */
+    public void postForStream(AIServiceConfig config, String url, HttpEntity<?> entity, LineHandler handler) throws IOException {
+        Semaphore permits = acquire(config);
+        try {
+            HttpRequest request = buildRequest(config, url, entity);
+            HttpResponse<InputStream> response = clientFor(config)
+                    .send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() / 100 != 2) {
+                try (InputStream body = response.body()) {
+                    checkStatus(response, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            // 超过总时限后关闭输入流，使阻塞中的readLine立即返回
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                timedOut.set(true);
+                closeQuietly(response.body());
+            }, totalTimeout(config), TimeUnit.SECONDS);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!handler.onLine(line)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    throw new HttpTimeoutException("AI流式调用超过总时限" + totalTimeout(config) + "秒: " + url);
+                }
+                throw e;
+            } finally {
+                deadline.cancel(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("AI调用被中断");
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 各提供商连接占用情况
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        connectionPermits.forEach((provider, permits) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            int limit = connectionLimits.getOrDefault(provider, DEFAULT_MAX_CONNECTIONS);
+            item.put("maxConnections", limit);
+            item.put("activeConnections", limit - permits.availablePermits());
+            item.put("waiting", permits.getQueueLength());
+            stats.put(provider, item);
+        });
+        return stats;
+    }
+
+    /**
+     * 流式响应行处理器
+     */
+    @FunctionalInterface
+    public interface LineHandler {
+        boolean onLine(String line) throws IOException;
+    }
+
+    private HttpRequest buildRequest(AIServiceConfig config, String url, HttpEntity<?> entity) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(readTimeout(config)))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(entity.getBody())));
+        entity.getHeaders().forEach((name, values) -> {
+            // HttpClient自行管理的受限请求头不能手动设置
+            if (!"content-length".equalsIgnoreCase(name) && !"connection".equalsIgnoreCase(name)
+                    && !"host".equalsIgnoreCase(name)) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * 按连接超时复用HttpClient实例，同一实例内部维护长连接池
+     */
+    private HttpClient clientFor(AIServiceConfig config) {
+        int connectTimeout = positiveOrDefault(config.getConnectTimeout(), DEFAULT_CONNECT_TIMEOUT);
+        return clients.computeIfAbsent(connectTimeout, timeout -> HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(timeout))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    /**
+     * 获取提供商连接许可，等待超过连接超时则抛出AIConnectionSaturatedException
+     */
+    private Semaphore acquire(AIServiceConfig config) throws IOException {
+        String provider = providerKey(config);
+        int limit = positiveOrDefault(config.getMaxConnections(), DEFAULT_MAX_CONNECTIONS);
+        connectionLimits.putIfAbsent(provider, limit);
+        Semaphore permits = connectionPermits.computeIfAbsent(provider, key -> new Semaphore(limit, true));
+        int connectTimeout = positiveOrDefault(config.getConnectTimeout(), DEFAULT_CONNECT_TIMEOUT);
+        try {
+            if (!permits.tryAcquire(connectTimeout, TimeUnit.SECONDS)) {
+                throw new AIConnectionSaturatedException("AI提供商 " + provider + " 连接数已满（上限" + limit + "）");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待AI连接被中断");
+        }
+        return permits;
+    }
+
+    private void checkStatus(HttpResponse<?> response, String body) {
+        int status = response.statusCode();
+        if (status / 100 == 2) {
+            return;
+        }
+        long retryAfter = response.headers().firstValue("Retry-After")
+                .map(this::parseRetryAfter)
+                .orElse(-1L);
+        String message = body != null && body.length() > 500 ? body.substring(0, 500) : body;
+        throw new AIProviderException(status, retryAfter, "AI提供商返回状态码 " + status + ": " + message);
+    }
+
+    /**
+     * 解析Retry-After，支持秒数和HTTP日期两种格式
+     */
+    private long parseRetryAfter(String value) {
+        try {
+            return Math.max(Long.parseLong(value.trim()), 0);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(Duration.between(ZonedDateTime.now(), retryAt).getSeconds(), 0);
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+
+    private String providerKey(AIServiceConfig config) {
+        if (config.getServiceName() != null) {
+            return config.getServiceName().toLowerCase();
+        }
+        return URI.create(config.getBaseUrl()).getHost();
+    }
+
+    private int readTimeout(AIServiceConfig config) {
+        return positiveOrDefault(config.getReadTimeout(), DEFAULT_READ_TIMEOUT);
+    }
+
+    private int totalTimeout(AIServiceConfig config) {
+        return positiveOrDefault(config.getTimeout(), DEFAULT_TOTAL_TIMEOUT);
+    }
+
+    private static int positiveOrDefault(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("关闭AI响应流失败", e);
+        }
+    }
+}
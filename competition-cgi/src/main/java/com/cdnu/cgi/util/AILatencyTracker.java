@@ -0,0 +1,89 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI提供商延迟统计
+ * 按提供商保留最近N次成功调用的耗时，用于选择最快的提供商和计算对冲等待时间
+ */
+@Component
+@RequiredArgsConstructor
+public class AILatencyTracker {
+    private final AIConfig aiConfig;
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次成功调用的耗时
+     */
+    public void record(String provider, long millis) {
+        windows.computeIfAbsent(provider, key -> new LatencyWindow(Math.max(aiConfig.getFailover().getLatencyWindowSize(), 1)))
+                .add(millis);
+    }
+
+    /**
+     * 指定百分位的延迟（毫秒），样本不足时返回-1
+     */
+    public long percentile(String provider, int percentile) {
+        LatencyWindow window = windows.get(provider);
+        if (window == null) {
+            return -1;
+        }
+        long[] samples = window.samples();
+        if (samples.length < aiConfig.getFailover().getLatencyMinSamples()) {
+            return -1;
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(Math.min(Math.max(percentile, 1), 100) / 100.0 * samples.length) - 1;
+        return samples[Math.max(index, 0)];
+    }
+
+    /**
+     * 各提供商延迟概况
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        windows.forEach((provider, window) -> {
+            long[] samples = window.samples();
+            Arrays.sort(samples);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("samples", samples.length);
+            if (samples.length > 0) {
+                item.put("p50", samples[(samples.length - 1) / 2]);
+                item.put("p95", samples[(int) Math.ceil(0.95 * samples.length) - 1]);
+                item.put("max", samples[samples.length - 1]);
+            }
+            snapshot.put(provider, item);
+        });
+        return snapshot;
+    }
+
+    /**
+     * 固定容量的环形延迟窗口
+     */
+    private static class LatencyWindow {
+        private final long[] buffer;
+        private int next;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.buffer = new long[size];
+        }
+
+        synchronized void add(long millis) {
+            buffer[next] = millis;
+            next = (next + 1) % buffer.length;
+            count = Math.min(count + 1, buffer.length);
+        }
+
+        synchronized long[] samples() {
+            return Arrays.copyOf(buffer, count);
+        }
+    }
+}
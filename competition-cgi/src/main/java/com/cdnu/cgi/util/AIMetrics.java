@@ -0,0 +1,158 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIServiceConfig;
+import io.micrometer.core.instrument.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI调用指标
+ * 上游延迟、token用量、进行中请求数按提供商、模型和操作名打标签，缓存命中和降级按操作名打标签，
+ * 通过Actuator的/actuator/prometheus暴露。操作名由executeWithCache/executeAIServiceCall放入线程上下文，
+ * 提供商调用可能在对冲线程上执行，因此在提交调用前捕获操作名并在执行线程上重新设置
+ */
+@Component
+@RequiredArgsConstructor
+public class AIMetrics {
+    public static final String UNNAMED_OPERATION = "未命名";
+
+    private static final ThreadLocal<String> OPERATION = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 在指定操作名下执行，期间发起的模型调用都带上该操作标签
+     */
+    public <T> T withOperation(String operation, Callable<T> action) throws Exception {
+        String previous = OPERATION.get();
+        OPERATION.set(operation);
+        try {
+            return action.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public String currentOperation() {
+        String operation = OPERATION.get();
+        return operation != null ? operation : UNNAMED_OPERATION;
+    }
+
+    /**
+     * 记录一次上游调用的耗时、结果和进行中数量，operation为提交调用时捕获的操作名
+     */
+    public <T> T timeUpstream(AIServiceConfig config, String operation, AIProviderRouter.ProviderCall<T> call) throws Exception {
+        String provider = AIProviderRouter.providerKey(config);
+        String model = model(config);
+        AtomicInteger gauge = inFlight.computeIfAbsent(provider + "|" + model + "|" + operation, key -> {
+            AtomicInteger value = new AtomicInteger();
+            Gauge.builder("ai.upstream.inflight", value, AtomicInteger::get)
+                    .description("进行中的AI上游请求数")
+                    .tags("provider", provider, "model", model, "operation", operation)
+                    .register(meterRegistry);
+            return value;
+        });
+        String previous = OPERATION.get();
+        OPERATION.set(operation);
+        gauge.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.call(config);
+        } catch (Exception e) {
+            outcome = e instanceof InterruptedException || Thread.currentThread().isInterrupted() ? "cancelled" : "error";
+            throw e;
+        } finally {
+            gauge.decrementAndGet();
+            Timer.builder("ai.upstream.latency")
+                    .description("AI提供商调用耗时")
+                    .tags("provider", provider, "model", model, "operation", operation, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            restore(previous);
+        }
+    }
+
+    /**
+     * 记录token用量，提供商未返回用量（小于0）时按文本估算
+     */
+    public void recordUsage(AIServiceConfig config, long promptTokens, long completionTokens, String prompt, String completion) {
+        String provider = AIProviderRouter.providerKey(config);
+        String model = model(config);
+        String operation = currentOperation();
+        boolean reported = promptTokens >= 0 && completionTokens >= 0;
+        long input = promptTokens >= 0 ? promptTokens : PromptManager.estimateTokens(prompt);
+        long output = completionTokens >= 0 ? completionTokens : PromptManager.estimateTokens(completion);
+        tokenSummary(provider, model, operation, "prompt", reported).record(input);
+        tokenSummary(provider, model, operation, "completion", reported).record(output);
+    }
+
+    public void recordCache(String operation, boolean hit) {
+        meterRegistry.counter("ai.cache.requests", "operation", operation, "result", hit ? "hit" : "miss").increment();
+    }
+
+    /**
+     * 降级计数，provider为首选提供商；reason为unavailable（所有提供商不可用，由调用方降级）
+     * 或operation_failed（整个操作失败，返回降级结果）
+     */
+    public void recordFallback(AIServiceConfig primary, String operation, String reason) {
+        String provider = primary != null ? AIProviderRouter.providerKey(primary) : "none";
+        String model = primary != null ? model(primary) : "none";
+        meterRegistry.counter("ai.fallback", "provider", provider, "model", model, "operation", operation,
+                "reason", reason).increment();
+    }
+
+    /**
+     * 记录整个操作（含缓存、重试、降级）的耗时
+     */
+    public void recordOperation(String operation, String outcome, long nanos) {
+        Timer.builder("ai.operation.latency")
+                .description("AI业务操作耗时")
+                .tags("operation", operation, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录上游调用在调度队列中的等待时间，outcome为granted或dropped
+     */
+    public void recordQueueWait(String priority, String outcome, long nanos) {
+        Timer.builder("ai.scheduler.wait")
+                .description("AI上游调用排队时间")
+                .tags("priority", priority, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private DistributionSummary tokenSummary(String provider, String model, String operation, String type, boolean reported) {
+        return DistributionSummary.builder("ai.tokens")
+                .description("AI调用token用量")
+                .baseUnit("tokens")
+                .tags("provider", provider, "model", model, "operation", operation, "type", type,
+                        "source", reported ? "provider" : "estimated")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String model(AIServiceConfig config) {
+        return config.getModel() != null ? config.getModel() : "unknown";
+    }
+
+    private static void restore(String previous) {
+        if (previous != null) {
+            OPERATION.set(previous);
+        } else {
+            OPERATION.remove();
+        }
+    }
+}
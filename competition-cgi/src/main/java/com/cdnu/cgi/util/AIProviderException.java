@@ -0,0 +1,20 @@
+package com.cdnu.cgi.util;
+
+import lombok.Getter;
+
+/**
+ * AI提供商返回非2xx状态码时抛出的异常
+ */
+@Getter
+public class AIProviderException extends RuntimeException {
+    /** HTTP状态码 */
+    private final int statusCode;
+    /** Retry-After响应头对应的等待秒数，未提供时为-1 */
+    private final long retryAfterSeconds;
+
+    public AIProviderException(int statusCode, long retryAfterSeconds, String message) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
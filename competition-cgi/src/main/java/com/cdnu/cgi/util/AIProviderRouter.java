@@ -0,0 +1,301 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.config.AIServiceConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * AI提供商路由
+ * 在提供商链上按健康状态和近期延迟排序后依次尝试，失败或超时自动转移到下一个提供商；
+ * 开启对冲后，首选提供商超过延迟百分位仍未返回时并行请求下一个提供商，取先成功的结果；
+ * 对冲请求额外占用一个调度器名额，没有空闲名额时不对冲，上游并发不会超过调度器上限
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AIProviderRouter {
+    private final AIConfig aiConfig;
+    private final AIResilienceExecutor resilienceExecutor;
+    private final AILatencyTracker latencyTracker;
+    private final AIRequestScheduler requestScheduler;
+
+    private final LongAdder failoverCount = new LongAdder();
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder hedgeWinCount = new LongAdder();
+    private final LongAdder hedgeSkipCount = new LongAdder();
+    /** 对冲线程数有上限，线程用尽时不再对冲，上游变慢时不会无限创建线程 */
+    private ThreadPoolExecutor hedgeExecutor;
+
+    @PostConstruct
+    public void init() {
+        int maxThreads = Math.max(aiConfig.getFailover().getHedgeMaxThreads(), 2);
+        AtomicInteger index = new AtomicInteger();
+        hedgeExecutor = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "ai-hedge-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 按提供商链调用，全部失败时抛出AIServiceUnavailableException
+     */
+    public <T> T execute(ProviderCall<T> call) {
+        List<AIServiceConfig> providers = orderedProviders();
+        if (!aiConfig.getFailover().getHedgeEnabled()) {
+            return failover(providers, call, () -> true);
+        }
+        AIServiceUnavailableException lastError = null;
+        for (int i = 0; i < providers.size(); i += 2) {
+            try {
+                if (i + 1 < providers.size()) {
+                    return hedge(providers.get(i), providers.get(i + 1), call, i + 2 >= providers.size());
+                }
+                return attempt(providers.get(i), call, true, () -> true);
+            } catch (AIServiceUnavailableException e) {
+                lastError = e;
+                if (i + 2 < providers.size()) {
+                    failoverCount.increment();
+                }
+            }
+        }
+        throw unavailable(lastError);
+    }
+
+    /**
+     * 按提供商链依次调用（不对冲），canFailover返回false时不再尝试后续提供商（如流式调用已输出部分内容）
+     */
+    public <T> T failover(ProviderCall<T> call, BooleanSupplier canFailover) {
+        return failover(orderedProviders(), call, canFailover);
+    }
+
+    /**
+     * 排序后的提供商链：未熔断的在前，开启preferFastest时按延迟中位数升序，
+     * 延迟样本不足的保持配置顺序排在有样本的之后
+     */
+    public List<AIServiceConfig> orderedProviders() {
+        List<AIServiceConfig> chain = aiConfig.getProviderChain();
+        if (!aiConfig.getFailover().getEnabled() && !chain.isEmpty()) {
+            return Collections.singletonList(chain.get(0));
+        }
+        List<AIServiceConfig> available = new ArrayList<>();
+        List<AIServiceConfig> open = new ArrayList<>();
+        for (AIServiceConfig config : chain) {
+            (resilienceExecutor.isAvailable(providerKey(config)) ? available : open).add(config);
+        }
+        if (aiConfig.getFailover().getPreferFastest()) {
+            Map<AIServiceConfig, Long> medians = new HashMap<>();
+            available.forEach(config -> {
+                long median = latencyTracker.percentile(providerKey(config), 50);
+                medians.put(config, median < 0 ? Long.MAX_VALUE : median);
+            });
+            available.sort(Comparator.comparingLong(medians::get));
+        }
+        available.addAll(open);
+        return available;
+    }
+
+    /**
+     * 故障转移和对冲统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        List<String> order = new ArrayList<>();
+        orderedProviders().forEach(config -> order.add(providerKey(config)));
+        stats.put("order", order);
+        stats.put("failoverCount", failoverCount.sum());
+        stats.put("hedgeCount", hedgeCount.sum());
+        stats.put("hedgeWinCount", hedgeWinCount.sum());
+        stats.put("hedgeSkipCount", hedgeSkipCount.sum());
+        stats.put("hedgeActiveThreads", hedgeExecutor.getActiveCount());
+        stats.put("latency", latencyTracker.snapshot());
+        return stats;
+    }
+
+    private <T> T failover(List<AIServiceConfig> providers, ProviderCall<T> call, BooleanSupplier canFailover) {
+        AIServiceUnavailableException lastError = null;
+        for (int i = 0; i < providers.size(); i++) {
+            boolean last = i == providers.size() - 1;
+            try {
+                return attempt(providers.get(i), call, last, canFailover);
+            } catch (AIServiceUnavailableException e) {
+                lastError = e;
+                if (last || !canFailover.getAsBoolean()) {
+                    throw e;
+                }
+                failoverCount.increment();
+                log.warn("AI提供商 {} 不可用，转移到 {}: {}", providerKey(providers.get(i)),
+                        providerKey(providers.get(i + 1)), e.getMessage());
+            }
+        }
+        throw unavailable(lastError);
+    }
+
+    /**
+     * 首选提供商在对冲等待时间内未返回则并行请求备用提供商，首选提前失败时直接转移到备用提供商。
+     * 对冲线程或调度器名额已用尽时退化为在调用线程上依次调用，或只等待首选提供商
+     */
+    private <T> T hedge(AIServiceConfig primary, AIServiceConfig backup, ProviderCall<T> call, boolean backupIsLast) {
+        CompletionService<T> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<T>> futures = new ArrayList<>(2);
+        Future<T> primaryFuture;
+        try {
+            primaryFuture = completion.submit(() -> attempt(primary, call, false, () -> true));
+        } catch (RejectedExecutionException e) {
+            hedgeSkipCount.increment();
+            return failover(Arrays.asList(primary, backup), call, () -> true);
+        }
+        futures.add(primaryFuture);
+        Throwable lastError = null;
+        // 对冲请求持有的调度器名额，claimed保证名额只由备用请求或此处之一释放
+        AIRequestScheduler.Permit hedgePermit = null;
+        AtomicBoolean claimed = new AtomicBoolean();
+        try {
+            Future<T> done = completion.poll(hedgeDelayMillis(primary), TimeUnit.MILLISECONDS);
+            if (done != null) {
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    lastError = e.getCause();
+                    failoverCount.increment();
+                    log.warn("AI提供商 {} 不可用，转移到 {}: {}", providerKey(primary), providerKey(backup),
+                            lastError.getMessage());
+                }
+            }
+            if (done == null) {
+                // 首选请求仍在进行，对冲会增加一个上游并发，须另外取得调度器名额
+                hedgePermit = requestScheduler.tryAcquire();
+                if (hedgePermit == null) {
+                    hedgeSkipCount.increment();
+                    log.debug("没有空闲的AI调用名额，继续等待AI提供商 {}", providerKey(primary));
+                    return awaitPrimary(primaryFuture, backup, call, backupIsLast);
+                }
+            }
+            AIRequestScheduler.Permit backupPermit = hedgePermit;
+            try {
+                futures.add(completion.submit(() -> {
+                    if (backupPermit != null && !claimed.compareAndSet(false, true)) {
+                        throw new CancellationException("对冲请求已取消");
+                    }
+                    try {
+                        return attempt(backup, call, backupIsLast, () -> true);
+                    } finally {
+                        if (backupPermit != null) {
+                            backupPermit.release();
+                        }
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                hedgeSkipCount.increment();
+                if (done != null) {
+                    return attempt(backup, call, backupIsLast, () -> true);
+                }
+                log.debug("对冲线程已用尽，继续等待AI提供商 {}", providerKey(primary));
+                return awaitPrimary(primaryFuture, backup, call, backupIsLast);
+            }
+            if (done == null) {
+                hedgeCount.increment();
+                log.info("AI提供商 {} 响应超过对冲阈值，并行请求 {}", providerKey(primary), providerKey(backup));
+            }
+            for (int pending = done == null ? 2 : 1; pending > 0; pending--) {
+                Future<T> next = completion.take();
+                try {
+                    T result = next.get();
+                    if (done == null && next != primaryFuture) {
+                        hedgeWinCount.increment();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    lastError = e.getCause();
+                }
+            }
+            throw unavailable(lastError);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIServiceUnavailableException("AI调用被中断", e);
+        } finally {
+            // 取消仍在进行的请求，中断会使其释放连接
+            futures.forEach(future -> future.cancel(true));
+            // 备用请求未开始执行（被拒绝或开始前已取消）时由此处归还对冲名额
+            if (hedgePermit != null && claimed.compareAndSet(false, true)) {
+                hedgePermit.release();
+            }
+        }
+    }
+
+    /**
+     * 不对冲时只等待首选提供商，失败后在调用线程上转移到备用提供商
+     */
+    private <T> T awaitPrimary(Future<T> primaryFuture, AIServiceConfig backup, ProviderCall<T> call,
+                               boolean backupIsLast) throws InterruptedException {
+        try {
+            return primaryFuture.get();
+        } catch (ExecutionException primaryError) {
+            failoverCount.increment();
+            return attempt(backup, call, backupIsLast, () -> true);
+        }
+    }
+
+    /**
+     * 调用单个提供商并记录成功调用的耗时，retry为false时失败后不重试以便尽快转移
+     */
+    private <T> T attempt(AIServiceConfig config, ProviderCall<T> call, boolean retry, BooleanSupplier canRetry) {
+        String provider = providerKey(config);
+        return resilienceExecutor.execute(provider, () -> {
+            long start = System.nanoTime();
+            T result = call.call(config);
+            latencyTracker.record(provider, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        }, () -> retry && canRetry.getAsBoolean());
+    }
+
+    /**
+     * 对冲等待时间：首选提供商的延迟百分位，样本不足时使用默认值
+     */
+    private long hedgeDelayMillis(AIServiceConfig primary) {
+        AIConfig.FailoverConfig failover = aiConfig.getFailover();
+        long delay = latencyTracker.percentile(providerKey(primary), failover.getHedgePercentile());
+        if (delay < 0) {
+            delay = failover.getHedgeDelayMillis();
+        }
+        return Math.max(delay, failover.getHedgeMinDelayMillis());
+    }
+
+    private AIServiceUnavailableException unavailable(Throwable lastError) {
+        if (lastError instanceof AIServiceUnavailableException) {
+            return (AIServiceUnavailableException) lastError;
+        }
+        if (lastError == null) {
+            return new AIServiceUnavailableException("没有可用的AI提供商");
+        }
+        return new AIServiceUnavailableException("所有AI提供商均调用失败: " + lastError.getMessage(), lastError);
+    }
+
+    public static String providerKey(AIServiceConfig config) {
+        return config.getServiceName().toLowerCase();
+    }
+
+    /**
+     * 针对指定提供商的AI调用
+     */
+    @FunctionalInterface
+    public interface ProviderCall<T> {
+        T call(AIServiceConfig config) throws Exception;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cdnu.cgi.util;
+
+import lombok.Getter;
+
+/**
+ * AI接口调用超出限流或每日配额时抛出，由控制器转换为429响应
+ */
+@Getter
+public class AIRateLimitExceededException extends RuntimeException {
+    private final String operation;
+    /** 建议客户端等待的秒数，用于Retry-After响应头 */
+    private final long retryAfterSeconds;
+    /** 是否为每日配额耗尽（否则为短时限流） */
+    private final boolean quotaExhausted;
+
+    public AIRateLimitExceededException(String message, String operation, long retryAfterSeconds, boolean quotaExhausted) {
+        super(message);
+        this.operation = operation;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.quotaExhausted = quotaExhausted;
+    }
+}
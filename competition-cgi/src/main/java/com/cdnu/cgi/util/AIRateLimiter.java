@@ -0,0 +1,368 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.entity.AIUsageQuota;
+import com.cdnu.cgi.mapper.AIUsageQuotaMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI接口按用户和操作限流
+ * 短时限流为无锁令牌桶（CAS更新不可变状态），每日配额在内存中计数并定期把增量批量累加到ai_usage_quota，
+ * 某用户某操作当天首次访问时从数据库加载已用次数，因此重启后配额继续生效（最多丢失一个刷新间隔内的计数）。
+ * 未携带用户ID的调用按客户端地址分别限流，其每日配额只在内存中计数，不写入数据库。
+ * 请求中的userId由客户端提供，因此每次调用先扣除所属客户端地址的令牌桶（所有操作共用），
+ * 通过后才按用户限流和读取配额：轮换userId无法绕过地址限流，新userId带来的数据库查询和计数器也受其约束。
+ * 数据库中超过保留天数的计数每天清理一次
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AIRateLimiter {
+    /** 无法取得客户端地址的匿名调用共用的标识 */
+    private static final String UNKNOWN_CLIENT = "unknown";
+    /** 令牌桶空闲超过该时间后移除（已回满，与新建等价） */
+    private static final long IDLE_BUCKET_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final AIConfig aiConfig;
+    private final AIUsageQuotaMapper quotaMapper;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<QuotaKey, QuotaCounter> quotas = new ConcurrentHashMap<>();
+    private final LongAdder rateLimitedCount = new LongAdder();
+    private final LongAdder quotaExhaustedCount = new LongAdder();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ai-quota-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(aiConfig.getRateLimit().getQuotaFlushIntervalMillis(), 100);
+        flusher.scheduleWithFixedDelay(this::flushAndEvict, interval, interval, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::pruneStoredQuotas, 1, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * 为一次调用获取许可，超出限流或配额时抛出AIRateLimitExceededException；
+     * 先按clientAddress限流，再按用户计，userId为空时按clientAddress计
+     */
+    public void acquire(Long userId, String clientAddress, String operation) {
+        AIConfig.RateLimitConfig config = aiConfig.getRateLimit();
+        if (!config.getEnabled()) {
+            return;
+        }
+        acquireClient(clientAddress, operation, config);
+        Subject user = Subject.of(userId, clientAddress);
+        int capacity = config.resolve(operation, AIConfig.LimitConfig::getCapacity);
+        double refillPerMinute = config.resolve(operation, AIConfig.LimitConfig::getRefillPerMinute);
+        int dailyQuota = config.resolve(operation, AIConfig.LimitConfig::getDailyQuota);
+
+        TokenBucket bucket = null;
+        if (capacity > 0 && refillPerMinute > 0) {
+            bucket = buckets.computeIfAbsent(user + ":" + operation, key -> new TokenBucket(capacity));
+            long waitNanos = bucket.tryAcquire(capacity, refillPerMinute / TimeUnit.MINUTES.toNanos(1), System.nanoTime());
+            if (waitNanos > 0) {
+                rateLimitedCount.increment();
+                throw new AIRateLimitExceededException("请求过于频繁，请稍后再试", operation,
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1), false);
+            }
+        }
+        if (dailyQuota > 0 && !consumeQuota(user, operation, dailyQuota)) {
+            if (bucket != null) {
+                // 配额已用完的请求不占用令牌
+                bucket.refund(capacity);
+            }
+            quotaExhaustedCount.increment();
+            throw new AIRateLimitExceededException("今日" + operation + "次数已用完（" + dailyQuota + "次），请明天再试",
+                    operation, secondsUntilTomorrow(), true);
+        }
+    }
+
+    /**
+     * 扣除客户端地址令牌桶，在任何按用户的限流和数据库读取之前执行
+     */
+    private void acquireClient(String clientAddress, String operation, AIConfig.RateLimitConfig config) {
+        int capacity = config.getClientCapacity();
+        double refillPerMinute = config.getClientRefillPerMinute();
+        if (capacity <= 0 || refillPerMinute <= 0) {
+            return;
+        }
+        TokenBucket bucket = buckets.computeIfAbsent("address:" + addressOf(clientAddress), key -> new TokenBucket(capacity));
+        long waitNanos = bucket.tryAcquire(capacity, refillPerMinute / TimeUnit.MINUTES.toNanos(1), System.nanoTime());
+        if (waitNanos > 0) {
+            rateLimitedCount.increment();
+            throw new AIRateLimitExceededException("请求过于频繁，请稍后再试", operation,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1), false);
+        }
+    }
+
+    private static String addressOf(String clientAddress) {
+        return clientAddress != null && !clientAddress.isEmpty() ? clientAddress : UNKNOWN_CLIENT;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", aiConfig.getRateLimit().getEnabled());
+        stats.put("activeBuckets", buckets.size());
+        stats.put("trackedQuotas", quotas.size());
+        stats.put("rateLimitedCount", rateLimitedCount.sum());
+        stats.put("quotaExhaustedCount", quotaExhaustedCount.sum());
+        return stats;
+    }
+
+    private boolean consumeQuota(Subject user, String operation, int dailyQuota) {
+        QuotaCounter counter = counterFor(user, operation, LocalDate.now());
+        while (true) {
+            int used = counter.used.get();
+            if (used >= dailyQuota) {
+                return false;
+            }
+            if (counter.used.compareAndSet(used, used + 1)) {
+                if (user.userId != null) {
+                    counter.pending.incrementAndGet();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 取计数器，不存在时在map外读取数据库再putIfAbsent，数据库往返期间不占用map的桶锁；
+     * 并发首次访问时可能重复读取，但只有一个计数器生效
+     */
+    private QuotaCounter counterFor(Subject user, String operation, LocalDate date) {
+        QuotaKey key = new QuotaKey(user, operation, date);
+        QuotaCounter counter = quotas.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        int used = 0;
+        if (user.userId != null) {
+            try {
+                Integer stored = quotaMapper.selectUsedCount(user.userId, operation, date);
+                used = stored != null ? stored : 0;
+            } catch (Exception e) {
+                log.warn("读取AI调用配额失败，按0计 - 用户ID: {}, 操作: {}: {}", user.userId, operation, e.getMessage());
+            }
+        }
+        QuotaCounter loaded = new QuotaCounter(used);
+        QuotaCounter existing = quotas.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private void flushAndEvict() {
+        try {
+            flush();
+            LocalDate today = LocalDate.now();
+            // 已刷盘的往日计数不再需要
+            quotas.entrySet().removeIf(entry -> entry.getKey().date.isBefore(today) && entry.getValue().pending.get() == 0);
+            long now = System.nanoTime();
+            buckets.values().removeIf(bucket -> now - bucket.state.get().updatedNanos > IDLE_BUCKET_NANOS);
+        } catch (Exception e) {
+            log.error("刷新AI调用配额失败", e);
+        }
+    }
+
+    /**
+     * 删除超过保留天数的每日计数
+     */
+    private void pruneStoredQuotas() {
+        try {
+            int retentionDays = Math.max(aiConfig.getRateLimit().getQuotaRetentionDays(), 1);
+            int deleted = quotaMapper.deleteBefore(LocalDate.now().minusDays(retentionDays));
+            if (deleted > 0) {
+                log.info("清理 {} 天前的AI调用计数 {} 条", retentionDays, deleted);
+            }
+        } catch (Exception e) {
+            log.warn("清理AI调用计数失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把各计数器的增量批量累加到数据库，失败时把增量加回以便下次重试
+     */
+    private synchronized void flush() {
+        List<AIUsageQuota> increments = new ArrayList<>();
+        List<QuotaCounter> counters = new ArrayList<>();
+        quotas.forEach((key, counter) -> {
+            int delta = counter.pending.getAndSet(0);
+            if (delta > 0) {
+                AIUsageQuota increment = new AIUsageQuota();
+                increment.setUserId(key.subject.userId);
+                increment.setOperation(key.operation);
+                increment.setUsageDate(key.date);
+                increment.setUsedCount(delta);
+                increments.add(increment);
+                counters.add(counter);
+            }
+        });
+        if (increments.isEmpty()) {
+            return;
+        }
+        try {
+            quotaMapper.incrementBatch(increments);
+        } catch (Exception e) {
+            for (int i = 0; i < increments.size(); i++) {
+                counters.get(i).pending.addAndGet(increments.get(i).getUsedCount());
+            }
+            log.warn("保存AI调用配额失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    private static long secondsUntilTomorrow() {
+        LocalDateTime now = LocalDateTime.now();
+        return Math.max(1, Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).getSeconds());
+    }
+
+    /**
+     * 无锁令牌桶，状态为不可变对象，通过CAS整体替换
+     */
+    private static class TokenBucket {
+        private final AtomicReference<BucketState> state;
+
+        private TokenBucket(int capacity) {
+            this.state = new AtomicReference<>(new BucketState(capacity, System.nanoTime()));
+        }
+
+        /**
+         * 获取一个令牌，成功返回0，否则返回需要等待的纳秒数
+         */
+        private long tryAcquire(int capacity, double tokensPerNano, long now) {
+            while (true) {
+                BucketState current = state.get();
+                double tokens = current.refilled(capacity, tokensPerNano, now);
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / tokensPerNano);
+                }
+                if (state.compareAndSet(current, new BucketState(tokens - 1, Math.max(now, current.updatedNanos)))) {
+                    return 0;
+                }
+            }
+        }
+
+        private void refund(int capacity) {
+            while (true) {
+                BucketState current = state.get();
+                BucketState refunded = new BucketState(Math.min(capacity, current.tokens + 1), current.updatedNanos);
+                if (state.compareAndSet(current, refunded)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class BucketState {
+        private final double tokens;
+        private final long updatedNanos;
+
+        private BucketState(double tokens, long updatedNanos) {
+            this.tokens = tokens;
+            this.updatedNanos = updatedNanos;
+        }
+
+        private double refilled(int capacity, double tokensPerNano, long now) {
+            long elapsed = Math.max(0, now - updatedNanos);
+            return Math.min(capacity, tokens + elapsed * tokensPerNano);
+        }
+    }
+
+    private static class QuotaCounter {
+        /** 当日已用次数（含未刷盘部分） */
+        private final AtomicInteger used;
+        /** 尚未写入数据库的增量 */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private QuotaCounter(int used) {
+            this.used = new AtomicInteger(used);
+        }
+    }
+
+    /**
+     * 限流对象：已登录用户按用户ID，匿名调用按客户端地址
+     */
+    private static class Subject {
+        /** 匿名调用为null */
+        private final Long userId;
+        private final String key;
+
+        private Subject(Long userId, String key) {
+            this.userId = userId;
+            this.key = key;
+        }
+
+        static Subject of(Long userId, String clientAddress) {
+            if (userId != null) {
+                return new Subject(userId, "user:" + userId);
+            }
+            return new Subject(null, "client:" + addressOf(clientAddress));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Subject && key.equals(((Subject) o).key));
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    private static class QuotaKey {
+        private final Subject subject;
+        private final String operation;
+        private final LocalDate date;
+
+        private QuotaKey(Subject subject, String operation, LocalDate date) {
+            this.subject = subject;
+            this.operation = operation;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QuotaKey)) {
+                return false;
+            }
+            QuotaKey other = (QuotaKey) o;
+            return subject.equals(other.subject) && operation.equals(other.operation) && date.equals(other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(subject, operation, date);
+        }
+    }
+}
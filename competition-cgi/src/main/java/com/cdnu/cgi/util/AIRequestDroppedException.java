@@ -0,0 +1,11 @@
+package com.cdnu.cgi.util;
+
+/**
+ * 上游调用在调度队列中等待超过时限被丢弃时抛出，调用方按服务不可用降级
+ */
+public class AIRequestDroppedException extends AIServiceUnavailableException {
+
+    public AIRequestDroppedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,326 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 上游模型调用调度器
+ * 全局限制同时进行的上游调用数，超出时排队；队列按优先级分为交互、按需分析、批处理三类，
+ * 高优先级非空时先调度高优先级。同一优先级内按用户做开始时间公平排队（SFQ），
+ * 每个请求的代价为提示词估算token数，大请求较多的用户不会挤占其他用户。
+ * 排队超过所属优先级时限（从调用方操作开始计时）的请求直接丢弃，不再占用上游容量
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AIRequestScheduler {
+    private static final ThreadLocal<Caller> CALLER = new ThreadLocal<>();
+    /** 无调用方上下文的请求共用的用户ID */
+    private static final long ANONYMOUS_USER_ID = 0L;
+
+    private final AIConfig aiConfig;
+    private final AIMetrics metrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, FairQueue> queues = new EnumMap<>(Priority.class);
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder droppedCount = new LongAdder();
+    private int active;
+
+    {
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new FairQueue());
+        }
+    }
+
+    public enum Priority {
+        /** 交互式聊天 */
+        INTERACTIVE,
+        /** 用户按需发起的分析 */
+        ON_DEMAND,
+        /** 后台批处理 */
+        BATCH
+    }
+
+    /**
+     * 在指定用户的上下文中执行，期间发起的模型调用按该用户公平排队，排队时限从此刻开始计算；
+     * 已在调用方上下文中时沿用外层的开始时间
+     */
+    public <T> T withCaller(Long userId, Callable<T> action) throws Exception {
+        Caller previous = CALLER.get();
+        long startNanos = previous != null ? previous.startNanos : System.nanoTime();
+        CALLER.set(new Caller(userId != null ? userId : ANONYMOUS_USER_ID, startNanos));
+        try {
+            return action.call();
+        } finally {
+            if (previous != null) {
+                CALLER.set(previous);
+            } else {
+                CALLER.remove();
+            }
+        }
+    }
+
+    /**
+     * 获取一个上游调用名额，必要时排队等待；排队超时或线程被中断时抛出AIRequestDroppedException。
+     * 返回的Permit必须在调用结束后释放
+     */
+    public Permit acquire(String operation, int cost) {
+        AIConfig.SchedulerConfig config = aiConfig.getScheduler();
+        if (!config.getEnabled()) {
+            return Permit.NOOP;
+        }
+        Priority priority = priorityOf(operation, config);
+        Caller caller = CALLER.get();
+        long now = System.nanoTime();
+        long timeoutMillis = timeoutMillis(priority, config);
+        long deadline = timeoutMillis > 0 ? (caller != null ? caller.startNanos : now) + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+                : Long.MAX_VALUE;
+        Ticket ticket;
+        lock.lock();
+        try {
+            if (active < Math.max(config.getMaxConcurrency(), 1) && allQueuesEmpty()) {
+                active++;
+                metrics.recordQueueWait(priority.name(), "granted", 0);
+                return new Permit(this);
+            }
+            ticket = new Ticket(caller != null ? caller.userId : ANONYMOUS_USER_ID, Math.max(cost, 1),
+                    deadline, sequence.incrementAndGet(), lock.newCondition());
+            queues.get(priority).offer(ticket);
+            try {
+                while (ticket.state == TicketState.WAITING) {
+                    long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queues.get(priority).remove(ticket);
+                        ticket.state = TicketState.DROPPED;
+                        break;
+                    }
+                    if (remaining == Long.MAX_VALUE) {
+                        ticket.granted.await();
+                    } else {
+                        ticket.granted.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (ticket.state == TicketState.GRANTED) {
+                    // 名额已转交给本请求，中断后立即归还
+                    releaseSlot();
+                } else {
+                    queues.get(priority).remove(ticket);
+                }
+                throw new AIRequestDroppedException("等待AI调用名额时被中断: " + operation);
+            }
+        } finally {
+            lock.unlock();
+        }
+        long waited = System.nanoTime() - now;
+        if (ticket.state == TicketState.DROPPED) {
+            droppedCount.increment();
+            metrics.recordQueueWait(priority.name(), "dropped", waited);
+            log.warn("AI调用排队超时被丢弃 - 操作: {}, 优先级: {}, 用户ID: {}, 排队: {}ms",
+                    operation, priority, ticket.userId, TimeUnit.NANOSECONDS.toMillis(waited));
+            throw new AIRequestDroppedException("AI调用排队超时: " + operation);
+        }
+        metrics.recordQueueWait(priority.name(), "granted", waited);
+        return new Permit(this);
+    }
+
+    /**
+     * 不排队地获取一个额外的上游调用名额（如对冲请求），没有空闲名额或有请求在排队时返回null。
+     * 返回的Permit必须在调用结束后释放
+     */
+    public Permit tryAcquire() {
+        AIConfig.SchedulerConfig config = aiConfig.getScheduler();
+        if (!config.getEnabled()) {
+            return Permit.NOOP;
+        }
+        lock.lock();
+        try {
+            if (active < Math.max(config.getMaxConcurrency(), 1) && allQueuesEmpty()) {
+                active++;
+                return new Permit(this);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("active", active);
+            Map<String, Integer> queued = new LinkedHashMap<>();
+            queues.forEach((priority, queue) -> queued.put(priority.name(), queue.size()));
+            stats.put("queued", queued);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxConcurrency", aiConfig.getScheduler().getMaxConcurrency());
+        stats.put("droppedCount", droppedCount.sum());
+        return stats;
+    }
+
+    /**
+     * 归还名额：转交给下一个未过期的排队请求，队列中已过期的请求顺带丢弃
+     */
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (Priority priority : Priority.values()) {
+                FairQueue queue = queues.get(priority);
+                Ticket next;
+                while ((next = queue.poll()) != null) {
+                    if (next.deadline <= now) {
+                        next.state = TicketState.DROPPED;
+                        next.granted.signal();
+                        continue;
+                    }
+                    next.state = TicketState.GRANTED;
+                    next.granted.signal();
+                    return;
+                }
+            }
+            active--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean allQueuesEmpty() {
+        for (FairQueue queue : queues.values()) {
+            if (queue.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Priority priorityOf(String operation, AIConfig.SchedulerConfig config) {
+        if (config.getInteractiveOperations().contains(operation)) {
+            return Priority.INTERACTIVE;
+        }
+        if (config.getBatchOperations().contains(operation)) {
+            return Priority.BATCH;
+        }
+        return Priority.ON_DEMAND;
+    }
+
+    private static long timeoutMillis(Priority priority, AIConfig.SchedulerConfig config) {
+        switch (priority) {
+            case INTERACTIVE:
+                return config.getInteractiveTimeoutMillis();
+            case BATCH:
+                return config.getBatchTimeoutMillis();
+            default:
+                return config.getOnDemandTimeoutMillis();
+        }
+    }
+
+    /**
+     * 上游调用名额，重复释放无效
+     */
+    public static class Permit {
+        static final Permit NOOP = new Permit(null);
+
+        private final AIRequestScheduler scheduler;
+        private boolean released;
+
+        private Permit(AIRequestScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        public void release() {
+            if (scheduler != null && !released) {
+                released = true;
+                scheduler.releaseSlot();
+            }
+        }
+    }
+
+    /**
+     * 单个优先级内的开始时间公平队列（Start-time Fair Queueing）
+     * 请求的开始标签为max(虚拟时间, 该用户上一个请求的结束标签)，结束标签为开始标签加代价，
+     * 按开始标签出队并把虚拟时间推进到该标签。调用方持有锁
+     */
+    private static class FairQueue {
+        private final PriorityQueue<Ticket> tickets = new PriorityQueue<>(
+                Comparator.comparingDouble((Ticket ticket) -> ticket.startTag).thenComparingLong(ticket -> ticket.sequence));
+        private final Map<Long, Double> lastFinish = new HashMap<>();
+        private double virtualTime;
+
+        void offer(Ticket ticket) {
+            ticket.startTag = Math.max(virtualTime, lastFinish.getOrDefault(ticket.userId, 0.0));
+            lastFinish.put(ticket.userId, ticket.startTag + ticket.cost);
+            tickets.offer(ticket);
+        }
+
+        Ticket poll() {
+            Ticket ticket = tickets.poll();
+            if (ticket != null) {
+                virtualTime = Math.max(virtualTime, ticket.startTag);
+            }
+            if (tickets.isEmpty()) {
+                // 队列排空后各用户的结束标签都不再影响后续请求
+                lastFinish.clear();
+            }
+            return ticket;
+        }
+
+        void remove(Ticket ticket) {
+            tickets.remove(ticket);
+            if (tickets.isEmpty()) {
+                lastFinish.clear();
+            }
+        }
+
+        int size() {
+            return tickets.size();
+        }
+    }
+
+    private enum TicketState {
+        WAITING, GRANTED, DROPPED
+    }
+
+    private static class Ticket {
+        private final long userId;
+        private final int cost;
+        private final long deadline;
+        private final long sequence;
+        private final Condition granted;
+        private double startTag;
+        private TicketState state = TicketState.WAITING;
+
+        private Ticket(long userId, int cost, long deadline, long sequence, Condition granted) {
+            this.userId = userId;
+            this.cost = cost;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.granted = granted;
+        }
+    }
+
+    private static class Caller {
+        private final long userId;
+        private final long startNanos;
+
+        private Caller(long userId, long startNanos) {
+            this.userId = userId;
+            this.startNanos = startNanos;
+        }
+    }
+}
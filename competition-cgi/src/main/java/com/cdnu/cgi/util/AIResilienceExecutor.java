@@ -0,0 +1,148 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * AI调用容错执行器
+ * 对429、5xx和超时等可重试错误按指数退避加随机抖动重试（遵循Retry-After），
+ * 并按提供商维护熔断器，熔断期间直接失败以便调用方立即走降级逻辑
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AIResilienceExecutor {
+    private final AIConfig aiConfig;
+    private final Map<String, AICircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 带重试和熔断的调用
+     */
+    public <T> T execute(String provider, AICall<T> call) {
+        return execute(provider, call, () -> true);
+    }
+
+    /**
+     * 带重试和熔断的调用，canRetry返回false时不再重试（如流式调用已输出部分内容）
+     */
+    public <T> T execute(String provider, AICall<T> call, BooleanSupplier canRetry) {
+        AICircuitBreaker breaker = getBreaker(provider);
+        AIConfig.RetryConfig retry = aiConfig.getRetry();
+        int maxAttempts = retry.getEnabled() ? Math.max(retry.getMaxAttempts(), 1) : 1;
+
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.tryAcquirePermission()) {
+                throw new AIServiceUnavailableException("AI提供商 " + provider + " 已熔断，暂停调用");
+            }
+            try {
+                T result = call.call();
+                breaker.onSuccess();
+                return result;
+            } catch (Exception e) {
+                // 不可重试的错误（4xx、本地连接耗尽等）不计入熔断失败
+                boolean retryable = isRetryable(e);
+                if (retryable) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onIgnored();
+                }
+                if (!retryable || attempt >= maxAttempts || !canRetry.getAsBoolean()) {
+                    throw new AIServiceUnavailableException("AI提供商 " + provider + " 调用失败: " + e.getMessage(), e);
+                }
+                long delayMillis = backoffMillis(attempt, e);
+                if (delayMillis < 0) {
+                    throw new AIServiceUnavailableException("AI提供商 " + provider + " 要求的等待时间过长，放弃重试", e);
+                }
+                log.warn("AI提供商 {} 第{}次调用失败，{}毫秒后重试: {}", provider, attempt, delayMillis, e.getMessage());
+                sleep(delayMillis, e);
+            }
+        }
+    }
+
+    /**
+     * 提供商熔断是否允许调用（不占用半开探测名额）
+     */
+    public boolean isAvailable(String provider) {
+        return getBreaker(provider).getState() != AICircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * 所有提供商熔断器状态
+     */
+    public Map<String, Object> getBreakerStates() {
+        Map<String, Object> states = new LinkedHashMap<>();
+        breakers.forEach((provider, breaker) -> states.put(provider, breaker.snapshot()));
+        return states;
+    }
+
+    public AICircuitBreaker getBreaker(String provider) {
+        return breakers.computeIfAbsent(provider, name -> new AICircuitBreaker(name, aiConfig.getCircuitBreaker()));
+    }
+
+    /**
+     * 仅对限流、服务端错误、超时和连接失败重试；本地连接许可耗尽不是上游故障，不重试
+     */
+    private boolean isRetryable(Exception e) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause instanceof AIConnectionSaturatedException) {
+                return false;
+            }
+            if (cause instanceof AIProviderException) {
+                int status = ((AIProviderException) cause).getStatusCode();
+                return status == 429 || status >= 500;
+            }
+            if (cause instanceof HttpTimeoutException || cause instanceof ConnectException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 指数退避加抖动：在 [delay/2, delay] 范围内随机，Retry-After更长时以其为准，超过上限返回-1
+     */
+    private long backoffMillis(int attempt, Exception e) {
+        AIConfig.RetryConfig retry = aiConfig.getRetry();
+        long maxDelay = retry.getMaxDelaySeconds() * 1000L;
+        long exponential = Math.min(retry.getDelaySeconds() * 1000L * (1L << Math.min(attempt - 1, 20)), maxDelay);
+        long delay = exponential / 2 + ThreadLocalRandom.current().nextLong(exponential / 2 + 1);
+
+        if (e instanceof AIProviderException && ((AIProviderException) e).getRetryAfterSeconds() >= 0) {
+            long retryAfter = ((AIProviderException) e).getRetryAfterSeconds() * 1000L;
+            if (retryAfter > maxDelay) {
+                return -1;
+            }
+            delay = Math.max(delay, retryAfter);
+        }
+        return delay;
+    }
+
+    private void sleep(long millis, Exception cause) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AIServiceUnavailableException("AI调用重试被中断", cause);
+        }
+    }
+
+    /**
+     * 可抛出受检异常的AI调用
+     */
+    @FunctionalInterface
+    public interface AICall<T> {
+        T call() throws Exception;
+    }
+}
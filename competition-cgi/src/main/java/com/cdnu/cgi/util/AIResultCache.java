@@ -0,0 +1,433 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI结果缓存
+ * 按条目数和估算字节数限制容量，使用W-TinyLFU策略淘汰低频条目，并在后台定期清理过期条目。
+ * 新条目先进入容量约为段上限1%的LRU窗口区，被挤出窗口时再与主区最久未访问的条目比较访问频率，
+ * 频率不低于对方时进入主区，使突发的新热点能被接纳，只访问一次的条目不会挤掉主区的高频条目。
+ * 按键哈希分为多个段，每段有独立的锁、窗口区、主区和频率草图，容量上限平均分摊到各段；
+ * 条目大小在加锁前估算，不同段的读写互不阻塞
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AIResultCache {
+    private static final int SEGMENT_COUNT = 16;
+    /** 窗口区占段容量的百分比 */
+    private static final int WINDOW_PERCENT = 1;
+
+    private final AIConfig aiConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Segment[] segments;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() {
+        AIConfig.CacheConfig config = aiConfig.getCache();
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(Math.max(config.getMaxSize() / SEGMENT_COUNT, 16));
+        }
+        int interval = Math.max(config.getCleanupIntervalSeconds(), 1);
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ai-cache-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::cleanUp, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取缓存值，未命中或已过期时返回null
+     */
+    public Object get(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.sketch.increment(key);
+            CacheItem item = segment.get(key);
+            if (item == null) {
+                missCount.increment();
+                return null;
+            }
+            if (item.isExpired()) {
+                segment.remove(key);
+                expirationCount.increment();
+                missCount.increment();
+                return null;
+            }
+            hitCount.increment();
+            return item.getData();
+        }
+    }
+
+    /**
+     * 写入缓存，超出容量时按访问频率淘汰
+     */
+    public void put(String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        // 序列化估算较慢，在锁外完成
+        long weight = estimateWeight(key, value);
+        long maxBytes = aiConfig.getCache().getMaxBytes();
+        if (maxBytes > 0 && weight > maxBytes) {
+            log.warn("缓存条目{}大小{}字节超过上限，跳过缓存", key, weight);
+            return;
+        }
+        CacheItem item = new CacheItem(value, aiConfig.getCache().getTtlMinutes(), weight);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.sketch.increment(key);
+            if (!segment.replace(key, item)) {
+                segment.window.put(key, item);
+                segment.weightedSize += weight;
+            }
+            evictIfNeeded(segment);
+        }
+    }
+
+    /**
+     * 移除指定缓存
+     */
+    public void invalidate(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * 移除指定前缀的所有缓存
+     */
+    public int invalidateByPrefix(String prefix) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (LinkedHashMap<String, CacheItem> region : segment.regions()) {
+                    Iterator<Map.Entry<String, CacheItem>> iterator = region.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<String, CacheItem> entry = iterator.next();
+                        if (entry.getKey().startsWith(prefix)) {
+                            segment.weightedSize -= entry.getValue().getWeight();
+                            iterator.remove();
+                            removed++;
+                        }
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.window.clear();
+                segment.main.clear();
+                segment.weightedSize = 0;
+            }
+        }
+    }
+
+    /**
+     * 清理过期条目
+     */
+    public void cleanUp() {
+        int expired = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (LinkedHashMap<String, CacheItem> region : segment.regions()) {
+                    Iterator<Map.Entry<String, CacheItem>> iterator = region.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        CacheItem item = iterator.next().getValue();
+                        if (item.isExpired()) {
+                            segment.weightedSize -= item.getWeight();
+                            iterator.remove();
+                            expired++;
+                        }
+                    }
+                }
+            }
+        }
+        if (expired > 0) {
+            expirationCount.add(expired);
+            log.debug("清理过期AI缓存 {} 条", expired);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hits = hitCount.sum();
+        long misses = missCount.sum();
+        int size = 0;
+        long weightedBytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+                weightedBytes += segment.weightedSize;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("weightedBytes", weightedBytes);
+        stats.put("maxSize", aiConfig.getCache().getMaxSize());
+        stats.put("maxBytes", aiConfig.getCache().getMaxBytes());
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictionCount", evictionCount.sum());
+        stats.put("expirationCount", expirationCount.sum());
+        return stats;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 段超出条目数或字节上限（总上限按段平分）时淘汰。调用方持有段锁：
+     * 窗口区超出容量时，其最久未访问的条目作为候选者移入主区；
+     * 随后主区最久未访问的条目作为淘汰者，过期则直接移除，否则与候选者比较访问频率，
+     * 候选者频率不低于淘汰者时淘汰后者，否则淘汰候选者。没有候选者时按LRU淘汰主区条目，
+     * 主区为空时淘汰窗口区最久未访问的条目
+     */
+    private void evictIfNeeded(Segment segment) {
+        int maxSize = aiConfig.getCache().getMaxSize();
+        long maxBytes = aiConfig.getCache().getMaxBytes();
+        int segmentMaxSize = maxSize > 0 ? Math.max((maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT, 1) : 0;
+        long segmentMaxBytes = maxBytes > 0 ? Math.max((maxBytes + SEGMENT_COUNT - 1) / SEGMENT_COUNT, 1) : 0;
+        int windowMaxSize = Math.max(segmentMaxSize * WINDOW_PERCENT / 100, 1);
+
+        String candidateKey = null;
+        while (segment.window.size() > windowMaxSize) {
+            candidateKey = segment.window.keySet().iterator().next();
+            segment.main.put(candidateKey, segment.window.remove(candidateKey));
+        }
+
+        while ((segmentMaxSize > 0 && segment.size() > segmentMaxSize)
+                || (segmentMaxBytes > 0 && segment.weightedSize > segmentMaxBytes)) {
+            if (segment.main.isEmpty()) {
+                segment.remove(segment.window.keySet().iterator().next());
+                evictionCount.increment();
+                continue;
+            }
+            // 通过迭代器读取头部条目，get会改变访问顺序
+            Map.Entry<String, CacheItem> victim = segment.main.entrySet().iterator().next();
+            String victimKey = victim.getKey();
+            if (victim.getValue().isExpired()) {
+                segment.remove(victimKey);
+                expirationCount.increment();
+                if (victimKey.equals(candidateKey)) {
+                    candidateKey = null;
+                }
+                continue;
+            }
+            evictionCount.increment();
+            if (candidateKey == null || candidateKey.equals(victimKey)) {
+                segment.remove(victimKey);
+                candidateKey = null;
+            } else if (segment.sketch.frequency(candidateKey) >= segment.sketch.frequency(victimKey)) {
+                segment.remove(victimKey);
+            } else {
+                segment.remove(candidateKey);
+                candidateKey = null;
+            }
+        }
+    }
+
+    /**
+     * 估算条目占用字节：键按UTF-16计算，值按JSON序列化长度估算
+     */
+    private long estimateWeight(String key, Object value) {
+        long keyBytes = key.length() * 2L;
+        if (value instanceof String) {
+            return keyBytes + ((String) value).length() * 2L;
+        }
+        try {
+            return keyBytes + objectMapper.writeValueAsBytes(value).length;
+        } catch (Exception e) {
+            return keyBytes + 1024;
+        }
+    }
+
+    /**
+     * 缓存段，所有字段由段自身加锁保护
+     */
+    private static class Segment {
+        /** 窗口区，访问顺序的LinkedHashMap，头部为最久未访问的条目 */
+        private final LinkedHashMap<String, CacheItem> window = new LinkedHashMap<>(16, 0.75f, true);
+        /** 主区，访问顺序的LinkedHashMap，头部为最久未访问的条目 */
+        private final LinkedHashMap<String, CacheItem> main = new LinkedHashMap<>(64, 0.75f, true);
+        private final FrequencySketch sketch;
+        private long weightedSize;
+
+        Segment(int expectedSize) {
+            this.sketch = new FrequencySketch(expectedSize);
+        }
+
+        CacheItem get(String key) {
+            CacheItem item = window.get(key);
+            return item != null ? item : main.get(key);
+        }
+
+        /**
+         * 已存在的条目在原区域内替换为新值，不存在时返回false
+         */
+        boolean replace(String key, CacheItem item) {
+            for (LinkedHashMap<String, CacheItem> region : regions()) {
+                CacheItem old = region.get(key);
+                if (old != null) {
+                    region.put(key, item);
+                    weightedSize += item.getWeight() - old.getWeight();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int size() {
+            return window.size() + main.size();
+        }
+
+        List<LinkedHashMap<String, CacheItem>> regions() {
+            return Arrays.asList(window, main);
+        }
+
+        void remove(String key) {
+            CacheItem removed = window.remove(key);
+            if (removed == null) {
+                removed = main.remove(key);
+            }
+            if (removed != null) {
+                weightedSize -= removed.getWeight();
+            }
+        }
+    }
+
+    /**
+     * 缓存项
+     */
+    private static class CacheItem {
+        private final Object data;
+        private final long expireTime;
+        private final long weight;
+
+        public CacheItem(Object data, int ttlMinutes, long weight) {
+            this.data = data;
+            this.expireTime = System.currentTimeMillis() + (ttlMinutes * 60 * 1000L);
+            this.weight = weight;
+        }
+
+        public Object getData() {
+            return data;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expireTime;
+        }
+    }
+
+    /**
+     * 访问频率草图（Count-Min Sketch）
+     * 4行计数器，每个计数器上限15，累计采样达到阈值后全部减半以淡化历史热度
+     */
+    private static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0x0d6bd5e5, 0x5bd1e995, 0x7feb352d};
+
+        private final int[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedSize) {
+            int width = Integer.highestOneBit(Math.max(expectedSize, 16) - 1) << 1;
+            this.table = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = expectedSize * 10;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>>= 1;
+                }
+            }
+            additions >>>= 1;
+        }
+
+        private int indexOf(int hash, int depth) {
+            int h = (hash ^ SEEDS[depth]) * 0x9e3779b9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int spread(int hash) {
+            hash ^= hash >>> 17;
+            hash *= 0xed5ad4bb;
+            return hash ^ (hash >>> 11);
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package com.cdnu.cgi.util;
 
 import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.config.AIServiceConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -25,79 +27,291 @@ import java.util.function.Supplier;
 @RequiredArgsConstructor
 public class AIServiceHelper {
     private final AIConfig aiConfig;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final AIResultCache resultCache;
+    private final AIHttpTransport httpTransport;
+    private final AIResilienceExecutor resilienceExecutor;
+    private final AIProviderRouter providerRouter;
+    private final MockLLMServer mockServer;
+    private final AIMetrics metrics;
+    private final AIRequestScheduler requestScheduler;
+    private final CompetitionSearchIndex searchIndex;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, CacheItem> cache = new ConcurrentHashMap<>();
+    private final SingleFlight<String, SharedResult> inFlightCalls = new SingleFlight<>();
+    
+    /** 流式响应结束标记，解析器返回该对象表示流结束 */
+    private static final Object STREAM_END = new Object();
     
     /**
      * 调用AI模型
+     * 先经调度器按优先级和用户公平排队获取上游名额，再按提供商链依次尝试，可重试错误按退避策略重试，
+     * 排队超时或所有提供商均不可用时抛出AIServiceUnavailableException，由调用方降级
      */
     public String callAIModel(String prompt) {
-        try {
-            String ServiceName = aiConfig.getServiceName();
-            if(ServiceName != null && aiConfig.getServiceEnabled()) {
-                switch (ServiceName.toLowerCase()) {
-                    case "openai":
-                        return callOpenAI(prompt);
-                    case "anthropic":
-                        return callClaude(prompt);
-                    case "onmygpt":
-                        return callOnMyGpt(prompt);
-                    case "deepseek":
-                        return callDeepSeek(prompt);
-                    case "ollama":
-                        return callOllama(prompt);
-                    case "Moonshot":
-                        return "月之暗面服务暂未集成，请联系管理员。";
-                    default:
-                        throw new IllegalArgumentException("不支持的AI提供商: " + ServiceName);
-                }
-            }
+        if (aiConfig.getProviderChain().isEmpty()) {
             return "AI服务未配置，请联系管理员。";
-        } catch (Exception e) {
-            log.error("AI模型调用失败", e);
-            return "AI服务暂时不可用，请稍后再试。";
+        }
+        String operation = metrics.currentOperation();
+        AIRequestScheduler.Permit permit = acquirePermit(operation, prompt);
+        try {
+            return providerRouter.execute(config -> metrics.timeUpstream(config, operation,
+                    provider -> dispatchAIModel(provider, prompt)));
+        } catch (AIServiceUnavailableException e) {
+            metrics.recordFallback(primaryProvider(), operation, "unavailable");
+            throw e;
+        } finally {
+            permit.release();
         }
     }
     
     /**
-     * 带缓存的AI服务调用
+     * 获取上游调用名额，排队超时的请求按dropped记录降级
      */
-    public <T> T executeWithCache(String cacheKey, Supplier<T> serviceCall, Supplier<T> fallbackSupplier, String operationName) {
+    private AIRequestScheduler.Permit acquirePermit(String operation, String prompt) {
         try {
-            // 检查缓存
-            if (aiConfig.getCache().getEnabled()) {
-                CacheItem cached = cache.get(cacheKey);
-                if (cached != null && !cached.isExpired()) {
-                    log.info("使用缓存的{}结果", operationName);
-                    return (T) cached.getData();
-                }
+            return requestScheduler.acquire(operation, PromptManager.estimateTokens(prompt));
+        } catch (AIRequestDroppedException e) {
+            metrics.recordFallback(primaryProvider(), operation, "dropped");
+            throw e;
+        }
+    }
+    
+    /**
+     * 按提供商分发调用，mock提供商按ai.mock.wire-format协议访问模拟服务
+     */
+    private String dispatchAIModel(AIServiceConfig config, String prompt) throws Exception {
+        if ("mock".equalsIgnoreCase(config.getServiceName())) {
+            return dispatchAIModel(mockProvider(config), mockWireFormat(), prompt);
+        }
+        return dispatchAIModel(config, config.getServiceName(), prompt);
+    }
+    
+    /**
+     * 按协议分发调用，wireFormat与提供商名称分开传递，mock提供商的连接和指标仍按mock统计
+     */
+    private String dispatchAIModel(AIServiceConfig config, String wireFormat, String prompt) throws Exception {
+        switch (wireFormat.toLowerCase()) {
+            case "openai":
+                return callOpenAI(config, prompt);
+            case "anthropic":
+                return callClaude(config, prompt);
+            case "onmygpt":
+                return callOnMyGpt(config, prompt);
+            case "deepseek":
+                return callDeepSeek(config, prompt);
+            case "ollama":
+                return callOllama(config, prompt);
+            case "Moonshot":
+                return "月之暗面服务暂未集成，请联系管理员。";
+            default:
+                throw new IllegalArgumentException("不支持的AI提供商: " + wireFormat);
+        }
+    }
+    
+    /**
+     * 流式调用AI模型，每收到一段增量文本就回调onToken，返回完整回复
+     * 与callAIModel不同，失败时直接抛出异常，由调用方决定降级方式
+     * 尚未输出任何内容前的可重试错误会重试或转移到下一个提供商，已输出部分内容后不再重试
+     * 调用线程被中断（客户端断开）后同样不再重试
+     */
+    public String streamAIModel(String prompt, Consumer<String> onToken) throws Exception {
+        if (aiConfig.getProviderChain().isEmpty()) {
+            throw new IllegalStateException("AI服务未配置");
+        }
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        Consumer<String> tracking = token -> {
+            emitted.set(true);
+            onToken.accept(token);
+        };
+        String operation = metrics.currentOperation();
+        // 流式调用在整个输出期间占用名额
+        AIRequestScheduler.Permit permit = acquirePermit(operation, prompt);
+        try {
+            return providerRouter.failover(config -> metrics.timeUpstream(config, operation,
+                    provider -> dispatchStream(provider, prompt, tracking)),
+                    () -> !emitted.get() && !Thread.currentThread().isInterrupted());
+        } catch (AIServiceUnavailableException e) {
+            metrics.recordFallback(primaryProvider(), operation, "unavailable");
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+    
+    private AIServiceConfig primaryProvider() {
+        List<AIServiceConfig> chain = aiConfig.getProviderChain();
+        return chain.isEmpty() ? null : chain.get(0);
+    }
+    
+    /**
+     * 按提供商分发流式调用，不支持流式的提供商一次性返回完整结果
+     */
+    private String dispatchStream(AIServiceConfig config, String prompt, Consumer<String> onToken) throws Exception {
+        if ("mock".equalsIgnoreCase(config.getServiceName())) {
+            return dispatchStream(mockProvider(config), mockWireFormat(), prompt, onToken);
+        }
+        return dispatchStream(config, config.getServiceName(), prompt, onToken);
+    }
+    
+    private String dispatchStream(AIServiceConfig config, String wireFormat, String prompt,
+                                  Consumer<String> onToken) throws Exception {
+        switch (wireFormat.toLowerCase()) {
+            case "openai":
+            case "onmygpt":
+            case "deepseek":
+                return recordStreamUsage(config, prompt, streamOpenAICompatible(config, prompt, onToken));
+            case "anthropic":
+                return recordStreamUsage(config, prompt, streamClaude(config, prompt, onToken));
+            case "ollama":
+                return recordStreamUsage(config, prompt, streamOllama(config, prompt, onToken));
+            default:
+                String response = dispatchAIModel(config, wireFormat, prompt);
+                onToken.accept(response);
+                return response;
+        }
+    }
+    
+    /**
+     * 流式响应不解析用量帧，按文本估算token数
+     */
+    private String recordStreamUsage(AIServiceConfig config, String prompt, String response) {
+        metrics.recordUsage(config, -1, -1, prompt, response);
+        return response;
+    }
+    
+    /**
+     * mock提供商访问模拟服务使用的协议
+     */
+    private String mockWireFormat() {
+        String wireFormat = aiConfig.getMock().getWireFormat();
+        if (wireFormat == null || "mock".equalsIgnoreCase(wireFormat)) {
+            throw new IllegalArgumentException("ai.mock.wire-format必须是openai、anthropic或ollama");
+        }
+        return wireFormat;
+    }
+    
+    /**
+     * 补全mock提供商访问本地模拟服务所需的配置，serviceName保持为mock，
+     * 使其连接许可和用量指标不与真实提供商混在一起；未配置base_url时使用内置模拟服务的地址
+     */
+    private AIServiceConfig mockProvider(AIServiceConfig config) {
+        String wireFormat = mockWireFormat();
+        AIServiceConfig target = new AIServiceConfig();
+        BeanUtils.copyProperties(config, target);
+        if (target.getBaseUrl() == null || target.getBaseUrl().isEmpty()) {
+            target.setBaseUrl(mockServer.getBaseUrl(wireFormat));
+        }
+        if (target.getApiKey() == null) {
+            target.setApiKey("mock");
+        }
+        return target;
+    }
+    
+    /**
+     * 各提供商熔断及连接状态，以及调度器和本地检索索引的状态
+     */
+    public Map<String, Object> getProviderStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("breakers", resilienceExecutor.getBreakerStates());
+        status.put("connections", httpTransport.getStats());
+        status.put("routing", providerRouter.getStats());
+        status.put("scheduler", requestScheduler.getStats());
+        status.put("searchIndex", searchIndex.getStats());
+        if (mockServer.isRunning()) {
+            status.put("mock", mockServer.getStats());
+        }
+        return status;
+    }
+    
+    /**
+     * 带缓存的AI服务调用
+     * 缓存未命中时，相同cacheKey的并发请求只执行一次上游调用（含降级），其余请求共享结果；
+     * userId为发起调用的用户，上游调用按该用户公平排队
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T executeWithCache(Long userId, String cacheKey, Supplier<T> serviceCall, Supplier<T> fallbackSupplier,
+                                  String operationName) {
+        // 检查缓存
+        long start = System.nanoTime();
+        if (aiConfig.getCache().getEnabled()) {
+            Object cached = resultCache.get(cacheKey);
+            metrics.recordCache(operationName, cached != null);
+            if (cached != null) {
+                log.info("使用缓存的{}结果", operationName);
+                metrics.recordOperation(operationName, "cached", System.nanoTime() - start);
+                return (T) cached;
             }
-            // 执行服务调用
-            T result = serviceCall.get();
-            // 缓存结果
-            if (aiConfig.getCache().getEnabled()) {
-                cache.put(cacheKey, new CacheItem(result, aiConfig.getCache().getTtlMinutes()));
+        }
+        // 结果连同结局一起共享，合并的请求按领头请求的实际结局记录
+        SharedResult shared = inFlightCalls.execute(cacheKey, () -> {
+            try {
+                // 等待期间可能已有其他调用写入缓存
+                if (aiConfig.getCache().getEnabled()) {
+                    Object cached = resultCache.get(cacheKey);
+                    if (cached != null) {
+                        return new SharedResult(cached, "success");
+                    }
+                }
+                // 执行服务调用
+                T result = requestScheduler.withCaller(userId, () -> metrics.withOperation(operationName, serviceCall::get));
+                // 缓存结果
+                if (aiConfig.getCache().getEnabled()) {
+                    resultCache.put(cacheKey, result);
+                }
+                return new SharedResult(result, "success");
+            } catch (Exception e) {
+                log.error("{}失败", operationName, e);
+                return new SharedResult(fallbackSupplier.get(), "fallback");
             }
-            
-            return result;
-        } catch (Exception e) {
-            log.error("{}失败", operationName, e);
-            return fallbackSupplier.get();
+        });
+        if ("fallback".equals(shared.outcome)) {
+            metrics.recordFallback(primaryProvider(), operationName, "operation_failed");
         }
+        metrics.recordOperation(operationName, shared.outcome, System.nanoTime() - start);
+        return (T) shared.value;
     }
     
     /**
-     * 通用的AI服务调用模板方法
+     * 合并调用共享的结果及其结局（success或fallback）
      */
-    public <T> T executeAIServiceCall(Supplier<T> serviceCall, Supplier<T> fallbackSupplier, String operationName) {
+    private static class SharedResult {
+        private final Object value;
+        private final String outcome;
+        
+        private SharedResult(Object value, String outcome) {
+            this.value = value;
+            this.outcome = outcome;
+        }
+    }
+    
+    /**
+     * 正在进行中的带缓存调用数
+     */
+    public int getInFlightCount() {
+        return inFlightCalls.inFlightCount();
+    }
+    
+    /**
+     * 被合并的重复调用次数
+     */
+    public long getCoalescedCount() {
+        return inFlightCalls.sharedCount();
+    }
+    
+    /**
+     * 通用的AI服务调用模板方法，userId为发起调用的用户，上游调用按该用户公平排队
+     */
+    public <T> T executeAIServiceCall(Long userId, Supplier<T> serviceCall, Supplier<T> fallbackSupplier, String operationName) {
+        long start = System.nanoTime();
         try {
             log.info("执行{}操作", operationName);
-            T result = serviceCall.get();
+            T result = requestScheduler.withCaller(userId, () -> metrics.withOperation(operationName, serviceCall::get));
             log.info("{}操作完成", operationName);
+            metrics.recordOperation(operationName, "success", System.nanoTime() - start);
             return result;
         } catch (Exception e) {
             log.error("{}操作失败", operationName, e);
+            metrics.recordFallback(primaryProvider(), operationName, "operation_failed");
+            metrics.recordOperation(operationName, "fallback", System.nanoTime() - start);
             return fallbackSupplier.get();
         }
     }
@@ -105,89 +319,222 @@ public class AIServiceHelper {
     /**
      * 调用OpenAI API
      */
-    private String callOpenAI(String prompt) throws Exception {
+    private String callOpenAI(AIServiceConfig config, String prompt) throws Exception {
         AIRequestBuilder builder = new AIRequestBuilder()
-            .setModel(aiConfig.getAIServiceConfig().getModel())
-            .setMaxTokens(aiConfig.getAIServiceConfig().getMaxTokens())
-            .setTemperature(aiConfig.getAIServiceConfig().getTemperature())
+            .setModel(config.getModel())
+            .setMaxTokens(config.getMaxTokens())
+            .setTemperature(config.getTemperature())
             .addSystemMessage(aiConfig.getSystemPrompt())
             .addUserMessage(prompt)
-            .setBearerAuth(aiConfig.getAIServiceConfig().getApiKey());
+            .setBearerAuth(config.getApiKey());
 
-        String url = aiConfig.getAIServiceConfig().getBaseUrl() + "/chat/completions";
-        ResponseEntity<String> response = restTemplate.postForEntity(url, builder.build(), String.class);
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-        return jsonResponse.path("choices").get(0).path("message").path("content").asText();
+        String url = config.getBaseUrl() + "/chat/completions";
+        String response = httpTransport.post(config, url, builder.build());
+        JsonNode jsonResponse = objectMapper.readTree(response);
+        String content = jsonResponse.path("choices").get(0).path("message").path("content").asText();
+        JsonNode usage = jsonResponse.path("usage");
+        metrics.recordUsage(config, usage.path("prompt_tokens").asLong(-1), usage.path("completion_tokens").asLong(-1),
+                prompt, content);
+        return content;
     }
 
     /**
      * 调用GLM API
      */
-    private String callOnMyGpt(String prompt) throws Exception {
+    private String callOnMyGpt(AIServiceConfig config, String prompt) throws Exception {
         AIRequestBuilder builder = new AIRequestBuilder()
-            .setModel(aiConfig.getAIServiceConfig().getModel())
-            .setMaxTokens(aiConfig.getAIServiceConfig().getMaxTokens())
-            .setTemperature(aiConfig.getAIServiceConfig().getTemperature())
+            .setModel(config.getModel())
+            .setMaxTokens(config.getMaxTokens())
+            .setTemperature(config.getTemperature())
             .addSystemMessage(aiConfig.getSystemPrompt())
             .addUserMessage(prompt)
-            .setBearerAuth(aiConfig.getAIServiceConfig().getApiKey());
+            .setBearerAuth(config.getApiKey());
 
-        String url = aiConfig.getAIServiceConfig().getBaseUrl() + "/chat/completions";
-        ResponseEntity<String> response = restTemplate.postForEntity(url, builder.build(), String.class);
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-        return jsonResponse.path("choices").get(0).path("message").path("content").asText();
+        String url = config.getBaseUrl() + "/chat/completions";
+        String response = httpTransport.post(config, url, builder.build());
+        JsonNode jsonResponse = objectMapper.readTree(response);
+        String content = jsonResponse.path("choices").get(0).path("message").path("content").asText();
+        JsonNode usage = jsonResponse.path("usage");
+        metrics.recordUsage(config, usage.path("prompt_tokens").asLong(-1), usage.path("completion_tokens").asLong(-1),
+                prompt, content);
+        return content;
     }
     
     /**
      * 调用Claude API
      */
-    private String callClaude(String prompt) throws Exception {
+    private String callClaude(AIServiceConfig config, String prompt) throws Exception {
         AIRequestBuilder builder = new AIRequestBuilder()
-            .setModel(aiConfig.getAIServiceConfig().getModel())
-            .setMaxTokens(aiConfig.getAIServiceConfig().getMaxTokens())
+            .setModel(config.getModel())
+            .setMaxTokens(config.getMaxTokens())
             .addUserMessage(prompt)
-            .setHeader("x-api-key", aiConfig.getAIServiceConfig().getApiKey())
+            .setHeader("x-api-key", config.getApiKey())
             .setHeader("anthropic-version", "2023-06-01")
             .setSystemPrompt(aiConfig.getSystemPrompt());
         
-        String url = aiConfig.getAIServiceConfig().getBaseUrl() + "/v1/messages";
-        ResponseEntity<String> response = restTemplate.postForEntity(url, builder.build(), String.class);
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-        return jsonResponse.path("content").get(0).path("text").asText();
+        String url = config.getBaseUrl() + "/v1/messages";
+        String response = httpTransport.post(config, url, builder.build());
+        JsonNode jsonResponse = objectMapper.readTree(response);
+        String content = jsonResponse.path("content").get(0).path("text").asText();
+        JsonNode usage = jsonResponse.path("usage");
+        metrics.recordUsage(config, usage.path("input_tokens").asLong(-1), usage.path("output_tokens").asLong(-1),
+                prompt, content);
+        return content;
     }
     
     /**
      * 调用DeepSeek API
      */
-    private String callDeepSeek(String prompt) throws Exception {
+    private String callDeepSeek(AIServiceConfig config, String prompt) throws Exception {
         AIRequestBuilder builder = new AIRequestBuilder()
-            .setModel(aiConfig.getAIServiceConfig().getModel())
-            .setMaxTokens(aiConfig.getAIServiceConfig().getMaxTokens())
+            .setModel(config.getModel())
+            .setMaxTokens(config.getMaxTokens())
             .addSystemMessage(aiConfig.getSystemPrompt())
             .addUserMessage(prompt)
-            .setBearerAuth(aiConfig.getAIServiceConfig().getApiKey());
+            .setBearerAuth(config.getApiKey());
         
-        String url = aiConfig.getAIServiceConfig().getBaseUrl() + "/chat/completions";
-        ResponseEntity<String> response = restTemplate.postForEntity(url, builder.build(), String.class);
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-        return jsonResponse.path("choices").get(0).path("message").path("content").asText();
+        String url = config.getBaseUrl() + "/chat/completions";
+        String response = httpTransport.post(config, url, builder.build());
+        JsonNode jsonResponse = objectMapper.readTree(response);
+        String content = jsonResponse.path("choices").get(0).path("message").path("content").asText();
+        JsonNode usage = jsonResponse.path("usage");
+        metrics.recordUsage(config, usage.path("prompt_tokens").asLong(-1), usage.path("completion_tokens").asLong(-1),
+                prompt, content);
+        return content;
     }
     
     /**
      * 调用Ollama API
      */
-    private String callOllama(String prompt) throws Exception {
+    private String callOllama(AIServiceConfig config, String prompt) throws Exception {
         Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", aiConfig.getAIServiceConfig().getModel());
+        requestBody.put("model", config.getModel());
         requestBody.put("prompt", aiConfig.getSystemPrompt() + "\n\n" + prompt);
         requestBody.put("stream", false);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-        String url = aiConfig.getAIServiceConfig().getBaseUrl() + "/api/generate";
-        ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-        JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-        return jsonResponse.path("response").asText();
+        String url = config.getBaseUrl() + "/api/generate";
+        String response = httpTransport.post(config, url, entity);
+        JsonNode jsonResponse = objectMapper.readTree(response);
+        String content = jsonResponse.path("response").asText();
+        metrics.recordUsage(config, jsonResponse.path("prompt_eval_count").asLong(-1),
+                jsonResponse.path("eval_count").asLong(-1), prompt, content);
+        return content;
+    }
+    
+    /**
+     * 流式调用OpenAI兼容接口（OpenAI / OnMyGpt / DeepSeek），解析 data: 行中的 delta.content
+     */
+    private String streamOpenAICompatible(AIServiceConfig config, String prompt, Consumer<String> onToken) throws Exception {
+        AIRequestBuilder builder = new AIRequestBuilder()
+            .setModel(config.getModel())
+            .setMaxTokens(config.getMaxTokens())
+            .setTemperature(config.getTemperature())
+            .addSystemMessage(aiConfig.getSystemPrompt())
+            .addUserMessage(prompt)
+            .setBearerAuth(config.getApiKey())
+            .setStream(true);
+
+        String url = config.getBaseUrl() + "/chat/completions";
+        return postForStream(config, url, builder.build(), line -> {
+            if (!line.startsWith("data:")) {
+                return null;
+            }
+            String data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) {
+                return STREAM_END;
+            }
+            JsonNode chunk = objectMapper.readTree(data);
+            return chunk.path("choices").path(0).path("delta").path("content").asText("");
+        }, onToken);
+    }
+    
+    /**
+     * 流式调用Claude API，解析 content_block_delta 事件中的 delta.text
+     */
+    private String streamClaude(AIServiceConfig config, String prompt, Consumer<String> onToken) throws Exception {
+        AIRequestBuilder builder = new AIRequestBuilder()
+            .setModel(config.getModel())
+            .setMaxTokens(config.getMaxTokens())
+            .addUserMessage(prompt)
+            .setHeader("x-api-key", config.getApiKey())
+            .setHeader("anthropic-version", "2023-06-01")
+            .setSystemPrompt(aiConfig.getSystemPrompt())
+            .setStream(true);
+
+        String url = config.getBaseUrl() + "/v1/messages";
+        return postForStream(config, url, builder.build(), line -> {
+            if (!line.startsWith("data:")) {
+                return null;
+            }
+            JsonNode event = objectMapper.readTree(line.substring(5).trim());
+            String type = event.path("type").asText();
+            if ("message_stop".equals(type)) {
+                return STREAM_END;
+            }
+            if ("error".equals(type)) {
+                throw new IllegalStateException("Claude流式响应错误: " + event.path("error").path("message").asText());
+            }
+            return "content_block_delta".equals(type) ? event.path("delta").path("text").asText("") : null;
+        }, onToken);
+    }
+    
+    /**
+     * 流式调用Ollama API，逐行解析NDJSON中的 response 字段
+     */
+    private String streamOllama(AIServiceConfig config, String prompt, Consumer<String> onToken) throws Exception {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", config.getModel());
+        requestBody.put("prompt", aiConfig.getSystemPrompt() + "\n\n" + prompt);
+        requestBody.put("stream", true);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String url = config.getBaseUrl() + "/api/generate";
+        return postForStream(config, url, new HttpEntity<>(requestBody, headers), line -> {
+            JsonNode chunk = objectMapper.readTree(line);
+            // 结束帧的response为空，只携带统计信息
+            return chunk.path("done").asBoolean(false) ? STREAM_END : chunk.path("response").asText("");
+        }, onToken);
+    }
+    
+    /**
+     * 发送POST请求并逐行读取流式响应
+     * parser返回null表示忽略该行，返回STREAM_END表示流结束，其余为增量文本
+     */
+    private String postForStream(AIServiceConfig config, String url, HttpEntity<Map<String, Object>> entity,
+                                 StreamLineParser parser, Consumer<String> onToken) throws IOException {
+        StringBuilder full = new StringBuilder();
+        httpTransport.postForStream(config, url, entity, line -> {
+            if (line.isEmpty()) {
+                return true;
+            }
+            Object parsed;
+            try {
+                parsed = parser.parse(line);
+            } catch (IOException e) {
+                log.warn("无法解析流式响应行: {}", line);
+                return true;
+            }
+            if (parsed == STREAM_END) {
+                return false;
+            }
+            String token = (String) parsed;
+            if (token != null && !token.isEmpty()) {
+                full.append(token);
+                onToken.accept(token);
+            }
+            return true;
+        });
+        return full.toString();
+    }
+    
+    /**
+     * 流式响应行解析器，返回增量文本、null或STREAM_END
+     */
+    @FunctionalInterface
+    private interface StreamLineParser {
+        Object parse(String line) throws IOException;
     }
     
     /**
@@ -249,6 +596,11 @@ public class AIServiceHelper {
             return this;
         }
         
+        public AIRequestBuilder setStream(boolean stream) {
+            requestBody.put("stream", stream);
+            return this;
+        }
+        
         public AIRequestBuilder setSystemPrompt(String prompt) {
             requestBody.put("system", prompt);
             return this;
@@ -261,25 +613,4 @@ public class AIServiceHelper {
             return new HttpEntity<>(requestBody, headers);
         }
     }
-    
-    /**
-     * 缓存项
-     */
-    private static class CacheItem {
-        private final Object data;
-        private final long expireTime;
-        
-        public CacheItem(Object data, int ttlMinutes) {
-            this.data = data;
-            this.expireTime = System.currentTimeMillis() + (ttlMinutes * 60 * 1000L);
-        }
-        
-        public Object getData() {
-            return data;
-        }
-        
-        public boolean isExpired() {
-            return System.currentTimeMillis() > expireTime;
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.cdnu.cgi.util;
+
+/**
+ * AI服务不可用异常
+ * 熔断打开或重试耗尽时抛出，由调用方转入降级逻辑
+ */
+public class AIServiceUnavailableException extends RuntimeException {
+
+    public AIServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public AIServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
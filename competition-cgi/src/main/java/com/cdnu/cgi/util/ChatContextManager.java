@@ -0,0 +1,302 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.entity.AIChatLog;
+import com.cdnu.cgi.mapper.AIChatLogMapper;
+import com.cdnu.cgi.mapper.ChatConversationMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多轮对话上下文管理器
+ * 每个对话在内存中保留最近N轮原文和一段滚动摘要，超出轮数或token预算的早期轮次
+ * 由后台线程调用模型合并进摘要，构建聊天提示词时无需读取数据库
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatContextManager {
+    private final AIConfig aiConfig;
+    private final AIChatLogMapper chatLogMapper;
+    private final ChatConversationMapper conversationMapper;
+    private final PromptManager promptManager;
+    private final AIServiceHelper aiServiceHelper;
+    private final AIMetrics metrics;
+    private final AIRequestScheduler requestScheduler;
+
+    /** 访问顺序的LinkedHashMap，头部为最久未使用的对话 */
+    private final LinkedHashMap<String, Conversation> conversations = new LinkedHashMap<>(64, 0.75f, true);
+    private ThreadPoolExecutor summarizer;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        summarizer = new ThreadPoolExecutor(1, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(200), r -> {
+            Thread thread = new Thread(r, "chat-summarizer-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        summarizer.shutdownNow();
+    }
+
+    /**
+     * 获取对话上下文快照，未开启或缺少用户/对话ID时返回null
+     */
+    public ChatContext getContext(Long userId, String groupId) {
+        if (!aiConfig.getChatContext().getEnabled() || userId == null || groupId == null) {
+            return null;
+        }
+        Conversation conversation = conversationFor(userId, groupId);
+        synchronized (conversation) {
+            return new ChatContext(conversation.summary, new ArrayList<>(conversation.turns));
+        }
+    }
+
+    /**
+     * 追加一轮对话，超出窗口的早期轮次异步合并进摘要
+     */
+    public void appendTurn(Long userId, String groupId, String input, String response) {
+        if (!aiConfig.getChatContext().getEnabled() || userId == null || groupId == null) {
+            return;
+        }
+        Conversation conversation = conversationFor(userId, groupId);
+        boolean summarize;
+        synchronized (conversation) {
+            conversation.turns.addLast(new Turn(input, response));
+            // 移出窗口但尚未合并进摘要的轮次暂不放入提示词，保证提示词大小有上限
+            while (exceedsWindow(conversation)) {
+                conversation.pending.add(conversation.turns.removeFirst());
+            }
+            summarize = !conversation.pending.isEmpty() && !conversation.summarizing;
+            if (summarize) {
+                conversation.summarizing = true;
+            }
+        }
+        if (summarize) {
+            submitSummary(userId, groupId, conversation);
+        }
+    }
+
+    /**
+     * 移除对话的缓存上下文（如对话被删除）
+     */
+    public void evict(Long userId, String groupId) {
+        synchronized (conversations) {
+            conversations.remove(key(userId, groupId));
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (conversations) {
+            stats.put("cachedConversations", conversations.size());
+        }
+        stats.put("maxCachedConversations", aiConfig.getChatContext().getMaxCachedConversations());
+        stats.put("pendingSummaries", summarizer.getQueue().size() + summarizer.getActiveCount());
+        stats.put("completedSummaries", summarizer.getCompletedTaskCount());
+        return stats;
+    }
+
+    private Conversation conversationFor(Long userId, String groupId) {
+        AIConfig.ChatContextConfig config = aiConfig.getChatContext();
+        long now = System.currentTimeMillis();
+        String key = key(userId, groupId);
+        Conversation conversation;
+        synchronized (conversations) {
+            conversation = conversations.get(key);
+            if (conversation == null || now - conversation.lastAccess > TimeUnit.MINUTES.toMillis(config.getIdleMinutes())) {
+                conversation = new Conversation();
+                conversations.put(key, conversation);
+                Iterator<Conversation> eldest = conversations.values().iterator();
+                while (conversations.size() > Math.max(config.getMaxCachedConversations(), 1)) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            conversation.lastAccess = now;
+        }
+        // 首次访问时从数据库加载最近几轮和已保存的摘要，加载在对话自身的锁内进行
+        synchronized (conversation) {
+            if (!conversation.loaded) {
+                load(conversation, userId, groupId);
+                conversation.loaded = true;
+            }
+        }
+        return conversation;
+    }
+
+    private void load(Conversation conversation, Long userId, String groupId) {
+        try {
+            List<AIChatLog> recent = new ArrayList<>(chatLogMapper.selectPageByUserIdAndGroupId(userId, groupId,
+                    null, null, true, Math.max(aiConfig.getChatContext().getMaxTurns(), 1)));
+            Collections.reverse(recent);
+            recent.forEach(chatLog -> conversation.turns.addLast(new Turn(chatLog.getInput(), chatLog.getResponse())));
+            conversation.summary = conversationMapper.selectSummary(userId, groupId);
+            // 冷加载时超出预算的早期轮次直接丢弃
+            while (exceedsWindow(conversation)) {
+                conversation.turns.removeFirst();
+            }
+        } catch (Exception e) {
+            log.warn("加载对话上下文失败 - 用户ID: {}, 组ID: {}: {}", userId, groupId, e.getMessage());
+        }
+    }
+
+    /**
+     * 是否超出轮数或token预算，至少保留最近一轮
+     */
+    private boolean exceedsWindow(Conversation conversation) {
+        AIConfig.ChatContextConfig config = aiConfig.getChatContext();
+        if (conversation.turns.size() <= 1) {
+            return false;
+        }
+        if (conversation.turns.size() > config.getMaxTurns()) {
+            return true;
+        }
+        int tokens = conversation.summary != null ? PromptManager.estimateTokens(conversation.summary) : 0;
+        for (Turn turn : conversation.turns) {
+            tokens += turn.estimateTokens();
+        }
+        return tokens > config.getTokenBudget();
+    }
+
+    private void submitSummary(Long userId, String groupId, Conversation conversation) {
+        List<Turn> batch;
+        String previous;
+        synchronized (conversation) {
+            batch = new ArrayList<>(conversation.pending);
+            previous = conversation.summary;
+        }
+        try {
+            summarizer.execute(() -> summarize(userId, groupId, conversation, previous, batch));
+        } catch (RejectedExecutionException e) {
+            // 摘要线程繁忙，待下一轮对话时再合并
+            synchronized (conversation) {
+                conversation.summarizing = false;
+            }
+            log.warn("对话摘要任务队列已满，稍后重试 - 用户ID: {}, 组ID: {}", userId, groupId);
+        }
+    }
+
+    private void summarize(Long userId, String groupId, Conversation conversation, String previous, List<Turn> batch) {
+        int maxLength = aiConfig.getChatContext().getSummaryMaxLength();
+        String summary;
+        try {
+            if (aiConfig.getProviderChain().isEmpty()) {
+                throw new IllegalStateException("AI服务未配置");
+            }
+            String prompt = promptManager.buildChatSummaryPrompt(previous, batch, maxLength);
+            summary = requestScheduler.withCaller(userId,
+                    () -> metrics.withOperation("对话摘要", () -> aiServiceHelper.callAIModel(prompt))).trim();
+        } catch (Exception e) {
+            log.warn("生成对话摘要失败，使用截断摘要 - 用户ID: {}, 组ID: {}: {}", userId, groupId, e.getMessage());
+            summary = truncatedSummary(previous, batch, maxLength);
+        }
+        // 模型可能不遵守字数要求，按两倍上限兜底截断
+        if (summary.length() > maxLength * 2) {
+            summary = summary.substring(0, maxLength * 2);
+        }
+
+        boolean more;
+        synchronized (conversation) {
+            conversation.summary = summary;
+            conversation.pending.subList(0, batch.size()).clear();
+            more = !conversation.pending.isEmpty();
+            conversation.summarizing = more;
+        }
+        try {
+            conversationMapper.updateSummary(userId, groupId, summary);
+        } catch (Exception e) {
+            log.warn("保存对话摘要失败 - 用户ID: {}, 组ID: {}: {}", userId, groupId, e.getMessage());
+        }
+        if (more) {
+            submitSummary(userId, groupId, conversation);
+        }
+    }
+
+    /**
+     * 模型不可用时的降级摘要：拼接各轮用户问题，保留最近的部分
+     */
+    private String truncatedSummary(String previous, List<Turn> batch, int maxLength) {
+        StringBuilder sb = new StringBuilder(previous != null ? previous : "");
+        for (Turn turn : batch) {
+            if (turn.getInput() == null || turn.getInput().isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append("；");
+            }
+            String input = turn.getInput();
+            sb.append("用户问过：").append(input.length() > 50 ? input.substring(0, 50) + "…" : input);
+        }
+        return sb.length() > maxLength ? sb.substring(sb.length() - maxLength) : sb.toString();
+    }
+
+    private static String key(Long userId, String groupId) {
+        return userId + ":" + groupId;
+    }
+
+    /**
+     * 单个对话的缓存状态，字段均在对话对象锁内访问
+     */
+    private static class Conversation {
+        private final Deque<Turn> turns = new ArrayDeque<>();
+        /** 已移出窗口、等待合并进摘要的轮次 */
+        private final List<Turn> pending = new ArrayList<>();
+        private String summary;
+        private boolean summarizing;
+        private boolean loaded;
+        private volatile long lastAccess;
+    }
+
+    /**
+     * 一轮对话
+     */
+    @Getter
+    public static class Turn {
+        private final String input;
+        private final String response;
+
+        public Turn(String input, String response) {
+            this.input = input;
+            this.response = response;
+        }
+
+        int estimateTokens() {
+            return (input != null ? PromptManager.estimateTokens(input) : 0)
+                    + (response != null ? PromptManager.estimateTokens(response) : 0);
+        }
+    }
+
+    /**
+     * 对话上下文快照
+     */
+    @Getter
+    public static class ChatContext {
+        private final String summary;
+        private final List<Turn> turns;
+
+        public ChatContext(String summary, List<Turn> turns) {
+            this.summary = summary;
+            this.turns = turns;
+        }
+
+        public boolean isEmpty() {
+            return (summary == null || summary.isEmpty()) && turns.isEmpty();
+        }
+    }
+}
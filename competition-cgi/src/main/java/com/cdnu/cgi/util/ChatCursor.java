@@ -0,0 +1,56 @@
+package com.cdnu.cgi.util;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 聊天记录分页游标
+ * 由(时间戳, 主键)组成，编码为URL安全的Base64字符串，对客户端不透明
+ */
+@Getter
+public class ChatCursor {
+    private final LocalDateTime timestamp;
+    /** 同一时间戳下的排序键：消息为id，对话分组为groupId */
+    private final String key;
+
+    public ChatCursor(LocalDateTime timestamp, String key) {
+        this.timestamp = timestamp;
+        this.key = key;
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String encode(LocalDateTime timestamp, Object key) {
+        return timestamp == null || key == null ? null : new ChatCursor(timestamp, key.toString()).encode();
+    }
+
+    /**
+     * 解析游标，为空时返回null，格式错误时抛出IllegalArgumentException
+     */
+    public static ChatCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new ChatCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+    }
+
+    public Long getKeyAsLong() {
+        try {
+            return Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + key, e);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.entity.Competition;
+import com.cdnu.cgi.event.CompetitionChangedEvent;
+import com.cdnu.cgi.mapper.CompetitionMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 竞赛全文检索索引
+ * 对标题、标签、类别、赛道和简介按字符n-gram（中文取单字和相邻双字，英文和数字取整词和三字母片段）
+ * 哈希到固定维度，以TF-IDF余弦相似度返回前K个竞赛。索引启动时全量构建，竞赛变更事件到达时只重新向量化该竞赛，
+ * 并定期全量重建以覆盖绕过服务层的数据修改。查询读取不可变快照，无需加锁
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompetitionSearchIndex {
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float TAGS_WEIGHT = 2f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float TRACK_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private final AIConfig aiConfig;
+    private final CompetitionMapper competitionMapper;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean built;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        snapshot = new Snapshot(Collections.emptyList(), new int[dimensions()]);
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // 数据库暂不可用时首次查询再构建
+            log.warn("构建竞赛检索索引失败，将在首次查询时重试: {}", e.getMessage());
+        }
+        int interval = aiConfig.getSearch().getRebuildIntervalMinutes();
+        if (interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "competition-index-rebuilder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    log.warn("重建竞赛检索索引失败: {}", e.getMessage());
+                }
+            }, interval, interval, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 从数据库全量重建索引
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        int dimensions = dimensions();
+        List<Competition> competitions = competitionMapper.selectAll();
+        List<Document> documents = new ArrayList<>(competitions.size());
+        int[] df = new int[dimensions];
+        for (Competition competition : competitions) {
+            Document document = vectorize(competition, dimensions);
+            documents.add(document);
+            addDocumentFrequency(df, document, 1);
+        }
+        snapshot = new Snapshot(documents, df);
+        built = true;
+        log.info("竞赛检索索引构建完成，竞赛数: {}，耗时: {}ms", documents.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @EventListener
+    public void onCompetitionChanged(CompetitionChangedEvent event) {
+        if (event.getCompetitionId() == null) {
+            return;
+        }
+        try {
+            update(event.getCompetitionId(), competitionMapper.selectById(event.getCompetitionId()));
+        } catch (Exception e) {
+            log.warn("更新竞赛 {} 的检索索引失败: {}", event.getCompetitionId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 替换或删除单个竞赛的向量，competition为null表示竞赛已删除
+     */
+    public synchronized void update(Long competitionId, Competition competition) {
+        Snapshot current = snapshot;
+        int[] df = current.df.clone();
+        List<Document> documents = new ArrayList<>(current.documents.size() + 1);
+        for (Document document : current.documents) {
+            if (competitionId.equals(document.competition.getId())) {
+                addDocumentFrequency(df, document, -1);
+            } else {
+                documents.add(document);
+            }
+        }
+        if (competition != null) {
+            Document document = vectorize(competition, df.length);
+            documents.add(document);
+            addDocumentFrequency(df, document, 1);
+        }
+        snapshot = new Snapshot(documents, df);
+    }
+
+    /**
+     * 按余弦相似度返回前topK个竞赛，expansion为可选的扩展词文本，按配置的较低权重参与查询
+     */
+    public List<Competition> search(String query, String expansion, int topK) {
+        if (!built) {
+            rebuild();
+        }
+        Snapshot current = snapshot;
+        AIConfig.SearchConfig config = aiConfig.getSearch();
+        Map<Integer, Float> terms = new HashMap<>();
+        addTerms(terms, query, 1f, current.df.length);
+        if (expansion != null && !expansion.isEmpty()) {
+            addTerms(terms, expansion, config.getExpansionWeight().floatValue(), current.df.length);
+        }
+        if (terms.isEmpty() || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        // 查询向量按IDF加权并归一化
+        int size = terms.size();
+        int[] buckets = new int[size];
+        float[] weights = new float[size];
+        double norm = 0;
+        int i = 0;
+        for (Map.Entry<Integer, Float> term : terms.entrySet()) {
+            buckets[i] = term.getKey();
+            weights[i] = (float) (sublinear(term.getValue()) * current.idf(term.getKey()));
+            norm += weights[i] * weights[i];
+            i++;
+        }
+        if (norm == 0) {
+            return new ArrayList<>();
+        }
+        double queryNorm = Math.sqrt(norm);
+
+        // 小顶堆保留得分最高的topK个
+        PriorityQueue<ScoredDocument> top = new PriorityQueue<>(
+                Comparator.comparingDouble((ScoredDocument scored) -> scored.score));
+        double minScore = config.getMinScore();
+        for (int d = 0; d < current.documents.size(); d++) {
+            double documentNorm = current.norms[d];
+            if (documentNorm == 0) {
+                continue;
+            }
+            Document document = current.documents.get(d);
+            double dot = 0;
+            for (int q = 0; q < size; q++) {
+                int position = Arrays.binarySearch(document.buckets, buckets[q]);
+                if (position >= 0) {
+                    dot += weights[q] * document.weights[position] * current.idf(buckets[q]);
+                }
+            }
+            double score = dot / (queryNorm * documentNorm);
+            if (score < minScore) {
+                continue;
+            }
+            if (top.size() < topK) {
+                top.add(new ScoredDocument(document, score));
+            } else if (score > top.peek().score) {
+                top.poll();
+                top.add(new ScoredDocument(document, score));
+            }
+        }
+        List<ScoredDocument> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingDouble((ScoredDocument scored) -> scored.score).reversed());
+        List<Competition> results = new ArrayList<>(ranked.size());
+        ranked.forEach(scored -> results.add(scored.document.competition));
+        return results;
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", current.documents.size());
+        stats.put("dimensions", current.df.length);
+        stats.put("nonZeroTerms", current.documents.stream().mapToInt(document -> document.buckets.length).sum());
+        return stats;
+    }
+
+    private Document vectorize(Competition competition, int dimensions) {
+        Map<Integer, Float> terms = new HashMap<>();
+        addTerms(terms, competition.getTitle(), TITLE_WEIGHT, dimensions);
+        addTerms(terms, competition.getTags(), TAGS_WEIGHT, dimensions);
+        addTerms(terms, competition.getCategory(), CATEGORY_WEIGHT, dimensions);
+        addTerms(terms, competition.getTrack(), TRACK_WEIGHT, dimensions);
+        addTerms(terms, competition.getDescription(), DESCRIPTION_WEIGHT, dimensions);
+        int[] buckets = terms.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        float[] weights = new float[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            weights[i] = (float) sublinear(terms.get(buckets[i]));
+        }
+        return new Document(competition, buckets, weights);
+    }
+
+    /**
+     * 把文本切分为n-gram并按权重累加到哈希桶
+     */
+    private static void addTerms(Map<Integer, Float> terms, String text, float weight, int dimensions) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String normalized = text.toLowerCase();
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            char c = normalized.charAt(i);
+            if (isHan(c)) {
+                int end = i;
+                while (end < length && isHan(normalized.charAt(end))) {
+                    end++;
+                }
+                for (int j = i; j < end; j++) {
+                    addTerm(terms, "u:" + normalized.charAt(j), weight, dimensions);
+                    if (j + 1 < end) {
+                        addTerm(terms, "b:" + normalized.substring(j, j + 2), weight, dimensions);
+                    }
+                }
+                i = end;
+            } else if (Character.isLetterOrDigit(c)) {
+                int end = i;
+                while (end < length && Character.isLetterOrDigit(normalized.charAt(end)) && !isHan(normalized.charAt(end))) {
+                    end++;
+                }
+                String word = normalized.substring(i, end);
+                addTerm(terms, "w:" + word, weight, dimensions);
+                // 三字母片段用于匹配词形变化和拼写接近的英文词
+                String padded = "^" + word + "$";
+                for (int j = 0; j + 3 <= padded.length(); j++) {
+                    addTerm(terms, "g:" + padded.substring(j, j + 3), weight * 0.5f, dimensions);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static void addTerm(Map<Integer, Float> terms, String term, float weight, int dimensions) {
+        terms.merge(bucket(term, dimensions), weight, Float::sum);
+    }
+
+    private static int bucket(String term, int dimensions) {
+        // murmur3最终混合，使String.hashCode的低位分布均匀
+        int h = term.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (dimensions - 1);
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private static double sublinear(float tf) {
+        return tf > 0 ? 1 + Math.log(tf) : 0;
+    }
+
+    private static void addDocumentFrequency(int[] df, Document document, int delta) {
+        for (int bucket : document.buckets) {
+            df[bucket] += delta;
+        }
+    }
+
+    /**
+     * 维度取不小于配置值的2的幂
+     */
+    private int dimensions() {
+        int configured = Math.max(aiConfig.getSearch().getDimensions(), 1024);
+        int dimensions = Integer.highestOneBit(configured);
+        return dimensions < configured ? dimensions << 1 : dimensions;
+    }
+
+    /**
+     * 单个竞赛的稀疏词频向量，buckets升序以便二分查找
+     */
+    private static class Document {
+        private final Competition competition;
+        private final int[] buckets;
+        private final float[] weights;
+
+        private Document(Competition competition, int[] buckets, float[] weights) {
+            this.competition = competition;
+            this.buckets = buckets;
+            this.weights = weights;
+        }
+    }
+
+    /**
+     * 不可变的索引快照，文档向量的TF-IDF范数在构建快照时一次算好
+     */
+    private static class Snapshot {
+        private final List<Document> documents;
+        private final int[] df;
+        private final double[] norms;
+
+        private Snapshot(List<Document> documents, int[] df) {
+            this.documents = documents;
+            this.df = df;
+            this.norms = new double[documents.size()];
+            for (int d = 0; d < documents.size(); d++) {
+                Document document = documents.get(d);
+                double sum = 0;
+                for (int i = 0; i < document.buckets.length; i++) {
+                    double weight = document.weights[i] * idf(document.buckets[i]);
+                    sum += weight * weight;
+                }
+                norms[d] = Math.sqrt(sum);
+            }
+        }
+
+        private double idf(int bucket) {
+            return Math.log((documents.size() + 1.0) / (df[bucket] + 1.0)) + 1;
+        }
+    }
+
+    private static class ScoredDocument {
+        private final Document document;
+        private final double score;
+
+        private ScoredDocument(Document document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
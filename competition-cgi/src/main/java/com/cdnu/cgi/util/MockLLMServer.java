@@ -0,0 +1,355 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * 本地模拟LLM服务
+ * 基于JDK内置HttpServer监听127.0.0.1，兼容OpenAI（/v1/chat/completions）、Claude（/v1/messages）
+ * 和Ollama（/api/generate）的请求与响应格式，支持流式输出、可配置的延迟分布和错误注入，
+ * 回复按提示词哈希从固定列表中选取，用于在不消耗真实额度的情况下压测缓存、重试和并发
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MockLLMServer {
+    private static final List<String> DEFAULT_RESPONSES = Arrays.asList(
+            "根据你的技能背景，推荐关注编号 1、2、3 的竞赛，建议尽早组建队伍并合理分工。",
+            "建议优先参加编号 2 和 4 的竞赛，它们与你的专业方向最匹配，报名时间也较为充裕。",
+            "可以从编号 1 的竞赛入手积累经验，再挑战编号 3 的综合性赛事。",
+            "这是一条模拟回复：请结合自身兴趣选择竞赛，并提前了解赛程和评审标准。"
+    );
+
+    private final AIConfig aiConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Random random;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder streamCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (aiConfig.getMock().getEnabled()) {
+            start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stop();
+    }
+
+    /**
+     * 启动模拟服务，可在测试中脱离Spring单独使用
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        AIConfig.MockConfig config = aiConfig.getMock();
+        random = new Random(config.getSeed());
+        AtomicInteger index = new AtomicInteger();
+        // 延迟注入会阻塞处理线程，使用不限大小的线程池以免模拟服务自身成为压测瓶颈
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ai-mock-llm-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getPort()), 0);
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, WireFormat.OPENAI));
+        server.createContext("/v1/messages", exchange -> handle(exchange, WireFormat.ANTHROPIC));
+        server.createContext("/api/generate", exchange -> handle(exchange, WireFormat.OLLAMA));
+        server.setExecutor(executor);
+        server.start();
+        log.info("AI模拟服务已启动: http://127.0.0.1:{}，延迟分布: {}，错误率: {}",
+                server.getAddress().getPort(), config.getLatencyDistribution(), config.getErrorRate());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * 按协议返回供AIServiceHelper拼接路径的基础地址
+     */
+    public String getBaseUrl(String wireFormat) {
+        if (server == null) {
+            throw new IllegalStateException("AI模拟服务未启动，请设置ai.mock.enabled=true");
+        }
+        String root = "http://127.0.0.1:" + server.getAddress().getPort();
+        // OpenAI兼容接口的base_url约定包含/v1，Claude和Ollama不包含
+        return "openai".equalsIgnoreCase(wireFormat) ? root + "/v1" : root;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", isRunning());
+        stats.put("port", server != null ? server.getAddress().getPort() : null);
+        stats.put("requestCount", requestCount.sum());
+        stats.put("streamCount", streamCount.sum());
+        stats.put("errorCount", errorCount.sum());
+        return stats;
+    }
+
+    private void handle(HttpExchange exchange, WireFormat format) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, errorBody(format, "method not allowed"));
+                return;
+            }
+            requestCount.increment();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String prompt = extractPrompt(request, format);
+            String model = request.path("model").asText("mock");
+            boolean stream = request.path("stream").asBoolean(false);
+
+            AIConfig.MockConfig config = aiConfig.getMock();
+            sleep(sampleLatency(config));
+            if (nextDouble() < config.getErrorRate()) {
+                errorCount.increment();
+                if (config.getErrorStatus() == 429) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                }
+                sendJson(exchange, config.getErrorStatus(), errorBody(format, "injected error"));
+                return;
+            }
+
+            String completion = completionFor(prompt, config);
+            if (stream) {
+                streamCount.increment();
+                stream(exchange, format, model, completion, config);
+            } else {
+                sendJson(exchange, 200, completionBody(format, model, prompt, completion));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端超时或取消请求时连接已断开
+            log.debug("AI模拟服务写入响应失败: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("AI模拟服务处理请求失败: {}", e.getMessage());
+            sendJson(exchange, 400, errorBody(format, e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 取最后一条用户消息，Ollama直接使用prompt字段
+     */
+    private String extractPrompt(JsonNode request, WireFormat format) {
+        if (format == WireFormat.OLLAMA) {
+            return request.path("prompt").asText("");
+        }
+        JsonNode messages = request.path("messages");
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).path("role").asText())) {
+                return messages.get(i).path("content").asText("");
+            }
+        }
+        return "";
+    }
+
+    private String completionFor(String prompt, AIConfig.MockConfig config) {
+        List<String> responses = config.getCannedResponses().isEmpty() ? DEFAULT_RESPONSES : config.getCannedResponses();
+        CRC32 crc = new CRC32();
+        crc.update(prompt.getBytes(StandardCharsets.UTF_8));
+        return responses.get((int) (crc.getValue() % responses.size()));
+    }
+
+    private long sampleLatency(AIConfig.MockConfig config) {
+        double mean = config.getLatencyMeanMillis();
+        double stddev = config.getLatencyStddevMillis();
+        double latency;
+        switch (config.getLatencyDistribution().toLowerCase()) {
+            case "fixed":
+                latency = mean;
+                break;
+            case "uniform":
+                latency = mean - stddev + 2 * stddev * nextDouble();
+                break;
+            case "normal":
+                latency = mean + stddev * nextGaussian();
+                break;
+            case "lognormal":
+                // 由目标均值和标准差换算对数正态分布参数，模拟长尾延迟
+                if (mean <= 0) {
+                    latency = 0;
+                    break;
+                }
+                double sigma2 = Math.log(1 + (stddev * stddev) / (mean * mean));
+                latency = Math.exp(Math.log(mean) - sigma2 / 2 + Math.sqrt(sigma2) * nextGaussian());
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的延迟分布: " + config.getLatencyDistribution());
+        }
+        return Math.max(0, Math.round(latency));
+    }
+
+    private void stream(HttpExchange exchange, WireFormat format, String model, String completion,
+                        AIConfig.MockConfig config) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type",
+                format == WireFormat.OLLAMA ? "application/x-ndjson" : "text/event-stream; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int chunkChars = Math.max(config.getChunkChars(), 1);
+        for (int i = 0; i < completion.length(); i += chunkChars) {
+            String chunk = completion.substring(i, Math.min(completion.length(), i + chunkChars));
+            writeLine(out, streamChunk(format, model, chunk));
+            sleep(config.getChunkDelayMillis());
+        }
+        switch (format) {
+            case OPENAI:
+                writeLine(out, "data: [DONE]\n");
+                break;
+            case ANTHROPIC:
+                writeLine(out, "event: message_stop\ndata: {\"type\":\"message_stop\"}\n");
+                break;
+            default:
+                ObjectNode done = objectMapper.createObjectNode();
+                done.put("model", model);
+                done.put("response", "");
+                done.put("done", true);
+                writeLine(out, objectMapper.writeValueAsString(done));
+        }
+    }
+
+    private String streamChunk(WireFormat format, String model, String chunk) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        switch (format) {
+            case OPENAI:
+                node.put("object", "chat.completion.chunk");
+                node.put("model", model);
+                node.putArray("choices").addObject().put("index", 0).putObject("delta").put("content", chunk);
+                return "data: " + objectMapper.writeValueAsString(node) + "\n";
+            case ANTHROPIC:
+                node.put("type", "content_block_delta");
+                node.put("index", 0);
+                node.putObject("delta").put("type", "text_delta").put("text", chunk);
+                return "event: content_block_delta\ndata: " + objectMapper.writeValueAsString(node) + "\n";
+            default:
+                node.put("model", model);
+                node.put("response", chunk);
+                node.put("done", false);
+                return objectMapper.writeValueAsString(node);
+        }
+    }
+
+    private ObjectNode completionBody(WireFormat format, String model, String prompt, String completion) {
+        ObjectNode node = objectMapper.createObjectNode();
+        int promptTokens = PromptManager.estimateTokens(prompt);
+        int completionTokens = PromptManager.estimateTokens(completion);
+        switch (format) {
+            case OPENAI:
+                node.put("id", "chatcmpl-mock");
+                node.put("object", "chat.completion");
+                node.put("model", model);
+                ObjectNode choice = node.putArray("choices").addObject();
+                choice.put("index", 0);
+                choice.putObject("message").put("role", "assistant").put("content", completion);
+                choice.put("finish_reason", "stop");
+                node.putObject("usage").put("prompt_tokens", promptTokens)
+                        .put("completion_tokens", completionTokens)
+                        .put("total_tokens", promptTokens + completionTokens);
+                break;
+            case ANTHROPIC:
+                node.put("id", "msg_mock");
+                node.put("type", "message");
+                node.put("role", "assistant");
+                node.put("model", model);
+                ArrayNode content = node.putArray("content");
+                content.addObject().put("type", "text").put("text", completion);
+                node.put("stop_reason", "end_turn");
+                node.putObject("usage").put("input_tokens", promptTokens).put("output_tokens", completionTokens);
+                break;
+            default:
+                node.put("model", model);
+                node.put("response", completion);
+                node.put("done", true);
+                node.put("prompt_eval_count", promptTokens);
+                node.put("eval_count", completionTokens);
+        }
+        return node;
+    }
+
+    private ObjectNode errorBody(WireFormat format, String message) {
+        ObjectNode node = objectMapper.createObjectNode();
+        switch (format) {
+            case ANTHROPIC:
+                node.put("type", "error");
+                node.putObject("error").put("type", "api_error").put("message", message);
+                break;
+            case OPENAI:
+                node.putObject("error").put("type", "server_error").put("message", message);
+                break;
+            default:
+                node.put("error", message);
+        }
+        return node;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    /** 共享的带种子随机数，加锁保证相同请求顺序下取值可复现 */
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private synchronized double nextGaussian() {
+        return random.nextGaussian();
+    }
+
+    private enum WireFormat {
+        OPENAI, ANTHROPIC, OLLAMA
+    }
+}
@@ -1,134 +1,244 @@
 package com.cdnu.cgi.util;
 
+import com.cdnu.cgi.config.AIConfig;
 import com.cdnu.cgi.entity.Competition;
 import com.cdnu.cgi.entity.User;
 import com.cdnu.cgi.entity.UserSkill;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * AI提示词管理器
- * 负责加载和管理AI提示词模板
+ * 负责加载和管理AI提示词模板，模板在加载时预编译并校验占位符，
+ * 配置文件变更后可热加载，整体替换已编译的模板
  */
 @Component
+@RequiredArgsConstructor
 public class PromptManager {
     
     private static final Logger logger = LoggerFactory.getLogger(PromptManager.class);
     
-    private JsonNode promptConfig;
+    /** 各模板允许使用的占位符，顺序即渲染参数顺序 */
+    private static final Map<String, String[]> TEMPLATE_PARAMETERS = new LinkedHashMap<>();
+    static {
+        TEMPLATE_PARAMETERS.put("recommendation", new String[]{"userInfo", "competitionList"});
+        TEMPLATE_PARAMETERS.put("skillAnalysis", new String[]{"userInfo"});
+        TEMPLATE_PARAMETERS.put("chat", new String[]{"userInfo", "message", "history"});
+        TEMPLATE_PARAMETERS.put("chatSummary", new String[]{"summary", "history", "maxLength"});
+        TEMPLATE_PARAMETERS.put("learningPath", new String[]{"userInfo", "competitionInfo"});
+        TEMPLATE_PARAMETERS.put("preparationAdvice", new String[]{"userInfo", "competitionInfo"});
+        TEMPLATE_PARAMETERS.put("matchScore", new String[]{"userInfo", "competitionInfo"});
+        TEMPLATE_PARAMETERS.put("trends", new String[]{});
+        TEMPLATE_PARAMETERS.put("intelligentSearch", new String[]{"query"});
+    }
+    private static final String[] USER_INFO_PARAMETERS = {"username", "major", "skills"};
+    private static final String[] COMPETITION_INFO_PARAMETERS = {"title", "category", "tags", "organizer"};
+    private static final String[] COMPETITION_LIST_PARAMETERS = {"index", "title", "category", "track", "tags"};
+    private static final String[] CONVERSATION_SUMMARY_PARAMETERS = {"summary"};
+    private static final String[] CONVERSATION_TURN_PARAMETERS = {"input", "response"};
+    
+    private final AIConfig aiConfig;
+    private final ResourceLoader resourceLoader;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    /** 当前生效的已编译模板，热加载时整体替换 */
+    private volatile CompiledPrompts prompts;
+    private volatile long lastModified;
+    private ScheduledExecutorService reloader;
+    
     @PostConstruct
     public void init() {
-        loadPromptConfig();
+        reload();
+        int interval = aiConfig.getPrompt().getReloadIntervalSeconds();
+        String location = aiConfig.getPrompt().getLocation();
+        if (interval > 0 && !resourceLoader.getResource(location).isFile()) {
+            // 打包在jar中的classpath资源没有修改时间，轮询永远不会触发热加载
+            logger.info("AI提示词配置 {} 不是文件系统中的文件，不启用热加载；需要热加载时请配置file:路径", location);
+            return;
+        }
+        if (interval > 0) {
+            reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ai-prompt-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader.scheduleWithFixedDelay(this::reloadIfModified, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
     }
     
     /**
-     * 加载提示词配置文件
+     * 重新加载并编译提示词配置，校验失败时抛出异常并保留原有模板
      */
-    private void loadPromptConfig() {
-        try {
-            ClassPathResource resource = new ClassPathResource("ai-prompts.json");
-            promptConfig = objectMapper.readTree(resource.getInputStream());
-            logger.info("AI提示词配置加载成功");
+    public synchronized void reload() {
+        String location = aiConfig.getPrompt().getLocation();
+        Resource resource = resourceLoader.getResource(location);
+        try (InputStream input = resource.getInputStream()) {
+            long modified = lastModified(resource);
+            prompts = compile(objectMapper.readTree(input));
+            lastModified = modified;
+            logger.info("AI提示词配置加载成功: {}", location);
         } catch (IOException e) {
             logger.error("加载AI提示词配置失败", e);
             throw new RuntimeException("无法加载AI提示词配置", e);
+        } catch (IllegalArgumentException e) {
+            logger.error("AI提示词配置校验失败: {}", e.getMessage());
+            throw e;
+        }
+    }
+    
+    /**
+     * 配置文件修改时间变化时热加载，仅对文件系统中的配置生效，init中已排除其他位置
+     */
+    private void reloadIfModified() {
+        try {
+            Resource resource = resourceLoader.getResource(aiConfig.getPrompt().getLocation());
+            long modified = lastModified(resource);
+            if (modified > 0 && modified != lastModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            logger.warn("AI提示词热加载失败，继续使用原有模板: {}", e.getMessage());
+        }
+    }
+    
+    private long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * 编译全部模板，缺少模板或出现未知占位符时抛出IllegalArgumentException
+     */
+    private CompiledPrompts compile(JsonNode config) {
+        Map<String, PromptTemplate> templates = new HashMap<>();
+        TEMPLATE_PARAMETERS.forEach((name, parameters) -> templates.put(name,
+                PromptTemplate.compile(name, requireText(config.path("templates").path(name).path("content"), "templates." + name),
+                        parameters)));
+        JsonNode formats = config.path("formats");
+        String systemPrompt = config.path("system").path("base").asText() + "\n\n"
+                + config.path("system").path("requirements").asText();
+        return new CompiledPrompts(systemPrompt, templates,
+                PromptTemplate.compile("userInfo", requireText(formats.path("userInfo"), "formats.userInfo"),
+                        USER_INFO_PARAMETERS),
+                PromptTemplate.compile("competitionInfo", requireText(formats.path("competitionInfo"), "formats.competitionInfo"),
+                        COMPETITION_INFO_PARAMETERS),
+                PromptTemplate.compile("competitionList", requireText(formats.path("competitionList"), "formats.competitionList"),
+                        COMPETITION_LIST_PARAMETERS),
+                PromptTemplate.compile("conversationSummary",
+                        requireText(formats.path("conversationSummary"), "formats.conversationSummary"),
+                        CONVERSATION_SUMMARY_PARAMETERS),
+                PromptTemplate.compile("conversationTurn", requireText(formats.path("conversationTurn"), "formats.conversationTurn"),
+                        CONVERSATION_TURN_PARAMETERS));
+    }
+    
+    private String requireText(JsonNode node, String path) {
+        if (!node.isTextual()) {
+            throw new IllegalArgumentException("提示词配置缺少" + path);
         }
+        return node.asText();
     }
     
     /**
      * 获取系统基础提示词
      */
     public String getSystemPrompt() {
-        String base = promptConfig.path("system").path("base").asText();
-        String requirements = promptConfig.path("system").path("requirements").asText();
-        return base + "\n\n" + requirements;
+        return prompts.systemPrompt;
     }
     
     /**
      * 构建竞赛推荐提示词
      */
     public String buildRecommendationPrompt(User user, List<UserSkill> userSkills, List<Competition> competitions) {
-        String template = getTemplate("recommendation");
-        String userInfo = formatUserInfo(user, userSkills);
-        String competitionList = formatCompetitionList(competitions);
-        
-        return template.replace("{userInfo}", userInfo)
-                      .replace("{competitionList}", competitionList);
+        return getTemplate("recommendation").render(formatUserInfo(user, userSkills), formatCompetitionList(competitions));
     }
     
     /**
      * 构建技能分析提示词
      */
     public String buildSkillAnalysisPrompt(User user, List<UserSkill> userSkills) {
-        String template = getTemplate("skillAnalysis");
-        String userInfo = formatUserInfo(user, userSkills);
-        
-        return template.replace("{userInfo}", userInfo);
+        return getTemplate("skillAnalysis").render(formatUserInfo(user, userSkills));
     }
     
     /**
      * 构建聊天提示词
      */
     public String buildChatPrompt(String message, User user, List<UserSkill> userSkills) {
-        String template = getTemplate("chat");
-        String userInfo = formatUserInfo(user, userSkills);
-        
-        return template.replace("{userInfo}", userInfo)
-                      .replace("{message}", message);
+        return buildChatPrompt(message, user, userSkills, null);
+    }
+    
+    /**
+     * 构建带多轮上下文的聊天提示词，context为空时与单轮提示词相同
+     */
+    public String buildChatPrompt(String message, User user, List<UserSkill> userSkills, ChatContextManager.ChatContext context) {
+        return getTemplate("chat").render(formatUserInfo(user, userSkills), message, formatConversation(context));
+    }
+    
+    /**
+     * 构建对话摘要提示词，把已有摘要和新增对话合并为新的摘要
+     */
+    public String buildChatSummaryPrompt(String summary, List<ChatContextManager.Turn> turns, int maxLength) {
+        StringBuilder history = new StringBuilder();
+        appendTurns(history, turns);
+        return getTemplate("chatSummary").render(summary != null && !summary.isEmpty() ? summary : "无",
+                history.toString(), String.valueOf(maxLength));
     }
     
     /**
      * 构建学习路径提示词
      */
     public String buildLearningPathPrompt(User user, List<UserSkill> userSkills, Competition competition) {
-        String template = getTemplate("learningPath");
-        String userInfo = formatUserInfo(user, userSkills);
-        String competitionInfo = formatCompetitionInfo(competition);
-        
-        return template.replace("{userInfo}", userInfo)
-                      .replace("{competitionInfo}", competitionInfo);
+        return getTemplate("learningPath").render(formatUserInfo(user, userSkills), formatCompetitionInfo(competition));
     }
     
     /**
      * 构建准备建议提示词
      */
     public String buildPreparationAdvicePrompt(User user, List<UserSkill> userSkills, Competition competition) {
-        String template = getTemplate("preparationAdvice");
-        String userInfo = formatUserInfo(user, userSkills);
-        String competitionInfo = formatCompetitionInfo(competition);
-        
-        return template.replace("{userInfo}", userInfo)
-                      .replace("{competitionInfo}", competitionInfo);
+        return getTemplate("preparationAdvice").render(formatUserInfo(user, userSkills), formatCompetitionInfo(competition));
     }
     
     /**
      * 构建匹配度分析提示词
      */
     public String buildMatchScorePrompt(User user, List<UserSkill> userSkills, Competition competition) {
-        String template = getTemplate("matchScore");
-        String userInfo = formatUserInfo(user, userSkills);
-        String competitionInfo = formatCompetitionInfo(competition);
-        
-        return template.replace("{userInfo}", userInfo)
-                      .replace("{competitionInfo}", competitionInfo);
+        return getTemplate("matchScore").render(formatUserInfo(user, userSkills), formatCompetitionInfo(competition));
     }
     
     /**
      * 构建趋势分析提示词
      */
     public String buildTrendsPrompt() {
-        return getTemplate("trends");
+        return getTemplate("trends").render();
     }
     
     /**
@@ -136,8 +246,8 @@ public class PromptManager {
      */
     public String buildEnhancedTrendsPrompt(User user, List<UserSkill> userSkills, 
                                           Competition participatedCompetition, Competition availableCompetition) {
-        String baseTemplate = getTemplate("trends");
-        StringBuilder enhancedPrompt = new StringBuilder(baseTemplate);
+        StringBuilder enhancedPrompt = new StringBuilder(1024);
+        getTemplate("trends").renderTo(enhancedPrompt);
         
         // 添加用户信息
         if (user != null) {
@@ -168,28 +278,60 @@ public class PromptManager {
      * 构建智能搜索提示词
      */
     public String buildIntelligentSearchPrompt(String query) {
-        String template = getTemplate("intelligentSearch");
-        return template.replace("{query}", query);
+        return getTemplate("intelligentSearch").render(query);
+    }
+    
+    /**
+     * 按token预算截取竞赛列表前缀，至少保留一个竞赛，tokenBudget不大于0时不截断
+     */
+    public List<Competition> fitCompetitionList(List<Competition> competitions, int tokenBudget) {
+        if (tokenBudget <= 0) {
+            return competitions;
+        }
+        PromptTemplate template = prompts.competitionList;
+        int used = 0;
+        for (int i = 0; i < competitions.size(); i++) {
+            Competition comp = competitions.get(i);
+            used += estimateTokens(template.render(String.valueOf(i + 1), comp.getTitle(), comp.getCategory(),
+                    comp.getTrack(), comp.getTags() != null ? comp.getTags() : "")) + 1;
+            if (used > tokenBudget && i > 0) {
+                return new ArrayList<>(competitions.subList(0, i));
+            }
+        }
+        return competitions;
     }
     
     /**
-     * 获取模板内容
+     * 粗略估算token数：中日韩字符按1个token，其余字符按4个字符1个token
      */
-    private String getTemplate(String templateName) {
-        return promptConfig.path("templates").path(templateName).path("content").asText();
+    public static int estimateTokens(CharSequence text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+    
+    /**
+     * 获取已编译的模板
+     */
+    private PromptTemplate getTemplate(String templateName) {
+        return prompts.templates.get(templateName);
     }
     
     /**
      * 格式化用户信息
      */
     private String formatUserInfo(User user, List<UserSkill> userSkills) {
-        String template = promptConfig.path("formats").path("userInfo").asText();
         String skills = userSkills.isEmpty() ? "暂未录入" : 
                        userSkills.stream().map(UserSkill::getSkill).collect(Collectors.joining(", "));
         
-        return template.replace("{username}", user.getUsername())
-                      .replace("{major}", user.getMajor() != null ? user.getMajor() : "未知")
-                      .replace("{skills}", skills);
+        return prompts.userInfo.render(user.getUsername(), user.getMajor() != null ? user.getMajor() : "未知", skills);
     }
     
     /**
@@ -198,30 +340,82 @@ public class PromptManager {
     private String formatCompetitionInfo(Competition competition) {
         if (competition == null) return "";
         
-        String template = promptConfig.path("formats").path("competitionInfo").asText();
-        return template.replace("{title}", competition.getTitle())
-                      .replace("{category}", competition.getCategory())
-                      .replace("{tags}", competition.getTags() != null ? competition.getTags() : "")
-                      .replace("{organizer}", competition.getOrganizer() != null ? competition.getOrganizer() : "");
+        return prompts.competitionInfo.render(competition.getTitle(), competition.getCategory(),
+                competition.getTags() != null ? competition.getTags() : "",
+                competition.getOrganizer() != null ? competition.getOrganizer() : "");
+    }
+    
+    /**
+     * 格式化多轮对话上下文：摘要在前，最近几轮原文在后，末尾留空行与当前问题分隔
+     */
+    private String formatConversation(ChatContextManager.ChatContext context) {
+        if (context == null || context.isEmpty()) {
+            return "";
+        }
+        CompiledPrompts current = prompts;
+        StringBuilder sb = new StringBuilder(256);
+        if (context.getSummary() != null && !context.getSummary().isEmpty()) {
+            current.conversationSummary.renderTo(sb, context.getSummary());
+            sb.append("\n\n");
+        }
+        appendTurns(sb, context.getTurns());
+        return sb.toString();
+    }
+    
+    private void appendTurns(StringBuilder sb, List<ChatContextManager.Turn> turns) {
+        PromptTemplate template = prompts.conversationTurn;
+        for (ChatContextManager.Turn turn : turns) {
+            template.renderTo(sb, turn.getInput(), turn.getResponse());
+            sb.append("\n\n");
+        }
     }
     
     /**
      * 格式化竞赛列表
      */
     private String formatCompetitionList(List<Competition> competitions) {
-        StringBuilder sb = new StringBuilder();
-        String template = promptConfig.path("formats").path("competitionList").asText();
-        
-        for (int i = 0; i < Math.min(competitions.size(), 10); i++) {
+        PromptTemplate template = prompts.competitionList;
+        int count = competitions.size();
+        String[][] rows = new String[count][];
+        int capacity = 0;
+        for (int i = 0; i < count; i++) {
             Competition comp = competitions.get(i);
-            String formatted = template.replace("{index}", String.valueOf(i + 1))
-                                     .replace("{title}", comp.getTitle())
-                                     .replace("{category}", comp.getCategory())
-                                     .replace("{track}", comp.getTrack())
-                                     .replace("{tags}", comp.getTags() != null ? comp.getTags() : "");
-            sb.append(formatted).append("\n");
+            rows[i] = new String[]{String.valueOf(i + 1), comp.getTitle(), comp.getCategory(), comp.getTrack(),
+                    comp.getTags() != null ? comp.getTags() : ""};
+            capacity += template.estimateLength(rows[i]) + 1;
+        }
+        
+        StringBuilder sb = new StringBuilder(capacity);
+        for (String[] row : rows) {
+            template.renderTo(sb, row);
+            sb.append("\n");
         }
         
         return sb.toString();
     }
-}
\ No newline at end of file
+    
+    /**
+     * 一次加载编译出的全部模板，不可变，便于热加载时原子替换
+     */
+    private static final class CompiledPrompts {
+        private final String systemPrompt;
+        private final Map<String, PromptTemplate> templates;
+        private final PromptTemplate userInfo;
+        private final PromptTemplate competitionInfo;
+        private final PromptTemplate competitionList;
+        private final PromptTemplate conversationSummary;
+        private final PromptTemplate conversationTurn;
+        
+        private CompiledPrompts(String systemPrompt, Map<String, PromptTemplate> templates, PromptTemplate userInfo,
+                                PromptTemplate competitionInfo, PromptTemplate competitionList,
+                                PromptTemplate conversationSummary, PromptTemplate conversationTurn) {
+            this.systemPrompt = systemPrompt;
+            this.templates = templates;
+            this.userInfo = userInfo;
+            this.competitionInfo = competitionInfo;
+            this.competitionList = competitionList;
+            this.conversationSummary = conversationSummary;
+            this.conversationTurn = conversationTurn;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.cdnu.cgi.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AI提示词模板重新加载的管理端点
+ * 重新加载会替换所有接口使用的模板，只通过绑定在本机回环地址上的管理端口暴露，不提供公开的HTTP接口
+ */
+@Slf4j
+@Component
+@Endpoint(id = "promptreload")
+@RequiredArgsConstructor
+public class PromptReloadEndpoint {
+    private final PromptManager promptManager;
+
+    /**
+     * 重新加载AI提示词模板，校验失败时保留原有模板
+     */
+    @WriteOperation
+    public Map<String, Object> reload() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            promptManager.reload();
+            result.put("success", true);
+        } catch (Exception e) {
+            log.error("重新加载AI提示词失败", e);
+            result.put("success", false);
+            result.put("error", "重新加载AI提示词失败: " + e.getMessage());
+        }
+        return result;
+    }
+}
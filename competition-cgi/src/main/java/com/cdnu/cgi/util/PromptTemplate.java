@@ -0,0 +1,96 @@
+package com.cdnu.cgi.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的提示词模板
+ * 加载时把模板拆分为文本段和占位符段，占位符按声明顺序映射为参数下标，
+ * 渲染时一次遍历写入预估容量的StringBuilder，插入的值不会再被当作模板解析
+ */
+public final class PromptTemplate {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z][A-Za-z0-9_]*)}");
+
+    private final String name;
+    /** 文本段，与slots交错排列：texts[0] slots[0] texts[1] ... slots[n-1] texts[n] */
+    private final String[] texts;
+    /** 每个占位符对应的参数下标 */
+    private final int[] slots;
+    private final int parameterCount;
+    private final int literalLength;
+
+    private PromptTemplate(String name, String[] texts, int[] slots, int parameterCount) {
+        this.name = name;
+        this.texts = texts;
+        this.slots = slots;
+        this.parameterCount = parameterCount;
+        this.literalLength = Arrays.stream(texts).mapToInt(String::length).sum();
+    }
+
+    /**
+     * 编译模板，parameters为允许出现的占位符名称，其顺序即render的参数顺序
+     * 出现未声明的占位符时抛出IllegalArgumentException
+     */
+    public static PromptTemplate compile(String name, String source, String... parameters) {
+        List<String> parameterNames = Arrays.asList(parameters);
+        List<String> texts = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(source);
+        int last = 0;
+        while (matcher.find()) {
+            int index = parameterNames.indexOf(matcher.group(1));
+            if (index < 0) {
+                throw new IllegalArgumentException(String.format("提示词模板[%s]包含未知占位符{%s}，可用占位符: %s",
+                        name, matcher.group(1), parameterNames));
+            }
+            texts.add(source.substring(last, matcher.start()));
+            slots.add(index);
+            last = matcher.end();
+        }
+        texts.add(source.substring(last));
+        return new PromptTemplate(name, texts.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray(), parameters.length);
+    }
+
+    /**
+     * 按编译时声明的占位符顺序传入参数渲染模板，null按空串处理
+     */
+    public String render(String... values) {
+        StringBuilder out = new StringBuilder(estimateLength(values));
+        renderTo(out, values);
+        return out.toString();
+    }
+
+    /**
+     * 渲染并追加到已有的StringBuilder，用于列表类模板的循环拼接
+     */
+    public void renderTo(StringBuilder out, String... values) {
+        if (values.length != parameterCount) {
+            throw new IllegalArgumentException(String.format("提示词模板[%s]需要%d个参数，实际传入%d个",
+                    name, parameterCount, values.length));
+        }
+        out.append(texts[0]);
+        for (int i = 0; i < slots.length; i++) {
+            String value = values[slots[i]];
+            if (value != null) {
+                out.append(value);
+            }
+            out.append(texts[i + 1]);
+        }
+    }
+
+    /**
+     * 渲染结果的长度
+     */
+    public int estimateLength(String... values) {
+        int length = literalLength;
+        for (int slot : slots) {
+            String value = slot < values.length ? values[slot] : null;
+            length += value != null ? value.length() : 0;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,40 @@
+package com.cdnu.cgi.util;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 竞赛推荐预计算的管理端点
+ * 预计算会为所有用户调用模型，只通过绑定在本机回环地址上的管理端口暴露，不提供公开的HTTP接口
+ */
+@Component
+@Endpoint(id = "recommendationprecompute")
+@RequiredArgsConstructor
+public class RecommendationPrecomputeEndpoint {
+    private final RecommendationPrecomputeTask precomputeTask;
+
+    /**
+     * 竞赛推荐预计算进度
+     */
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return precomputeTask.getStats();
+    }
+
+    /**
+     * 立即在后台开始一次竞赛推荐预计算
+     */
+    @WriteOperation
+    public Map<String, Object> trigger() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("started", precomputeTask.trigger());
+        result.put("stats", precomputeTask.getStats());
+        return result;
+    }
+}
@@ -0,0 +1,182 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.entity.Competition;
+import com.cdnu.cgi.event.UserDeletedEvent;
+import com.cdnu.cgi.mapper.CompetitionMapper;
+import com.cdnu.cgi.mapper.RecommendationSnapshotMapper;
+import com.cdnu.cgi.mapper.UserMapper;
+import com.cdnu.cgi.service.User.AIService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 竞赛推荐夜间预计算
+ * 每天定时按用户ID分批遍历所有用户，以有限并发调用模型生成推荐并写入推荐表和快照，
+ * 白天的推荐请求在用户技能未变化时直接读取预计算结果，不再实时调用模型；用户删除后同时删除其快照
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecommendationPrecomputeTask {
+    private final AIConfig aiConfig;
+    private final AIService aiService;
+    private final UserMapper userMapper;
+    private final CompetitionMapper competitionMapper;
+    private final RecommendationSnapshotMapper snapshotMapper;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+
+    private volatile LocalDateTime lastStartedAt;
+    private volatile LocalDateTime lastFinishedAt;
+    private final AtomicInteger processedCount = new AtomicInteger();
+    private final AtomicInteger succeededCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        AIConfig.RecommendationConfig config = aiConfig.getRecommendation();
+        AtomicInteger index = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(config.getPrecomputeConcurrency(), 1), r -> {
+            Thread thread = new Thread(r, "recommendation-precompute-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recommendation-precompute-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (config.getPrecomputeEnabled()) {
+            scheduler.scheduleAtFixedRate(this::run, initialDelayMinutes(config.getPrecomputeHour()),
+                    TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * 立即在后台开始一次预计算，已有任务在执行时返回false
+     */
+    public boolean trigger() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::run);
+        return true;
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        try {
+            snapshotMapper.deleteByUserId(event.getUserId());
+        } catch (Exception e) {
+            log.warn("删除用户 {} 的推荐快照失败: {}", event.getUserId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 最近一次预计算的进度和结果
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("lastStartedAt", lastStartedAt);
+        stats.put("lastFinishedAt", lastFinishedAt);
+        stats.put("processedCount", processedCount.get());
+        stats.put("succeededCount", succeededCount.get());
+        stats.put("failedCount", failedCount.get());
+        return stats;
+    }
+
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        AIConfig.RecommendationConfig config = aiConfig.getRecommendation();
+        int concurrency = Math.max(config.getPrecomputeConcurrency(), 1);
+        int batchSize = Math.max(config.getPrecomputeBatchSize(), 1);
+        Semaphore permits = new Semaphore(concurrency);
+        lastStartedAt = LocalDateTime.now();
+        processedCount.set(0);
+        succeededCount.set(0);
+        failedCount.set(0);
+        try {
+            // 整个任务共用一份竞赛目录，避免每个用户都查询全表
+            List<Competition> competitions = competitionMapper.selectAll();
+            log.info("开始预计算竞赛推荐，竞赛数: {}，并发数: {}", competitions.size(), concurrency);
+            long afterId = 0;
+            List<Long> userIds;
+            do {
+                userIds = userMapper.selectIdsAfter(afterId, batchSize);
+                for (Long userId : userIds) {
+                    // 并发数达到上限时等待，控制对模型提供商的压力
+                    permits.acquire();
+                    workers.execute(() -> {
+                        try {
+                            if (aiService.precomputeRecommendations(userId, competitions)) {
+                                succeededCount.incrementAndGet();
+                            } else {
+                                failedCount.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failedCount.incrementAndGet();
+                            log.warn("预计算用户 {} 的推荐失败: {}", userId, e.getMessage());
+                        } finally {
+                            processedCount.incrementAndGet();
+                            permits.release();
+                        }
+                    });
+                    afterId = userId;
+                }
+            } while (userIds.size() >= batchSize);
+            // 等待最后一批完成
+            permits.acquire(concurrency);
+            permits.release(concurrency);
+            log.info("竞赛推荐预计算完成，处理 {} 个用户，成功 {}，失败 {}",
+                    processedCount.get(), succeededCount.get(), failedCount.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("竞赛推荐预计算被中断");
+        } catch (Exception e) {
+            log.error("竞赛推荐预计算失败", e);
+        } finally {
+            lastFinishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    /**
+     * 距下一个指定整点的分钟数
+     */
+    private static long initialDelayMinutes(int hour) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(Math.floorMod(hour, 24), 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next).toMinutes();
+    }
+}
@@ -0,0 +1,73 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.mapper.CompetitionRecommendationMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推荐记录保留策略
+ * 定期分批删除超过保留天数的推荐记录，每批行数有限以避免长时间锁表
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecommendationRetentionTask {
+    private final AIConfig aiConfig;
+    private final CompetitionRecommendationMapper recommendationMapper;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        AIConfig.RecommendationConfig config = aiConfig.getRecommendation();
+        if (config.getRetentionDays() <= 0) {
+            return;
+        }
+        long interval = TimeUnit.HOURS.toMinutes(Math.max(config.getPruneIntervalHours(), 1));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recommendation-pruner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::prune, 10, interval, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 删除过期推荐记录，返回删除总数
+     */
+    public int prune() {
+        AIConfig.RecommendationConfig config = aiConfig.getRecommendation();
+        LocalDateTime before = LocalDateTime.now().minusDays(config.getRetentionDays());
+        int batchSize = Math.max(config.getPruneBatchSize(), 1);
+        int total = 0;
+        try {
+            int deleted;
+            do {
+                deleted = recommendationMapper.deleteCreatedBefore(before, batchSize);
+                total += deleted;
+            } while (deleted >= batchSize && !Thread.currentThread().isInterrupted());
+            if (total > 0) {
+                log.info("清理{}之前的推荐记录 {} 条", before, total);
+            }
+        } catch (Exception e) {
+            log.error("清理过期推荐记录失败", e);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,143 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.entity.UserSkill;
+import com.cdnu.cgi.event.UserSkillsChangedEvent;
+import com.cdnu.cgi.mapper.UserSkillMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局技能字典
+ * 把去除首尾空白后的技能名映射为从0递增的整数ID，用户技能和团队技能字符串转换为SkillSet位图后，
+ * 匹配、重叠和重复比例都只需按字做与运算和Long.bitCount。
+ * 团队技能字符串按原文缓存解析结果（原文变化即为新键，无需失效）；用户技能集合缓存到技能变更事件为止
+ */
+@Component
+@RequiredArgsConstructor
+public class SkillDictionary {
+    private static final int MAX_PARSED_STRINGS = 10000;
+    private static final int MAX_USER_SETS = 10000;
+
+    private final UserSkillMapper userSkillMapper;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<String, SkillSet> parsed = lruMap(MAX_PARSED_STRINGS);
+    private final Map<Long, SkillSet> userSets = lruMap(MAX_USER_SETS);
+    /** 技能变更次数，加载期间发生变更时不缓存可能过期的结果 */
+    private final AtomicLong userSkillChanges = new AtomicLong();
+
+    /**
+     * 技能名对应的ID，首次出现时分配；空白技能返回-1
+     */
+    public int intern(String skill) {
+        if (skill == null) {
+            return -1;
+        }
+        String normalized = skill.trim();
+        if (normalized.isEmpty()) {
+            return -1;
+        }
+        Integer id = ids.get(normalized);
+        return id != null ? id : ids.computeIfAbsent(normalized, key -> nextId.getAndIncrement());
+    }
+
+    /**
+     * 解析逗号分隔（支持中英文逗号）的技能字符串，忽略空白条目
+     */
+    public SkillSet parse(String skills) {
+        if (skills == null || skills.trim().isEmpty()) {
+            return SkillSet.EMPTY;
+        }
+        synchronized (parsed) {
+            SkillSet cached = parsed.get(skills);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<Integer> entries = new ArrayList<>();
+        int start = 0;
+        int length = skills.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || skills.charAt(i) == ',' || skills.charAt(i) == '，') {
+                int id = intern(skills.substring(start, i));
+                if (id >= 0) {
+                    entries.add(id);
+                }
+                start = i + 1;
+            }
+        }
+        SkillSet set = SkillSet.of(entries.stream().mapToInt(Integer::intValue).toArray());
+        synchronized (parsed) {
+            parsed.put(skills, set);
+        }
+        return set;
+    }
+
+    /**
+     * 用户技能集合，每条user_skills记录为一个条目
+     */
+    public SkillSet ofUser(Long userId) {
+        if (userId == null) {
+            return SkillSet.EMPTY;
+        }
+        synchronized (userSets) {
+            SkillSet cached = userSets.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long changes = userSkillChanges.get();
+        SkillSet set = ofUserSkills(userSkillMapper.selectByUserId(userId));
+        synchronized (userSets) {
+            if (userSkillChanges.get() == changes) {
+                userSets.put(userId, set);
+            }
+        }
+        return set;
+    }
+
+    public SkillSet ofUserSkills(List<UserSkill> userSkills) {
+        if (userSkills == null || userSkills.isEmpty()) {
+            return SkillSet.EMPTY;
+        }
+        int[] entries = new int[userSkills.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = intern(userSkills.get(i).getSkill());
+        }
+        return SkillSet.of(entries);
+    }
+
+    /**
+     * 先于其他监听器执行，保证依赖用户技能集合的缓存失效后重新计算时读到新技能
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onUserSkillsChanged(UserSkillsChangedEvent event) {
+        synchronized (userSets) {
+            userSkillChanges.incrementAndGet();
+            userSets.remove(event.getUserId());
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxSize) {
+        return new LinkedHashMap<K, V>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
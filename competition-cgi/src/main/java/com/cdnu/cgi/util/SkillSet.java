@@ -0,0 +1,97 @@
+package com.cdnu.cgi.util;
+
+import java.util.Arrays;
+
+/**
+ * 以技能字典ID位图表示的技能集合，创建后不可变
+ * 除位图外保留原始条目数和按原顺序的ID列表（含重复项），使按条目计数的匹配度公式与逐个比较字符串时一致
+ */
+public final class SkillSet {
+    static final SkillSet EMPTY = new SkillSet(new long[0], new int[0], 0);
+
+    private final long[] words;
+    /** 每个原始条目的技能ID，空白条目为-1 */
+    private final int[] ids;
+    private final int distinctCount;
+
+    SkillSet(long[] words, int[] ids, int distinctCount) {
+        this.words = words;
+        this.ids = ids;
+        this.distinctCount = distinctCount;
+    }
+
+    /**
+     * 原始条目数（含重复和空白条目）
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * 两个集合共有的不同技能数
+     */
+    public int overlap(SkillSet other) {
+        int length = Math.min(words.length, other.words.length);
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * 本集合中属于other的条目数，重复条目分别计数
+     */
+    public int countIn(SkillSet other) {
+        if (distinctCount == ids.length) {
+            return overlap(other);
+        }
+        int count = 0;
+        for (int id : ids) {
+            if (id >= 0 && other.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按原顺序的条目ID（含重复项，空白条目为-1）
+     */
+    public int[] entryIds() {
+        return ids.clone();
+    }
+
+    public boolean contains(int id) {
+        int word = id >>> 6;
+        return word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    static SkillSet of(int[] ids) {
+        int max = -1;
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        long[] words = new long[max < 0 ? 0 : (max >>> 6) + 1];
+        for (int id : ids) {
+            if (id >= 0) {
+                words[id >>> 6] |= 1L << id;
+            }
+        }
+        int distinct = 0;
+        for (long word : words) {
+            distinct += Long.bitCount(word);
+        }
+        // 含空白条目时distinct小于条目数，countIn会逐条比较
+        return new SkillSet(words, ids, distinct);
+    }
+
+    @Override
+    public String toString() {
+        return "SkillSet" + Arrays.toString(ids);
+    }
+}
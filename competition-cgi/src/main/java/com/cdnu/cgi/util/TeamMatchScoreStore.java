@@ -0,0 +1,186 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.event.TeamChangedEvent;
+import com.cdnu.cgi.event.TeamMembersChangedEvent;
+import com.cdnu.cgi.event.UserSkillsChangedEvent;
+import com.cdnu.cgi.service.User.MatchScoreService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 团队卡片匹配度物化存储
+ * 按（竞赛ID，团队ID，用户ID）保存已计算的匹配度，只保留最近被浏览的竞赛。
+ * 读取时不比较团队数据，只靠事件失效：用户技能变化时清除该用户的行以及该用户所在团队的列（团队已有技能随之变化），
+ * 团队或成员变更事件到达时清除该团队的列；新出现的团队没有已保存的分数，按未命中计算
+ */
+@Component
+@RequiredArgsConstructor
+public class TeamMatchScoreStore {
+    /** 同时保留的竞赛数 */
+    private static final int MAX_COMPETITIONS = 64;
+    /** 每个竞赛保留的浏览用户数 */
+    private static final int MAX_USERS_PER_COMPETITION = 5000;
+    /** 竞赛超过该时间未被浏览后整体丢弃 */
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    private final MatchScoreService matchScoreService;
+
+    /** 访问顺序的LinkedHashMap，头部为最久未浏览的竞赛 */
+    private final LinkedHashMap<Long, Matrix> matrices = new LinkedHashMap<Long, Matrix>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Matrix> eldest) {
+            return size() > MAX_COMPETITIONS;
+        }
+    };
+
+    /**
+     * 为竞赛的团队卡片填入用户匹配度，已保存的分数直接使用，其余计算后保存
+     */
+    public List<CompetitionTeamCardDto> applyScores(Long competitionId, Long userId, List<CompetitionTeamCardDto> teamCards) {
+        Matrix matrix = matrixFor(competitionId);
+        List<CompetitionTeamCardDto> missing = new ArrayList<>();
+        long version;
+        synchronized (matrix) {
+            Map<Long, Integer> row = matrix.rows.get(userId);
+            for (CompetitionTeamCardDto teamCard : teamCards) {
+                Integer score = row != null ? row.get(teamCard.getId()) : null;
+                if (score != null) {
+                    teamCard.setMatchScore(score);
+                } else {
+                    missing.add(teamCard);
+                }
+            }
+            version = matrix.version;
+        }
+        if (missing.isEmpty()) {
+            return teamCards;
+        }
+        // 在锁外计算，期间发生失效时不保存可能过期的结果
+        for (CompetitionTeamCardDto teamCard : missing) {
+            teamCard.setMatchScore(matchScoreService.calculateTeamCardMatchScore(teamCard, userId));
+        }
+        synchronized (matrix) {
+            if (matrix.version == version) {
+                Map<Long, Integer> row = matrix.rows.computeIfAbsent(userId, key -> new HashMap<>());
+                for (CompetitionTeamCardDto teamCard : missing) {
+                    row.put(teamCard.getId(), teamCard.getMatchScore());
+                    matrix.members.computeIfAbsent(teamCard.getId(), key -> parseMemberIds(teamCard.getMemberIds()));
+                }
+            }
+        }
+        return teamCards;
+    }
+
+    @EventListener
+    public void onUserSkillsChanged(UserSkillsChangedEvent event) {
+        Long userId = event.getUserId();
+        if (userId == null) {
+            return;
+        }
+        for (Matrix matrix : snapshot()) {
+            synchronized (matrix) {
+                // 即使没有保存的行也要递增版本，丢弃按旧技能进行中的计算
+                matrix.rows.remove(userId);
+                matrix.version++;
+                List<Long> teamIds = new ArrayList<>();
+                matrix.members.forEach((teamId, memberIds) -> {
+                    if (memberIds.contains(userId)) {
+                        teamIds.add(teamId);
+                    }
+                });
+                teamIds.forEach(matrix::invalidateColumn);
+            }
+        }
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        invalidateTeam(event.getTeamId());
+    }
+
+    @EventListener
+    public void onTeamMembersChanged(TeamMembersChangedEvent event) {
+        invalidateTeam(event.getTeamId());
+    }
+
+    private void invalidateTeam(Long teamId) {
+        if (teamId == null) {
+            return;
+        }
+        for (Matrix matrix : snapshot()) {
+            synchronized (matrix) {
+                matrix.invalidateColumn(teamId);
+            }
+        }
+    }
+
+    private Matrix matrixFor(Long competitionId) {
+        long now = System.nanoTime();
+        synchronized (matrices) {
+            Matrix matrix = matrices.get(competitionId);
+            if (matrix == null || now - matrix.lastAccess > IDLE_NANOS) {
+                matrix = new Matrix();
+                matrices.put(competitionId, matrix);
+            }
+            matrix.lastAccess = now;
+            return matrix;
+        }
+    }
+
+    private List<Matrix> snapshot() {
+        synchronized (matrices) {
+            return new ArrayList<>(matrices.values());
+        }
+    }
+
+    /**
+     * 解析团队卡片中逗号分隔的成员ID
+     */
+    private static Set<Long> parseMemberIds(String memberIds) {
+        Set<Long> result = new HashSet<>();
+        if (memberIds == null) {
+            return result;
+        }
+        for (String memberId : memberIds.split(",")) {
+            try {
+                result.add(Long.valueOf(memberId.trim()));
+            } catch (NumberFormatException e) {
+                // 忽略无法解析的成员ID
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 单个竞赛的匹配度矩阵，由自身加锁保护
+     */
+    private static class Matrix {
+        /** 已保存分数的团队 -> 计算时的成员ID，用于按成员技能变更清除团队的列 */
+        private final Map<Long, Set<Long>> members = new HashMap<>();
+        /** 用户ID -> 团队ID -> 匹配度，访问顺序淘汰 */
+        private final LinkedHashMap<Long, Map<Long, Integer>> rows = new LinkedHashMap<Long, Map<Long, Integer>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Map<Long, Integer>> eldest) {
+                return size() > MAX_USERS_PER_COMPETITION;
+            }
+        };
+        /** 每次失效递增，用于丢弃失效前开始计算的结果 */
+        private long version;
+        private volatile long lastAccess;
+
+        void invalidateColumn(Long teamId) {
+            version++;
+            if (members.remove(teamId) == null) {
+                return;
+            }
+            for (Map<Long, Integer> row : rows.values()) {
+                row.remove(teamId);
+            }
+        }
+    }
+}
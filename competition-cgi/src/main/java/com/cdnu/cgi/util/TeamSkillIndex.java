@@ -0,0 +1,330 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.event.TeamChangedEvent;
+import com.cdnu.cgi.event.TeamMembersChangedEvent;
+import com.cdnu.cgi.mapper.TeamMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 团队所需技能倒排索引
+ * 技能ID -> 所需技能包含该技能的团队，为用户推荐团队时只遍历用户技能对应的倒排表。
+ * 匹配度与MatchScoreServiceImpl一致：20 + 80 × 命中条目数 / 团队所需技能条目数，每个倒排表的得分上界为
+ * 80 × 用户该技能条目数 / 表内最小所需技能数。倒排表按上界从大到小处理（MaxScore），
+ * 剩余倒排表上界之和加20已不足以超过当前第K名的下界时不再引入新候选，只累加已有候选，
+ * 最后对候选并行计算精确分数。没有所需技能的团队不在任何倒排表中，不参与推荐。
+ * 索引启动时全量构建，团队或成员变更事件到达时只替换该团队的条目，并定期全量重建
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TeamSkillIndex {
+    private static final long REBUILD_INTERVAL_MINUTES = 60;
+    /** 候选数超过该值时并行计算精确分数 */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private final TeamMapper teamMapper;
+    private final SkillDictionary skillDictionary;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+    private volatile boolean built;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // 数据库暂不可用时首次查询再构建
+            log.warn("构建团队技能索引失败，将在首次查询时重试: {}", e.getMessage());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "team-index-rebuilder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("重建团队技能索引失败: {}", e.getMessage());
+            }
+        }, REBUILD_INTERVAL_MINUTES, REBUILD_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 从团队卡片视图全量重建索引
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        Map<Long, TeamEntry> teams = new HashMap<>();
+        for (CompetitionTeamCardDto card : teamMapper.selectAllCompetitionTeamCards()) {
+            teams.putIfAbsent(card.getId(), toEntry(card));
+        }
+        snapshot = new Snapshot(teams, buildPostings(teams.values()));
+        built = true;
+        log.info("团队技能索引构建完成，团队数: {}，技能数: {}，耗时: {}ms", teams.size(), snapshot.postings.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        refresh(event.getTeamId());
+    }
+
+    @EventListener
+    public void onTeamMembersChanged(TeamMembersChangedEvent event) {
+        refresh(event.getTeamId());
+    }
+
+    /**
+     * 重新读取单个团队并替换其条目，团队已删除时移除
+     */
+    public synchronized void refresh(Long teamId) {
+        if (teamId == null) {
+            return;
+        }
+        try {
+            List<CompetitionTeamCardDto> cards = teamMapper.selectCompetitionTeamCardsByTeamId(teamId);
+            Snapshot current = snapshot;
+            Map<Long, TeamEntry> teams = new HashMap<>(current.teams);
+            TeamEntry previous = cards.isEmpty() ? teams.remove(teamId) : teams.put(teamId, toEntry(cards.get(0)));
+            TeamEntry updated = teams.get(teamId);
+            // 只重建新旧条目涉及的倒排表
+            Set<Integer> affected = new HashSet<>();
+            if (previous != null) {
+                addSkillIds(affected, previous);
+            }
+            if (updated != null) {
+                addSkillIds(affected, updated);
+            }
+            Map<Integer, Posting> postings = new HashMap<>(current.postings);
+            for (Integer skillId : affected) {
+                List<TeamEntry> list = new ArrayList<>();
+                Posting posting = current.postings.get(skillId);
+                if (posting != null) {
+                    for (TeamEntry entry : posting.teams) {
+                        if (!entry.teamId.equals(teamId)) {
+                            list.add(entry);
+                        }
+                    }
+                }
+                if (updated != null && updated.needSkills.contains(skillId)) {
+                    list.add(updated);
+                }
+                if (list.isEmpty()) {
+                    postings.remove(skillId);
+                } else {
+                    postings.put(skillId, new Posting(list));
+                }
+            }
+            snapshot = new Snapshot(teams, postings);
+        } catch (Exception e) {
+            log.warn("更新团队 {} 的技能索引失败: {}", teamId, e.getMessage());
+        }
+    }
+
+    /**
+     * 为用户推荐匹配度最高的topK个团队（不含用户已加入的团队），按匹配度降序
+     */
+    public List<CompetitionTeamCardDto> recommend(Long userId, int topK) {
+        if (!built) {
+            rebuild();
+        }
+        Snapshot current = snapshot;
+        SkillSet userSkills = skillDictionary.ofUser(userId);
+        if (userSkills.isEmpty() || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        // 用户每个技能的条目数（重复条目分别计入匹配数）
+        Map<Integer, Integer> multiplicity = new HashMap<>();
+        for (int id : userSkills.entryIds()) {
+            if (id >= 0) {
+                multiplicity.merge(id, 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<Posting, Integer>> lists = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> skill : multiplicity.entrySet()) {
+            Posting posting = current.postings.get(skill.getKey());
+            if (posting != null) {
+                lists.add(new AbstractMap.SimpleEntry<>(posting, skill.getValue()));
+            }
+        }
+        lists.sort(Comparator.comparingDouble((Map.Entry<Posting, Integer> list) -> upperBound(list)).reversed());
+        double[] remainingBound = new double[lists.size() + 1];
+        for (int i = lists.size() - 1; i >= 0; i--) {
+            remainingBound[i] = remainingBound[i + 1] + upperBound(lists.get(i));
+        }
+
+        String userIdStr = String.valueOf(userId);
+        Map<TeamEntry, Integer> hits = new HashMap<>();
+        Set<TeamEntry> excluded = new HashSet<>();
+        boolean acceptingNew = true;
+        for (int i = 0; i < lists.size(); i++) {
+            if (acceptingNew && hits.size() >= topK && 20 + remainingBound[i] < kthLowerBound(hits, topK)) {
+                // 未出现过的团队即使命中剩余全部技能也进不了前K名
+                acceptingNew = false;
+            }
+            Posting posting = lists.get(i).getKey();
+            int count = lists.get(i).getValue();
+            for (TeamEntry entry : posting.teams) {
+                if (hits.containsKey(entry)) {
+                    hits.merge(entry, count, Integer::sum);
+                } else if (acceptingNew && !excluded.contains(entry)) {
+                    if (entry.hasMember(userIdStr)) {
+                        excluded.add(entry);
+                    } else {
+                        hits.put(entry, count);
+                    }
+                }
+            }
+        }
+
+        // 并行计算候选的精确分数
+        List<TeamEntry> candidates = new ArrayList<>(hits.keySet());
+        List<ScoredTeam> scored = (candidates.size() > PARALLEL_THRESHOLD ? candidates.parallelStream() : candidates.stream())
+                .map(entry -> new ScoredTeam(entry, score(userSkills.countIn(entry.needSkills), entry.needSkills.size())))
+                .collect(Collectors.toList());
+        scored.sort(Comparator.comparingInt((ScoredTeam team) -> team.score).reversed()
+                .thenComparing(team -> team.entry.teamId, Comparator.reverseOrder()));
+
+        List<CompetitionTeamCardDto> result = new ArrayList<>(Math.min(topK, scored.size()));
+        for (ScoredTeam team : scored.subList(0, Math.min(topK, scored.size()))) {
+            CompetitionTeamCardDto card = new CompetitionTeamCardDto();
+            BeanUtils.copyProperties(team.entry.card, card);
+            card.setMatchScore(team.score);
+            result.add(card);
+        }
+        return result;
+    }
+
+    private TeamEntry toEntry(CompetitionTeamCardDto card) {
+        return new TeamEntry(card, skillDictionary.parse(card.getNeedSkills()));
+    }
+
+    private static Map<Integer, Posting> buildPostings(Collection<TeamEntry> teams) {
+        Map<Integer, List<TeamEntry>> lists = new HashMap<>();
+        for (TeamEntry entry : teams) {
+            Set<Integer> skillIds = new HashSet<>();
+            addSkillIds(skillIds, entry);
+            for (Integer skillId : skillIds) {
+                lists.computeIfAbsent(skillId, key -> new ArrayList<>()).add(entry);
+            }
+        }
+        Map<Integer, Posting> postings = new HashMap<>(lists.size() * 2);
+        lists.forEach((skillId, list) -> postings.put(skillId, new Posting(list)));
+        return postings;
+    }
+
+    private static void addSkillIds(Set<Integer> skillIds, TeamEntry entry) {
+        for (int id : entry.needSkills.entryIds()) {
+            skillIds.add(id);
+        }
+    }
+
+    private static double upperBound(Map.Entry<Posting, Integer> list) {
+        return 80.0 * list.getValue() / list.getKey().minNeedSize;
+    }
+
+    /**
+     * 当前候选中第k高的分数下界（已累加的命中数对应的分数）
+     */
+    private static double kthLowerBound(Map<TeamEntry, Integer> hits, int k) {
+        PriorityQueue<Integer> top = new PriorityQueue<>(k);
+        for (Map.Entry<TeamEntry, Integer> hit : hits.entrySet()) {
+            int score = score(hit.getValue(), hit.getKey().needSkills.size());
+            if (top.size() < k) {
+                top.offer(score);
+            } else if (score > top.peek()) {
+                top.poll();
+                top.offer(score);
+            }
+        }
+        return top.peek();
+    }
+
+    /**
+     * 与MatchScoreServiceImpl相同的所需技能匹配度公式
+     */
+    private static int score(int matchCount, int needSize) {
+        return Math.min(100, (int) (20 + (double) matchCount / needSize * 80));
+    }
+
+    private static class Snapshot {
+        private final Map<Long, TeamEntry> teams;
+        private final Map<Integer, Posting> postings;
+
+        private Snapshot(Map<Long, TeamEntry> teams, Map<Integer, Posting> postings) {
+            this.teams = teams;
+            this.postings = postings;
+        }
+    }
+
+    private static class Posting {
+        private final TeamEntry[] teams;
+        /** 表内团队所需技能条目数的最小值，决定该表的得分上界 */
+        private final int minNeedSize;
+
+        private Posting(List<TeamEntry> teams) {
+            this.teams = teams.toArray(new TeamEntry[0]);
+            int min = Integer.MAX_VALUE;
+            for (TeamEntry entry : teams) {
+                min = Math.min(min, entry.needSkills.size());
+            }
+            this.minNeedSize = min;
+        }
+    }
+
+    private static class TeamEntry {
+        private final Long teamId;
+        private final CompetitionTeamCardDto card;
+        private final SkillSet needSkills;
+
+        private TeamEntry(CompetitionTeamCardDto card, SkillSet needSkills) {
+            this.teamId = card.getId();
+            this.card = card;
+            this.needSkills = needSkills;
+        }
+
+        boolean hasMember(String userId) {
+            String memberIds = card.getMemberIds();
+            if (memberIds == null) {
+                return false;
+            }
+            for (String memberId : memberIds.split(",")) {
+                if (memberId.equals(userId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class ScoredTeam {
+        private final TeamEntry entry;
+        private final int score;
+
+        private ScoredTeam(TeamEntry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.entity.Team;
+import com.cdnu.cgi.event.TeamChangedEvent;
+import com.cdnu.cgi.mapper.TeamMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 团队所需技能的短期缓存
+ * 批量评分时未命中的团队通过一次selectByIds查询加载，条目在TTL后过期，团队变更事件到达时立即移除
+ */
+@Component
+@RequiredArgsConstructor
+public class TeamSkillProfiles {
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /** 超过该条目数时清理已过期条目 */
+    private static final int CLEANUP_THRESHOLD = 10000;
+
+    private final TeamMapper teamMapper;
+    private final SkillDictionary skillDictionary;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 团队所需技能，不存在的团队不出现在结果中
+     */
+    public Map<Long, SkillSet> neededSkills(Collection<Long> teamIds) {
+        Map<Long, SkillSet> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Long teamId : teamIds) {
+            if (teamId == null || result.containsKey(teamId)) {
+                continue;
+            }
+            Entry entry = entries.get(teamId);
+            if (entry != null && now - entry.loadedAt < TTL_NANOS) {
+                result.put(teamId, entry.neededSkills);
+            } else {
+                missing.add(teamId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Team team : teamMapper.selectByIds(missing)) {
+                SkillSet neededSkills = skillDictionary.parse(team.getNeedSkills());
+                entries.put(team.getId(), new Entry(neededSkills, now));
+                result.put(team.getId(), neededSkills);
+            }
+        }
+        if (entries.size() > CLEANUP_THRESHOLD) {
+            entries.values().removeIf(entry -> now - entry.loadedAt >= TTL_NANOS);
+        }
+        return result;
+    }
+
+    /**
+     * 单个团队所需技能，团队不存在时返回null
+     */
+    public SkillSet neededSkills(Long teamId) {
+        return neededSkills(Collections.singletonList(teamId)).get(teamId);
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        if (event.getTeamId() != null) {
+            entries.remove(event.getTeamId());
+        }
+    }
+
+    private static class Entry {
+        private final SkillSet neededSkills;
+        private final long loadedAt;
+
+        private Entry(SkillSet neededSkills, long loadedAt) {
+            this.neededSkills = neededSkills;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
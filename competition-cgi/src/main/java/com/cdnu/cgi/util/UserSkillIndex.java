@@ -0,0 +1,324 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.entity.UserSkill;
+import com.cdnu.cgi.event.UserDeletedEvent;
+import com.cdnu.cgi.event.UserSkillsChangedEvent;
+import com.cdnu.cgi.mapper.UserSkillMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户技能倒排索引
+ * 技能ID -> 拥有该技能的用户ID（升序数组），由user_skills全量构建，用户技能变更事件到达时只替换该用户涉及的倒排表，
+ * 用户删除事件到达时移除该用户，并定期全量重建。按技能找人时只遍历所需技能的倒排表，不再对视图做FIND_IN_SET全表扫描。
+ * 候选人按加权覆盖率排序：每个技能的权重为ln(1 + 用户总数 / 拥有人数)，越稀缺的技能权重越高，
+ * 覆盖率为候选人命中技能的权重之和除以全部所需技能的权重之和
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserSkillIndex {
+    private static final long REBUILD_INTERVAL_MINUTES = 60;
+
+    private final UserSkillMapper userSkillMapper;
+    private final SkillDictionary skillDictionary;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+    private volatile boolean built;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // 数据库暂不可用时首次查询再构建
+            log.warn("构建用户技能索引失败，将在首次查询时重试: {}", e.getMessage());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-skill-index-rebuilder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("重建用户技能索引失败: {}", e.getMessage());
+            }
+        }, REBUILD_INTERVAL_MINUTES, REBUILD_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 从user_skills全量重建索引
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        Map<Long, List<UserSkill>> byUser = new HashMap<>();
+        for (UserSkill userSkill : userSkillMapper.selectAll()) {
+            if (userSkill.getUserId() != null) {
+                byUser.computeIfAbsent(userSkill.getUserId(), key -> new ArrayList<>()).add(userSkill);
+            }
+        }
+        Map<Long, int[]> users = new HashMap<>(byUser.size() * 2);
+        Map<Integer, List<Long>> lists = new HashMap<>();
+        byUser.forEach((userId, skills) -> {
+            int[] skillIds = distinctIds(skillDictionary.ofUserSkills(skills));
+            if (skillIds.length > 0) {
+                users.put(userId, skillIds);
+                for (int skillId : skillIds) {
+                    lists.computeIfAbsent(skillId, key -> new ArrayList<>()).add(userId);
+                }
+            }
+        });
+        Map<Integer, long[]> postings = new HashMap<>(lists.size() * 2);
+        lists.forEach((skillId, list) -> postings.put(skillId, toSortedArray(list)));
+        snapshot = new Snapshot(users, postings);
+        built = true;
+        log.info("用户技能索引构建完成，用户数: {}，技能数: {}，耗时: {}ms", users.size(), postings.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * SkillDictionary已先清除该用户的技能集合，这里读到的是变更后的技能
+     */
+    @EventListener
+    public void onUserSkillsChanged(UserSkillsChangedEvent event) {
+        refresh(event.getUserId());
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        if (event.getUserId() != null) {
+            evict(Collections.singletonList(event.getUserId()));
+        }
+    }
+
+    /**
+     * 重新读取单个用户的技能并替换其涉及的倒排表
+     */
+    public synchronized void refresh(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            int[] updated = distinctIds(skillDictionary.ofUser(userId));
+            Snapshot current = snapshot;
+            int[] previous = current.users.getOrDefault(userId, new int[0]);
+            Map<Long, int[]> users = new HashMap<>(current.users);
+            if (updated.length > 0) {
+                users.put(userId, updated);
+            } else {
+                users.remove(userId);
+            }
+            Map<Integer, long[]> postings = new HashMap<>(current.postings);
+            for (int skillId : previous) {
+                if (Arrays.binarySearch(updated, skillId) < 0) {
+                    long[] posting = without(postings.get(skillId), userId);
+                    if (posting.length == 0) {
+                        postings.remove(skillId);
+                    } else {
+                        postings.put(skillId, posting);
+                    }
+                }
+            }
+            for (int skillId : updated) {
+                if (Arrays.binarySearch(previous, skillId) < 0) {
+                    postings.put(skillId, with(postings.get(skillId), userId));
+                }
+            }
+            snapshot = new Snapshot(users, postings);
+        } catch (Exception e) {
+            log.warn("更新用户 {} 的技能索引失败: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 从索引中移除已不存在的用户（如已删除的用户，其技能记录要到下次全量重建才会消失）
+     */
+    public synchronized void evict(Collection<Long> userIds) {
+        Snapshot current = snapshot;
+        Map<Long, int[]> users = null;
+        Map<Integer, long[]> postings = null;
+        for (Long userId : userIds) {
+            int[] skillIds = current.users.get(userId);
+            if (skillIds == null) {
+                continue;
+            }
+            if (users == null) {
+                users = new HashMap<>(current.users);
+                postings = new HashMap<>(current.postings);
+            }
+            users.remove(userId);
+            for (int skillId : skillIds) {
+                long[] posting = without(postings.get(skillId), userId);
+                if (posting.length == 0) {
+                    postings.remove(skillId);
+                } else {
+                    postings.put(skillId, posting);
+                }
+            }
+        }
+        if (users != null) {
+            snapshot = new Snapshot(users, postings);
+            log.info("从用户技能索引移除不存在的用户: {}", userIds);
+        }
+    }
+
+    /**
+     * 按加权覆盖率找出拥有所需技能的前limit名用户，excludedUserIds中的用户不参与排序。
+     * 覆盖率相同时命中技能多者在前，再按用户ID升序
+     */
+    public List<Candidate> findCandidates(Collection<Integer> neededSkillIds, Set<Long> excludedUserIds, int limit) {
+        if (!built) {
+            rebuild();
+        }
+        Snapshot current = snapshot;
+        Set<Integer> needed = new LinkedHashSet<>();
+        for (Integer skillId : neededSkillIds) {
+            if (skillId != null && skillId >= 0) {
+                needed.add(skillId);
+            }
+        }
+        if (needed.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        int userCount = Math.max(current.users.size(), 1);
+        double totalWeight = 0;
+        Map<Long, Accumulator> accumulators = new HashMap<>();
+        for (Integer skillId : needed) {
+            long[] posting = current.postings.get(skillId);
+            int holders = posting != null ? posting.length : 0;
+            // 无人拥有的技能同样计入分母，覆盖率不会因此虚高
+            double weight = Math.log(1 + (double) userCount / Math.max(holders, 1));
+            totalWeight += weight;
+            if (posting == null) {
+                continue;
+            }
+            for (long userId : posting) {
+                if (!excludedUserIds.contains(userId)) {
+                    accumulators.computeIfAbsent(userId, key -> new Accumulator()).add(skillId, weight);
+                }
+            }
+        }
+
+        Comparator<Candidate> ranking = Comparator.comparingDouble(Candidate::getCoverage)
+                .thenComparingInt(candidate -> candidate.getMatchedSkillIds().size())
+                .thenComparing(Candidate::getUserId, Comparator.reverseOrder());
+        // 小顶堆保留前limit名
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit, ranking);
+        for (Map.Entry<Long, Accumulator> entry : accumulators.entrySet()) {
+            Candidate candidate = new Candidate(entry.getKey(), entry.getValue().weight / totalWeight,
+                    entry.getValue().skillIds);
+            if (top.size() < limit) {
+                top.offer(candidate);
+            } else if (ranking.compare(candidate, top.peek()) > 0) {
+                top.poll();
+                top.offer(candidate);
+            }
+        }
+        List<Candidate> result = new ArrayList<>(top);
+        result.sort(ranking.reversed());
+        return result;
+    }
+
+    /**
+     * 升序去重的技能ID
+     */
+    private static int[] distinctIds(SkillSet skills) {
+        return Arrays.stream(skills.entryIds()).filter(id -> id >= 0).distinct().sorted().toArray();
+    }
+
+    private static long[] toSortedArray(List<Long> userIds) {
+        long[] array = new long[userIds.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = userIds.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static long[] with(long[] posting, long userId) {
+        if (posting == null) {
+            return new long[]{userId};
+        }
+        int index = Arrays.binarySearch(posting, userId);
+        if (index >= 0) {
+            return posting;
+        }
+        int insertAt = -index - 1;
+        long[] result = new long[posting.length + 1];
+        System.arraycopy(posting, 0, result, 0, insertAt);
+        result[insertAt] = userId;
+        System.arraycopy(posting, insertAt, result, insertAt + 1, posting.length - insertAt);
+        return result;
+    }
+
+    private static long[] without(long[] posting, long userId) {
+        if (posting == null) {
+            return new long[0];
+        }
+        int index = Arrays.binarySearch(posting, userId);
+        if (index < 0) {
+            return posting;
+        }
+        long[] result = new long[posting.length - 1];
+        System.arraycopy(posting, 0, result, 0, index);
+        System.arraycopy(posting, index + 1, result, index, posting.length - index - 1);
+        return result;
+    }
+
+    /**
+     * 候选用户及其命中的所需技能
+     */
+    @Getter
+    public static class Candidate {
+        private final Long userId;
+        /** 加权覆盖率，0~1 */
+        private final double coverage;
+        private final List<Integer> matchedSkillIds;
+
+        private Candidate(Long userId, double coverage, List<Integer> matchedSkillIds) {
+            this.userId = userId;
+            this.coverage = coverage;
+            this.matchedSkillIds = matchedSkillIds;
+        }
+    }
+
+    private static class Accumulator {
+        private final List<Integer> skillIds = new ArrayList<>();
+        private double weight;
+
+        void add(int skillId, double skillWeight) {
+            skillIds.add(skillId);
+            weight += skillWeight;
+        }
+    }
+
+    private static class Snapshot {
+        /** 用户ID -> 升序去重的技能ID */
+        private final Map<Long, int[]> users;
+        private final Map<Integer, long[]> postings;
+
+        private Snapshot(Map<Long, int[]> users, Map<Integer, long[]> postings) {
+            this.users = users;
+            this.postings = postings;
+        }
+    }
+}
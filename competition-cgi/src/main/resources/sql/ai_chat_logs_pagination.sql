@@ -0,0 +1,3 @@
+-- 聊天记录按对话分组的(timestamp, id)游标分页索引
+ALTER TABLE ai_chat_logs
+    ADD KEY idx_user_group_time (user_id, group_id, timestamp, id);
@@ -0,0 +1,10 @@
+-- AI接口每日调用配额计数，按(用户, 操作, 日期)累加，应用重启后继续生效；匿名调用只在内存中按客户端地址计数，不写入本表
+
+CREATE TABLE IF NOT EXISTS ai_usage_quota (
+    user_id     BIGINT       NOT NULL,
+    operation   VARCHAR(64)  NOT NULL,
+    usage_date  DATE         NOT NULL,
+    used_count  INT          NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, operation, usage_date),
+    KEY idx_usage_date (usage_date)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = 'AI接口每日调用配额';
@@ -0,0 +1,34 @@
+-- 对话摘要读模型，随 ai_chat_logs 写入增量维护
+
+CREATE TABLE IF NOT EXISTS chat_conversations (
+    user_id        BIGINT       NOT NULL,
+    group_id       VARCHAR(64)  NOT NULL,
+    first_input    TEXT         NULL COMMENT '第一条用户输入，作为对话标题',
+    last_message   TEXT         NULL COMMENT '最后一条消息',
+    last_timestamp DATETIME     NOT NULL,
+    message_count  INT          NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, group_id),
+    KEY idx_user_last_timestamp (user_id, last_timestamp)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '聊天对话摘要';
+
+-- 从已有聊天记录回填
+INSERT INTO chat_conversations (user_id, group_id, first_input, last_message, last_timestamp, message_count)
+SELECT
+    l.user_id,
+    l.group_id,
+    (SELECT f.input FROM ai_chat_logs f
+     WHERE f.user_id = l.user_id AND f.group_id = l.group_id AND f.input IS NOT NULL
+     ORDER BY f.timestamp ASC, f.id ASC LIMIT 1),
+    (SELECT COALESCE(m.input, m.response) FROM ai_chat_logs m
+     WHERE m.user_id = l.user_id AND m.group_id = l.group_id
+     ORDER BY m.timestamp DESC, m.id DESC LIMIT 1),
+    MAX(l.timestamp),
+    COUNT(*)
+FROM ai_chat_logs l
+WHERE l.user_id IS NOT NULL AND l.group_id IS NOT NULL
+GROUP BY l.user_id, l.group_id
+ON DUPLICATE KEY UPDATE
+    first_input = VALUES(first_input),
+    last_message = VALUES(last_message),
+    last_timestamp = VALUES(last_timestamp),
+    message_count = VALUES(message_count);
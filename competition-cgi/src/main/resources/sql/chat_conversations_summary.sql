@@ -0,0 +1,3 @@
+-- 对话滚动摘要，保存移出多轮上下文窗口的早期对话
+ALTER TABLE chat_conversations
+    ADD COLUMN summary TEXT NULL COMMENT '早期对话的滚动摘要' AFTER message_count;
@@ -0,0 +1,14 @@
+-- 推荐记录按 (user_id, competition_id) 去重，支持批量 upsert
+
+-- 1. 清理重复记录，每个用户与竞赛只保留最新一条
+DELETE r1 FROM competition_recommendation r1
+JOIN competition_recommendation r2
+  ON r1.user_id = r2.user_id
+ AND r1.competition_id = r2.competition_id
+ AND (r1.created_at < r2.created_at OR (r1.created_at = r2.created_at AND r1.id < r2.id));
+
+-- 2. 唯一键及查询索引
+ALTER TABLE competition_recommendation
+    ADD UNIQUE KEY uk_user_competition (user_id, competition_id),
+    ADD KEY idx_user_score (user_id, score),
+    ADD KEY idx_created_at (created_at);
@@ -0,0 +1,10 @@
+-- 推荐预计算快照：记录每个用户最近一次完整生成推荐时的技能指纹、时间和按名次排列的竞赛ID，
+-- 只按快照中的竞赛ID读取，不受之后实时或带过滤条件生成的推荐记录影响
+
+CREATE TABLE IF NOT EXISTS recommendation_snapshots (
+    user_id      BIGINT       NOT NULL,
+    skills_hash  CHAR(32)     NOT NULL COMMENT '生成推荐时用户技能的MD5指纹',
+    computed_at  DATETIME     NOT NULL,
+    competition_ids VARCHAR(512) NOT NULL COMMENT '该次推荐的竞赛ID，逗号分隔，按名次排列',
+    PRIMARY KEY (user_id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '竞赛推荐预计算快照';
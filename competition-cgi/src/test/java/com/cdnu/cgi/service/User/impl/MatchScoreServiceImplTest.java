@@ -0,0 +1,180 @@
+package com.cdnu.cgi.service.User.impl;
+
+import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.entity.UserSkill;
+import com.cdnu.cgi.mapper.UserSkillMapper;
+import com.cdnu.cgi.util.SkillDictionary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 基于SkillSet位图的团队卡片匹配度与原先逐个比较字符串的实现结果一致，
+ * 覆盖成员100、重复率高40、无需求60、无技能20以及按覆盖率计算的分数
+ */
+class MatchScoreServiceImplTest {
+    private static final String[] SKILLS = {"Java", "Python", "C++", "前端", "算法", "UI设计", "数据分析", "嵌入式"};
+
+    private final Map<Long, List<UserSkill>> userSkills = new HashMap<>();
+    private MatchScoreServiceImpl matchScoreService;
+
+    @BeforeEach
+    void setUp() {
+        UserSkillMapper userSkillMapper = (UserSkillMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserSkillMapper.class}, (proxy, method, args) -> {
+                    if ("selectByUserId".equals(method.getName())) {
+                        return userSkills.getOrDefault((Long) args[0], new ArrayList<>());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        matchScoreService = new MatchScoreServiceImpl(new SkillDictionary(userSkillMapper), null);
+    }
+
+    @Test
+    void matchesStringComparisonOnRandomCards() {
+        Random random = new Random(42);
+        Set<Integer> seen = new HashSet<>();
+        for (long userId = 1; userId <= 200; userId++) {
+            List<String> skills = new ArrayList<>();
+            int count = random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                // 允许重复条目
+                skills.add(SKILLS[random.nextInt(SKILLS.length)]);
+            }
+            userSkills.put(userId, skills.stream().map(skill -> new UserSkill(0L, skill)).collect(Collectors.toList()));
+
+            List<CompetitionTeamCardDto> cards = new ArrayList<>();
+            for (long teamId = 1; teamId <= 20; teamId++) {
+                cards.add(randomCard(random, teamId, userId));
+            }
+            String userIdStr = String.valueOf(userId);
+            List<Integer> expected = cards.stream()
+                    .map(card -> referenceScore(card, skills, userIdStr))
+                    .collect(Collectors.toList());
+
+            for (int i = 0; i < cards.size(); i++) {
+                assertEquals((int) expected.get(i), matchScoreService.calculateTeamCardMatchScore(cards.get(i), userId),
+                        "user " + skills + ", card " + cards.get(i));
+            }
+            List<Integer> batch = matchScoreService.calculateTeamCardsMatchScores(cards, userId).stream()
+                    .map(CompetitionTeamCardDto::getMatchScore)
+                    .collect(Collectors.toList());
+            assertEquals(expected, batch);
+            seen.addAll(expected);
+        }
+        assertTrue(seen.containsAll(Arrays.asList(20, 40, 60, 100)), "covered scores: " + seen);
+    }
+
+    @Test
+    void fixedCases() {
+        userSkills.put(1L, Arrays.asList(new UserSkill(1L, "Java"), new UserSkill(1L, "Python")));
+        userSkills.put(2L, new ArrayList<>());
+
+        assertEquals(100, score(card("Java", null, "3,1,5"), 1L));
+        // 成员ID只按整段匹配
+        assertEquals(60, score(card(null, null, "11,21"), 1L));
+        assertEquals(40, score(card("C++", "Java，Python", null), 1L));
+        assertEquals(60, score(card(" , ，", null, null), 1L));
+        assertEquals(20, score(card("Java", null, null), 2L));
+        assertEquals(60, score(card("Java, C++", null, null), 1L));
+        assertEquals(100, score(card("Java ,Python", null, null), 1L));
+    }
+
+    private int score(CompetitionTeamCardDto card, Long userId) {
+        return matchScoreService.calculateTeamCardMatchScore(card, userId);
+    }
+
+    private static CompetitionTeamCardDto randomCard(Random random, long teamId, long userId) {
+        String memberIds = null;
+        if (random.nextInt(10) == 0) {
+            memberIds = random.nextBoolean() ? "7," + userId : "7," + userId + "0";
+        }
+        return card(randomSkills(random), random.nextInt(3) == 0 ? null : randomSkills(random), memberIds, teamId);
+    }
+
+    /**
+     * 中英文逗号、首尾空白和空条目混合的技能字符串
+     */
+    private static String randomSkills(Random random) {
+        int count = random.nextInt(5);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(random.nextBoolean() ? "," : "，");
+            }
+            if (random.nextInt(6) == 0) {
+                builder.append(" ");
+                continue;
+            }
+            builder.append(random.nextBoolean() ? " " : "").append(SKILLS[random.nextInt(SKILLS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static CompetitionTeamCardDto card(String needSkills, String teamSkills, String memberIds) {
+        return card(needSkills, teamSkills, memberIds, 1L);
+    }
+
+    private static CompetitionTeamCardDto card(String needSkills, String teamSkills, String memberIds, long teamId) {
+        CompetitionTeamCardDto card = new CompetitionTeamCardDto();
+        card.setId(teamId);
+        card.setNeedSkills(needSkills);
+        card.setTeamSkills(teamSkills);
+        card.setMemberIds(memberIds);
+        return card;
+    }
+
+    /**
+     * 改用位图前按字符串列表比较的匹配度算法
+     */
+    private static int referenceScore(CompetitionTeamCardDto teamCard, List<String> userSkillsList, String userIdStr) {
+        if (teamCard.getMemberIds() != null && Arrays.asList(teamCard.getMemberIds().split(",")).contains(userIdStr)) {
+            return 100;
+        }
+        if (teamCard.getTeamSkills() != null && !teamCard.getTeamSkills().trim().isEmpty()) {
+            List<String> teamExistingSkills = parseSkills(teamCard.getTeamSkills());
+            Set<String> duplicateSkills = userSkillsList.stream()
+                    .filter(teamExistingSkills::contains)
+                    .collect(Collectors.toSet());
+            if (!userSkillsList.isEmpty()) {
+                double duplicateRatio = (double) duplicateSkills.size() / userSkillsList.size();
+                if (duplicateRatio > 0.7) {
+                    return 40;
+                }
+            }
+        }
+        String teamNeededSkills = teamCard.getNeedSkills();
+        if (teamNeededSkills == null || teamNeededSkills.trim().isEmpty()) {
+            return 60;
+        }
+        List<String> teamSkillsList = parseSkills(teamNeededSkills);
+        if (teamSkillsList.isEmpty()) {
+            return 60;
+        }
+        if (userSkillsList.isEmpty()) {
+            return 20;
+        }
+        long matchCount = userSkillsList.stream()
+                .filter(teamSkillsList::contains)
+                .count();
+        double matchPercentage = (double) matchCount / teamSkillsList.size();
+        int score = (int) (20 + matchPercentage * 80);
+        return Math.min(100, score);
+    }
+
+    private static List<String> parseSkills(String skills) {
+        if (skills == null || skills.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        String normalizedSkills = skills.replace("，", ",");
+        return Arrays.stream(normalizedSkills.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
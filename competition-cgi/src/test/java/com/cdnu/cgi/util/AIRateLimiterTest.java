@@ -0,0 +1,123 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import com.cdnu.cgi.mapper.AIUsageQuotaMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AIRateLimiter的客户端地址令牌桶、按用户令牌桶和每日配额
+ */
+class AIRateLimiterTest {
+    private static final String OPERATION = "AI聊天";
+
+    private AIConfig config;
+    private AIRateLimiter rateLimiter;
+    /** 数据库中各用户已用次数 */
+    private final Map<Long, Integer> storedUsage = new HashMap<>();
+    private final AtomicInteger quotaLookups = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        config = new AIConfig(null);
+        AIConfig.RateLimitConfig rateLimit = config.getRateLimit();
+        rateLimit.setClientCapacity(100);
+        rateLimit.setClientRefillPerMinute(0.001);
+        rateLimit.setDefaults(new AIConfig.LimitConfig(100, 0.001, 0));
+        AIUsageQuotaMapper quotaMapper = (AIUsageQuotaMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AIUsageQuotaMapper.class}, (proxy, method, args) -> {
+                    if ("selectUsedCount".equals(method.getName())) {
+                        quotaLookups.incrementAndGet();
+                        return storedUsage.get((Long) args[0]);
+                    }
+                    return 0;
+                });
+        rateLimiter = new AIRateLimiter(config, quotaMapper);
+    }
+
+    @Test
+    void clientBucketIsChargedBeforeAnyQuotaLookup() {
+        config.getRateLimit().setClientCapacity(3);
+        config.getRateLimit().setDefaults(new AIConfig.LimitConfig(100, 0.001, 100));
+
+        for (long userId = 1; userId <= 3; userId++) {
+            rateLimiter.acquire(userId, "10.0.0.1", OPERATION);
+        }
+        // 轮换userId无法绕过地址限流，被拒绝的请求不读取数据库
+        AIRateLimitExceededException e = assertThrows(AIRateLimitExceededException.class,
+                () -> rateLimiter.acquire(4L, "10.0.0.1", OPERATION));
+        assertFalse(e.isQuotaExhausted());
+        assertEquals(3, quotaLookups.get());
+
+        // 其他地址不受影响
+        rateLimiter.acquire(4L, "10.0.0.2", OPERATION);
+        assertEquals(4, quotaLookups.get());
+    }
+
+    @Test
+    void clientBucketIsSharedAcrossOperations() {
+        config.getRateLimit().setClientCapacity(2);
+
+        rateLimiter.acquire(1L, "10.0.0.1", "AI聊天");
+        rateLimiter.acquire(1L, "10.0.0.1", "AI推荐");
+        assertThrows(AIRateLimitExceededException.class, () -> rateLimiter.acquire(1L, "10.0.0.1", "AI技能分析"));
+    }
+
+    @Test
+    void userBucketLimitsBurstsPerUser() {
+        config.getRateLimit().setDefaults(new AIConfig.LimitConfig(2, 0.001, 0));
+
+        rateLimiter.acquire(1L, "10.0.0.1", OPERATION);
+        rateLimiter.acquire(1L, "10.0.0.2", OPERATION);
+        AIRateLimitExceededException e = assertThrows(AIRateLimitExceededException.class,
+                () -> rateLimiter.acquire(1L, "10.0.0.3", OPERATION));
+        assertFalse(e.isQuotaExhausted());
+        assertTrue(e.getRetryAfterSeconds() >= 1);
+
+        rateLimiter.acquire(2L, "10.0.0.1", OPERATION);
+    }
+
+    @Test
+    void dailyQuotaContinuesFromStoredUsage() {
+        config.getRateLimit().setDefaults(new AIConfig.LimitConfig(100, 0.001, 5));
+        storedUsage.put(1L, 4);
+
+        rateLimiter.acquire(1L, "10.0.0.1", OPERATION);
+        AIRateLimitExceededException e = assertThrows(AIRateLimitExceededException.class,
+                () -> rateLimiter.acquire(1L, "10.0.0.1", OPERATION));
+        assertTrue(e.isQuotaExhausted());
+        assertEquals(1L, rateLimiter.getStats().get("quotaExhaustedCount"));
+        assertEquals(1, rateLimiter.getStats().get("trackedQuotas"));
+        assertEquals(1, quotaLookups.get());
+
+        // 其他用户的配额单独计
+        rateLimiter.acquire(2L, "10.0.0.1", OPERATION);
+    }
+
+    @Test
+    void anonymousCallersAreLimitedPerAddress() {
+        config.getRateLimit().setDefaults(new AIConfig.LimitConfig(1, 0.001, 0));
+
+        rateLimiter.acquire(null, "10.0.0.1", OPERATION);
+        assertThrows(AIRateLimitExceededException.class, () -> rateLimiter.acquire(null, "10.0.0.1", OPERATION));
+        rateLimiter.acquire(null, "10.0.0.2", OPERATION);
+        assertEquals(0, quotaLookups.get());
+    }
+
+    @Test
+    void disabledLimiterAcceptsEverything() {
+        config.getRateLimit().setEnabled(false);
+        config.getRateLimit().setClientCapacity(1);
+
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.acquire(1L, "10.0.0.1", OPERATION);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AIResilienceExecutor的重试与熔断划分：上游故障重试并计入熔断，客户端错误和本地连接耗尽既不重试也不计入
+ */
+class AIResilienceExecutorTest {
+    private static final String PROVIDER = "test";
+
+    private AIResilienceExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        AIConfig config = new AIConfig(null);
+        config.getRetry().setMaxAttempts(3);
+        config.getRetry().setDelaySeconds(0);
+        config.getCircuitBreaker().setSlidingWindowSize(10);
+        config.getCircuitBreaker().setMinimumCalls(4);
+        config.getCircuitBreaker().setFailureRateThreshold(50);
+        executor = new AIResilienceExecutor(config);
+    }
+
+    @Test
+    void retriesServerErrorsAndCountsThemAsFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = executor.execute(PROVIDER, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new AIProviderException(503, -1, "unavailable");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, executor.getBreaker(PROVIDER).snapshot().get("failedCalls"));
+        assertEquals(3, executor.getBreaker(PROVIDER).snapshot().get("bufferedCalls"));
+    }
+
+    @Test
+    void retriesTimeouts() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(AIServiceUnavailableException.class, () -> executor.execute(PROVIDER, () -> {
+            attempts.incrementAndGet();
+            throw new HttpTimeoutException("timeout");
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void doesNotRetryOrCountClientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(AIServiceUnavailableException.class, () -> executor.execute(PROVIDER, () -> {
+            attempts.incrementAndGet();
+            throw new AIProviderException(400, -1, "bad request");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, executor.getBreaker(PROVIDER).snapshot().get("bufferedCalls"));
+    }
+
+    @Test
+    void connectionSaturationNeverOpensBreaker() {
+        AtomicInteger attempts = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            AIServiceUnavailableException e = assertThrows(AIServiceUnavailableException.class,
+                    () -> executor.execute(PROVIDER, () -> {
+                        attempts.incrementAndGet();
+                        // 包装在其他异常中同样识别
+                        throw new RuntimeException(new AIConnectionSaturatedException("no permits"));
+                    }));
+            assertInstanceOf(RuntimeException.class, e.getCause());
+        }
+
+        assertEquals(20, attempts.get());
+        assertEquals(AICircuitBreaker.State.CLOSED, executor.getBreaker(PROVIDER).getState());
+        assertEquals(0, executor.getBreaker(PROVIDER).snapshot().get("failedCalls"));
+    }
+
+    @Test
+    void upstreamFailuresOpenBreakerAndRejectFurtherCalls() {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(AIServiceUnavailableException.class, () -> executor.execute(PROVIDER, () -> {
+                throw new AIProviderException(500, -1, "error");
+            }));
+        }
+        assertEquals(AICircuitBreaker.State.OPEN, executor.getBreaker(PROVIDER).getState());
+        assertFalse(executor.isAvailable(PROVIDER));
+
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(AIServiceUnavailableException.class, () -> executor.execute(PROVIDER, () -> {
+            attempts.incrementAndGet();
+            return "ok";
+        }));
+        assertEquals(0, attempts.get());
+    }
+}
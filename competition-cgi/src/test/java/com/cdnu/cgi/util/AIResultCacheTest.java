@@ -0,0 +1,116 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.config.AIConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AIResultCache的W-TinyLFU准入和淘汰
+ * 所有键落在同一个段内，每段按字节上限恰好容纳10个条目，窗口区为1个条目
+ */
+class AIResultCacheTest {
+    private static final int SEGMENT_CAPACITY = 10;
+    /** 8个字符的键和24个字符的值，按UTF-16估算为64字节 */
+    private static final String VALUE = "012345678901234567890123";
+    private static final long ENTRY_BYTES = 64;
+
+    private AIResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        AIConfig config = new AIConfig(null);
+        // 条目数上限较大，使频率草图足够宽；实际容量由字节上限决定
+        config.getCache().setMaxSize(1600);
+        config.getCache().setMaxBytes(16 * SEGMENT_CAPACITY * ENTRY_BYTES);
+        cache = new AIResultCache(config);
+        cache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFrequenciesTie() {
+        List<String> keys = sameSegmentKeys("t", SEGMENT_CAPACITY + 1);
+        keys.forEach(key -> cache.put(key, VALUE));
+
+        // 候选者与主区最久未访问的条目频率相同时接纳候选者
+        assertNull(cache.get(keys.get(0)));
+        for (String key : keys.subList(1, keys.size())) {
+            assertNotNull(cache.get(key), key);
+        }
+        assertEquals(1L, cache.getStats().get("evictionCount"));
+    }
+
+    @Test
+    void frequentEntriesSurviveScan() {
+        List<String> hot = sameSegmentKeys("h", SEGMENT_CAPACITY - 1);
+        for (String key : hot) {
+            cache.put(key, VALUE);
+            for (int i = 0; i < 5; i++) {
+                cache.get(key);
+            }
+        }
+        List<String> scan = sameSegmentKeys("s", 100);
+        scan.forEach(key -> cache.put(key, VALUE));
+
+        for (String key : hot) {
+            assertNotNull(cache.get(key), key);
+        }
+        assertEquals(SEGMENT_CAPACITY, cache.getStats().get("size"));
+    }
+
+    @Test
+    void admitsNewEntryOnceItIsMoreFrequentThanVictim() {
+        List<String> resident = sameSegmentKeys("r", SEGMENT_CAPACITY);
+        for (String key : resident) {
+            cache.put(key, VALUE);
+            cache.get(key);
+        }
+        List<String> fresh = sameSegmentKeys("n", 2);
+        // 每次写入都计入频率
+        for (int i = 0; i < 5; i++) {
+            cache.put(fresh.get(0), VALUE);
+        }
+        // 把新条目挤出窗口区，作为候选者与主区比较
+        cache.put(fresh.get(1), VALUE);
+
+        assertNotNull(cache.get(fresh.get(0)));
+        long survivors = resident.stream().filter(key -> cache.get(key) != null).count();
+        assertEquals(SEGMENT_CAPACITY - 2, survivors);
+    }
+
+    @Test
+    void invalidateByPrefixRemovesMatchingEntries() {
+        cache.put("recommend:user:1:a", VALUE);
+        cache.put("recommend:user:1:b", VALUE);
+        cache.put("recommend:user:2:a", VALUE);
+
+        assertEquals(2, cache.invalidateByPrefix("recommend:user:1:"));
+        assertNull(cache.get("recommend:user:1:a"));
+        assertNotNull(cache.get("recommend:user:2:a"));
+    }
+
+    /**
+     * 与AIResultCache.segmentFor相同的分段方式，取落在0号段的count个8字符键
+     */
+    private static List<String> sameSegmentKeys(String prefix, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String key = prefix + String.format("%07d", i);
+            int hash = key.hashCode();
+            if (((hash ^ (hash >>> 16)) & 15) == 0) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,139 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.dto.CompetitionTeamCardDto;
+import com.cdnu.cgi.entity.UserSkill;
+import com.cdnu.cgi.mapper.TeamMapper;
+import com.cdnu.cgi.mapper.UserSkillMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TeamSkillIndex按MaxScore剪枝得到的前K名与对全部团队逐个计算后排序的结果一致
+ */
+class TeamSkillIndexTest {
+    private static final String[] SKILLS = {"Java", "Python", "C++", "Go", "前端", "算法", "UI设计", "数据分析",
+            "嵌入式", "机器学习", "运维", "测试"};
+
+    private final List<CompetitionTeamCardDto> teams = new ArrayList<>();
+    private final Map<Long, List<UserSkill>> userSkills = new HashMap<>();
+    private TeamSkillIndex index;
+
+    @BeforeEach
+    void setUp() {
+        TeamMapper teamMapper = (TeamMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{TeamMapper.class}, (proxy, method, args) -> {
+                    if ("selectAllCompetitionTeamCards".equals(method.getName())) {
+                        return teams;
+                    }
+                    if ("selectCompetitionTeamCardsByTeamId".equals(method.getName())) {
+                        return teams.stream().filter(team -> team.getId().equals(args[0])).collect(Collectors.toList());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        UserSkillMapper userSkillMapper = (UserSkillMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserSkillMapper.class}, (proxy, method, args) -> {
+                    if ("selectByUserId".equals(method.getName())) {
+                        return userSkills.getOrDefault((Long) args[0], new ArrayList<>());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        index = new TeamSkillIndex(teamMapper, new SkillDictionary(userSkillMapper));
+    }
+
+    @Test
+    void topKMatchesExhaustiveRanking() {
+        Random random = new Random(7);
+        for (long teamId = 1; teamId <= 300; teamId++) {
+            String memberIds = random.nextInt(8) == 0 ? (1 + random.nextInt(50)) + ",999" : "999";
+            teams.add(team(teamId, randomSkills(random, 1 + random.nextInt(5)), memberIds));
+        }
+        // 没有所需技能的团队不参与推荐
+        teams.add(team(301L, "", "999"));
+        index.rebuild();
+
+        for (long userId = 1; userId <= 50; userId++) {
+            List<String> skills = randomSkills(random, 1 + random.nextInt(4));
+            Long owner = userId;
+            userSkills.put(userId, skills.stream().map(skill -> new UserSkill(owner, skill)).collect(Collectors.toList()));
+            for (int topK : new int[]{1, 3, 10, 40}) {
+                assertEquals(exhaustive(userId, skills, topK), ranked(index.recommend(userId, topK)),
+                        "user " + userId + " " + skills + ", top " + topK);
+            }
+        }
+    }
+
+    @Test
+    void refreshReplacesChangedTeam() {
+        teams.add(team(1L, Collections.singletonList("Java"), "999"));
+        teams.add(team(2L, Collections.singletonList("Python"), "999"));
+        index.rebuild();
+        userSkills.put(1L, Collections.singletonList(new UserSkill(1L, "Go")));
+        assertTrue(index.recommend(1L, 10).isEmpty());
+
+        teams.get(1).setNeedSkills("Go,Python");
+        index.refresh(2L);
+        assertEquals(Collections.singletonList("2:60"), ranked(index.recommend(1L, 10)));
+
+        teams.remove(1);
+        index.refresh(2L);
+        assertTrue(index.recommend(1L, 10).isEmpty());
+    }
+
+    /**
+     * 逐个团队按字符串计算匹配度：至少命中一个所需技能且用户不是成员，按分数降序、团队ID降序取前K名
+     */
+    private List<String> exhaustive(long userId, List<String> skills, int topK) {
+        List<long[]> scored = new ArrayList<>();
+        for (CompetitionTeamCardDto team : teams) {
+            List<String> needed = Arrays.stream(team.getNeedSkills().split(","))
+                    .map(String::trim)
+                    .filter(skill -> !skill.isEmpty())
+                    .collect(Collectors.toList());
+            if (needed.isEmpty() || Arrays.asList(team.getMemberIds().split(",")).contains(String.valueOf(userId))) {
+                continue;
+            }
+            long matchCount = skills.stream().filter(needed::contains).count();
+            if (matchCount == 0) {
+                continue;
+            }
+            int score = Math.min(100, (int) (20 + (double) matchCount / needed.size() * 80));
+            scored.add(new long[]{team.getId(), score});
+        }
+        scored.sort(Comparator.comparingLong((long[] team) -> team[1]).reversed()
+                .thenComparing(team -> team[0], Comparator.reverseOrder()));
+        return scored.stream().limit(topK).map(team -> team[0] + ":" + team[1]).collect(Collectors.toList());
+    }
+
+    private static List<String> ranked(List<CompetitionTeamCardDto> cards) {
+        return cards.stream().map(card -> card.getId() + ":" + card.getMatchScore()).collect(Collectors.toList());
+    }
+
+    /**
+     * 随机技能列表，可能含重复项
+     */
+    private static List<String> randomSkills(Random random, int count) {
+        List<String> skills = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            skills.add(SKILLS[random.nextInt(SKILLS.length)]);
+        }
+        return skills;
+    }
+
+    private static CompetitionTeamCardDto team(long teamId, List<String> needSkills, String memberIds) {
+        return team(teamId, String.join(", ", needSkills), memberIds);
+    }
+
+    private static CompetitionTeamCardDto team(long teamId, String needSkills, String memberIds) {
+        CompetitionTeamCardDto card = new CompetitionTeamCardDto();
+        card.setId(teamId);
+        card.setNeedSkills(needSkills);
+        card.setMemberIds(memberIds);
+        return card;
+    }
+}
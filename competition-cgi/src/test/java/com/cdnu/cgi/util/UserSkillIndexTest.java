@@ -0,0 +1,112 @@
+package com.cdnu.cgi.util;
+
+import com.cdnu.cgi.entity.UserSkill;
+import com.cdnu.cgi.event.UserDeletedEvent;
+import com.cdnu.cgi.event.UserSkillsChangedEvent;
+import com.cdnu.cgi.mapper.UserSkillMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserSkillIndex的增量刷新和移除与全量重建结果一致
+ */
+class UserSkillIndexTest {
+    private final Map<Long, List<UserSkill>> userSkills = new HashMap<>();
+    private SkillDictionary skillDictionary;
+    private UserSkillIndex index;
+
+    @BeforeEach
+    void setUp() {
+        UserSkillMapper userSkillMapper = (UserSkillMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserSkillMapper.class}, (proxy, method, args) -> {
+                    if ("selectAll".equals(method.getName())) {
+                        return userSkills.values().stream().flatMap(List::stream).collect(Collectors.toList());
+                    }
+                    if ("selectByUserId".equals(method.getName())) {
+                        return userSkills.getOrDefault((Long) args[0], new ArrayList<>());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        skillDictionary = new SkillDictionary(userSkillMapper);
+        index = new UserSkillIndex(userSkillMapper, skillDictionary);
+        setSkills(1L, "Java", "Python");
+        setSkills(2L, "Java");
+        setSkills(3L, "Python", "算法");
+        index.rebuild();
+    }
+
+    @Test
+    void ranksByWeightedCoverage() {
+        List<UserSkillIndex.Candidate> candidates = find(Collections.emptySet(), 10, "Java", "Python");
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), userIds(candidates));
+        assertEquals(1.0, candidates.get(0).getCoverage(), 1e-9);
+        assertEquals(2, candidates.get(0).getMatchedSkillIds().size());
+        assertEquals(Arrays.asList(1L), userIds(find(Collections.emptySet(), 1, "Java", "Python")));
+        assertEquals(Arrays.asList(2L, 3L), userIds(find(Collections.singleton(1L), 10, "Java", "Python")));
+    }
+
+    @Test
+    void refreshMatchesFullRebuild() {
+        setSkills(2L, "算法", "前端");
+        setSkills(4L, "Java", "前端");
+        skillsChanged(2L);
+        skillsChanged(4L);
+        List<UserSkillIndex.Candidate> refreshed = find(Collections.emptySet(), 10, "Java", "前端", "算法");
+
+        index.rebuild();
+        List<UserSkillIndex.Candidate> rebuilt = find(Collections.emptySet(), 10, "Java", "前端", "算法");
+
+        assertEquals(userIds(rebuilt), userIds(refreshed));
+        for (int i = 0; i < rebuilt.size(); i++) {
+            assertEquals(rebuilt.get(i).getCoverage(), refreshed.get(i).getCoverage(), 1e-9);
+        }
+        assertFalse(userIds(find(Collections.emptySet(), 10, "Java")).contains(2L));
+    }
+
+    @Test
+    void userWithoutSkillsIsRemovedOnRefresh() {
+        setSkills(2L);
+        skillsChanged(2L);
+
+        assertEquals(Arrays.asList(1L), userIds(find(Collections.emptySet(), 10, "Java")));
+    }
+
+    @Test
+    void evictAndDeletionRemoveUsers() {
+        index.evict(Collections.singletonList(1L));
+        assertEquals(Arrays.asList(2L), userIds(find(Collections.emptySet(), 10, "Java")));
+
+        index.onUserDeleted(new UserDeletedEvent(3L));
+        assertTrue(find(Collections.emptySet(), 10, "算法").isEmpty());
+        assertEquals(Arrays.asList(2L), userIds(find(Collections.emptySet(), 10, "Java", "Python")));
+    }
+
+    private void setSkills(Long userId, String... skills) {
+        userSkills.put(userId, Arrays.stream(skills).map(skill -> new UserSkill(userId, skill)).collect(Collectors.toList()));
+    }
+
+    /**
+     * 与事件发布顺序一致：先清除字典中的用户技能集合，再刷新索引
+     */
+    private void skillsChanged(Long userId) {
+        UserSkillsChangedEvent event = new UserSkillsChangedEvent(userId);
+        skillDictionary.onUserSkillsChanged(event);
+        index.onUserSkillsChanged(event);
+    }
+
+    private List<UserSkillIndex.Candidate> find(Set<Long> excluded, int limit, String... skills) {
+        List<Integer> skillIds = Arrays.stream(skills).map(skillDictionary::intern).collect(Collectors.toList());
+        return index.findCandidates(skillIds, excluded, limit);
+    }
+
+    private static List<Long> userIds(List<UserSkillIndex.Candidate> candidates) {
+        return candidates.stream().map(UserSkillIndex.Candidate::getUserId).collect(Collectors.toList());
+    }
+}
@@ -1028,13 +1028,14 @@ export function useAI() {
           console.log('从数据库获取的聊天历史分组数据:', historyData)
           
           if (historyData && historyData.length > 0) {
-            // 后端现在返回的是分组后的数据，每个分组包含完整的对话记录
+            // 后端返回分组数据，每个分组只包含最近的部分消息，hasMore为true时打开对话需分页加载完整记录
             chatHistory.value = historyData.map(group => ({
               id: group.id || group.groupId,
               title: group.title || '对话记录',
               lastMessage: group.lastMessage || '点击查看详情',
               timestamp: group.timestamp ? new Date(group.timestamp).getTime() : Date.now(),
-              messages: group.messages || [] // 包含完整的对话记录
+              messages: group.messages || [], // 最近的部分消息
+              hasMore: Boolean(group.hasMore)
             }))
             
             console.log('处理后的聊天历史分组:', chatHistory.value.length, '个分组')
@@ -1149,10 +1150,10 @@ export function useAI() {
       // 清空当前消息
       messages.value = []
       
-      // 从聊天历史中找到对应的会话（现在包含完整的messages数据）
+      // 从聊天历史中找到对应的会话，只有分组中已包含完整记录时才直接使用
       const conversation = chatHistory.value.find(conv => conv.id === groupId)
       
-      if (conversation && conversation.messages) {
+      if (conversation && conversation.messages && conversation.messages.length > 0 && !conversation.hasMore) {
         console.log('从本地会话记录加载对话:', conversation.messages.length, '条记录')
         
         // 转换聊天记录为消息格式
@@ -1212,8 +1213,8 @@ export function useAI() {
         messages.value = formattedMessages
         console.log('加载会话成功，格式化后消息数量:', messages.value.length)
       } else {
-        // 如果本地没有找到，尝试从后端获取
-        console.log('本地未找到会话记录，尝试从后端获取...')
+        // 本地没有找到或只有部分记录时，从后端分页获取完整记录
+        console.log('本地无完整会话记录，从后端获取...')
         
         const chatLogs = await aiApi.getConversationHistory(user?.id || 6, groupId)
         console.log('从后端获取到聊天记录:', chatLogs.length, '条')
@@ -448,13 +448,23 @@ export const aiApi = {
     }
   },
 
-  // 获取特定对话的聊天记录
+  // 获取特定对话的聊天记录 - 按游标从最新一页向前翻页，返回按时间正序的完整记录
   async getConversationHistory(userId, conversationId) {
     try {
       console.log(`获取用户 ${userId} 对话 ${conversationId} 的聊天记录`)
-      const response = await api.get(`/ai/chat/conversation/${userId}/${conversationId}`)
-      console.log(`成功获取 ${response.length} 条对话记录`)
-      return response || []
+      let chatLogs = []
+      let before = null
+      let hasMore = true
+      while (hasMore) {
+        const params = before ? { before } : {}
+        const page = await api.get(`/ai/chat/conversation/${userId}/${conversationId}`, { params })
+        const pageMessages = page?.messages || []
+        chatLogs = [...pageMessages, ...chatLogs]
+        before = page?.beforeCursor
+        hasMore = Boolean(page?.hasMore && before && pageMessages.length > 0)
+      }
+      console.log(`成功获取 ${chatLogs.length} 条对话记录`)
+      return chatLogs
     } catch (error) {
       console.error('获取特定对话聊天记录失败:', error)
       return []